@@ -0,0 +1,188 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/*
+ * How SubwayGraph scales with the size of the network.
+ *
+ * For every size, NetworkGenerator makes a network and its query mix, the
+ * commands are parsed up front, and then they are run on a new SubwayGraph
+ * one by one, each one timed on its own. The report has, per size:
+ *
+ *   - the heap the graph uses once it is built (after a GC), in total and
+ *     per station
+ *   - per command type (insert, Adjacent, Route, Delete, and the renames of
+ *     the query mix): how many, and the p50, p90, p99 and max latency
+ *
+ * This is a plain program, not a JMH benchmark: each size is run once, which
+ * is what is wanted for memory and for the latency of single commands (a
+ * Route after a change also pays for the new snapshot, see
+ * SubwayGraph.publish(), and that shows up in the tail).
+ *
+ * Usage: java -cp target/benchmarks.jar ScalingBenchmark
+ *        [--sizes=1000,10000,100000,1000000] [--queries=N] [--routes=F]
+ *        [--deletes=F] [--seed=S]
+ */
+public class ScalingBenchmark {
+
+	static final int INSERT = 0, ADJACENT = 1, ROUTE = 2, DELETE = 3, RENAME = 4;
+	static final String[] KINDS = { "insert", "Adjacent", "Route", "Delete", "rename" };
+
+	static final String USAGE = "usage: java ScalingBenchmark [--sizes=1000,10000,100000,1000000]"
+			+ " [--queries=N] [--routes=F] [--deletes=F] [--seed=S]";
+
+	// exits with the usage, for an argument it does not know or a bad
+	// value, like SubwayDriver.usage(), rather than start a long run without
+	// it
+	static void usage(String arg) {
+		System.err.println("Error: bad flag " + arg + "\n" + USAGE);
+		System.exit(1);
+	}
+
+	public static void main(String[] argv) {
+		int[] sizes = { 1000, 10000, 100000, 1000000 };
+		int queries = 2000;
+		double routes = 0.8, deletes = 0.05;
+		long seed = 345;
+		for (String arg : argv) {
+			String value = arg.substring(arg.indexOf('=') + 1);
+			try {
+				if (arg.startsWith("--sizes="))
+					sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+				else if (arg.startsWith("--queries="))
+					queries = Integer.parseInt(value);
+				else if (arg.startsWith("--routes="))
+					routes = Double.parseDouble(value);
+				else if (arg.startsWith("--deletes="))
+					deletes = Double.parseDouble(value);
+				else if (arg.startsWith("--seed="))
+					seed = Long.parseLong(value);
+				else
+					usage(arg);
+			} catch (NumberFormatException e) {
+				usage(arg);
+			}
+		}
+
+		System.out.printf("%9s %12s %8s   %-8s %8s %10s %10s %10s %10s%n",
+				"stations", "heap MB", "B/stn", "command", "count", "p50 us", "p90 us", "p99 us", "max us");
+		for (int n : sizes) {
+			StringWriter text = new StringWriter();
+			new NetworkGenerator(n).setQueries(queries).setMix(routes, deletes).setSeed(seed)
+					.write(new PrintWriter(text));
+			run(n, new Commands(text.toString()));
+		}
+	}
+
+	/*
+	 * Description:
+	 * Runs the commands on a new graph and prints the report for one size.
+	 * The heap is measured between the network (inserts and tracks) and the
+	 * queries.
+	 */
+	private static void run(int n, Commands c) {
+		long[][] times = new long[KINDS.length][c.size];
+		int[] count = new int[KINDS.length];
+
+		long before = usedHeap();
+		SubwayGraph subway = new SubwayGraph();
+		long heap = -1;
+		int stations = 0;
+
+		for (int i = 0; i < c.size; i++) {
+			int kind = c.kind[i];
+			if (heap < 0 && kind != INSERT && kind != ADJACENT)
+				heap = usedHeap() - before;
+			Point p = new Point(c.x1[i], c.y1[i]);
+			long t = System.nanoTime();
+			switch (kind) {
+			case INSERT:
+			case RENAME:
+				subway.insert(p, c.name[i]);
+				break;
+			case ADJACENT:
+				subway.adjacent(p, new Point(c.x2[i], c.y2[i]));
+				break;
+			case ROUTE:
+				subway.route(p, new Point(c.x2[i], c.y2[i]));
+				break;
+			default:
+				subway.delete(p);
+			}
+			times[kind][count[kind]++] = System.nanoTime() - t;
+			if (kind == INSERT)
+				stations++;
+		}
+		if (heap < 0)
+			heap = usedHeap() - before;
+
+		boolean first = true;
+		for (int k = 0; k < KINDS.length; k++) {
+			if (count[k] == 0)
+				continue;
+			long[] s = Arrays.copyOf(times[k], count[k]);
+			Arrays.sort(s);
+			System.out.printf("%9s %12s %8s   %-8s %8d %10.1f %10.1f %10.1f %10.1f%n",
+					first ? "" + n : "", first ? String.format("%.1f", heap / 1e6) : "",
+					first ? "" + heap / Math.max(1, stations) : "", KINDS[k], count[k],
+					pct(s, 0.50), pct(s, 0.90), pct(s, 0.99), s[s.length - 1] / 1e3);
+			first = false;
+		}
+	}
+
+	// the q-th quantile of the sorted times, in microseconds
+	private static double pct(long[] sorted, double q) {
+		return sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))] / 1e3;
+	}
+
+	// heap in use after a few rounds of GC
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	// the generated commands, parsed into arrays. The queries start at the
+	// first command after the tracks, so an insert from there on is a rename
+	private static class Commands {
+		int size;
+		int[] kind, x1, y1, x2, y2;
+		String[] name;
+
+		Commands(String text) {
+			int lines = 0;
+			for (int i = 0; i < text.length(); i++)
+				if (text.charAt(i) == '\n')
+					lines++;
+			kind = new int[lines];
+			x1 = new int[lines];
+			y1 = new int[lines];
+			x2 = new int[lines];
+			y2 = new int[lines];
+			name = new String[lines];
+
+			boolean tracks = false, queries = false;
+			StringTokenizer tz = new StringTokenizer(text);
+			while (tz.hasMoreTokens()) {
+				String cmd = tz.nextToken();
+				queries |= tracks && !cmd.equals("Adjacent");
+				tracks |= cmd.equals("Adjacent");
+				int i = size++;
+				x1[i] = Integer.parseInt(tz.nextToken());
+				y1[i] = Integer.parseInt(tz.nextToken());
+				if (cmd.equals("insert")) {
+					kind[i] = queries ? RENAME : INSERT;
+					name[i] = tz.nextToken();
+				} else if (cmd.equals("Delete"))
+					kind[i] = DELETE;
+				else {
+					kind[i] = cmd.equals("Adjacent") ? ADJACENT : ROUTE;
+					x2[i] = Integer.parseInt(tz.nextToken());
+					y2[i] = Integer.parseInt(tz.nextToken());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import bench.Workload;
+
+/*
+ * The benchmark workload on the project classes (see bench.Workload).
+ *
+ * The command files are parsed once, up front, into plain arrays: the
+ * stations, tracks and Route commands of every file, each tagged with the
+ * file it came from. The benchmarks then only time the graph and tree calls.
+ */
+public class SubwayWorkload implements Workload {
+
+	private byte[][] inputs; // the files, for the driver
+	private int files;
+
+	// per station, track and route: the file it belongs to, then its data
+	private int[] stationFile, stationX, stationY;
+	private String[] stationName;
+	private int[] trackFile, trackX1, trackY1, trackX2, trackY2;
+	private int[] routeFile;
+	private Point[] routeFrom, routeTo;
+	private Point[] stationPoint;
+
+	private SplayTree[] trees;
+	private SubwayGraph[] graphs;
+
+	public void read(File dir) throws IOException {
+		File[] list = dir.listFiles(File::isFile);
+		if (list == null || list.length == 0)
+			throw new IOException(dir + ": no command files");
+		Arrays.sort(list);
+		files = list.length;
+		inputs = new byte[files][];
+
+		IntList sf = new IntList(), sx = new IntList(), sy = new IntList();
+		ArrayList<String> sn = new ArrayList<String>();
+		IntList tf = new IntList(), tx1 = new IntList(), ty1 = new IntList(), tx2 = new IntList(), ty2 = new IntList();
+		IntList rf = new IntList();
+		ArrayList<Point> ra = new ArrayList<Point>(), rb = new ArrayList<Point>();
+
+		for (int f = 0; f < files; f++) {
+			inputs[f] = Files.readAllBytes(list[f].toPath());
+			StringTokenizer tz = new StringTokenizer(new String(inputs[f], StandardCharsets.UTF_8));
+			while (tz.hasMoreTokens()) {
+				String cmd = tz.nextToken();
+				try {
+					if (cmd.equals("insert")) {
+						int x = Integer.parseInt(tz.nextToken()), y = Integer.parseInt(tz.nextToken());
+						sf.add(f);
+						sx.add(x);
+						sy.add(y);
+						sn.add(tz.nextToken());
+					} else if (cmd.equals("Adjacent")) {
+						int x1 = Integer.parseInt(tz.nextToken()), y1 = Integer.parseInt(tz.nextToken());
+						int x2 = Integer.parseInt(tz.nextToken()), y2 = Integer.parseInt(tz.nextToken());
+						tf.add(f);
+						tx1.add(x1);
+						ty1.add(y1);
+						tx2.add(x2);
+						ty2.add(y2);
+					} else if (cmd.equals("Route")) {
+						int x1 = Integer.parseInt(tz.nextToken()), y1 = Integer.parseInt(tz.nextToken());
+						int x2 = Integer.parseInt(tz.nextToken()), y2 = Integer.parseInt(tz.nextToken());
+						rf.add(f);
+						ra.add(new Point(x1, y1));
+						rb.add(new Point(x2, y2));
+					}
+				} catch (RuntimeException e) {
+					break; // a broken file: keep what was read before the error
+				}
+			}
+		}
+
+		stationFile = sf.toArray();
+		stationX = sx.toArray();
+		stationY = sy.toArray();
+		stationName = sn.toArray(new String[0]);
+		stationPoint = new Point[stationX.length];
+		for (int i = 0; i < stationX.length; i++)
+			stationPoint[i] = new Point(stationX[i], stationY[i]);
+		trackFile = tf.toArray();
+		trackX1 = tx1.toArray();
+		trackY1 = ty1.toArray();
+		trackX2 = tx2.toArray();
+		trackY2 = ty2.toArray();
+		routeFile = rf.toArray();
+		routeFrom = ra.toArray(new Point[0]);
+		routeTo = rb.toArray(new Point[0]);
+	}
+
+	public int stations() {
+		return stationX.length;
+	}
+
+	public int tracks() {
+		return trackX1.length;
+	}
+
+	public int routes() {
+		return routeFrom.length;
+	}
+
+	public int insertAll() {
+		trees = new SplayTree[files];
+		for (int f = 0; f < files; f++)
+			trees[f] = new SplayTree();
+		int h = 0;
+		for (int i = 0; i < stationX.length; i++) {
+			SplayTree t = trees[stationFile[i]];
+			h += t.store.x(t.insert_record(new Point(stationX[i], stationY[i]), stationName[i]));
+		}
+		return h;
+	}
+
+	public Object search(int i) {
+		i = i % stationPoint.length;
+		return trees[stationFile[i]].search(stationPoint[i]);
+	}
+
+	public void prepareStations() {
+		graphs = new SubwayGraph[files];
+		for (int f = 0; f < files; f++) {
+			graphs[f] = new SubwayGraph();
+			graphs[f].setRouteCacheSize(0);
+		}
+		for (int i = 0; i < stationX.length; i++)
+			graphs[stationFile[i]].insert(stationPoint[i], stationName[i]);
+	}
+
+	public int adjacentAll() {
+		for (int i = 0; i < trackX1.length; i++)
+			graphs[trackFile[i]].adjacent(new Point(trackX1[i], trackY1[i]), new Point(trackX2[i], trackY2[i]));
+		return trackX1.length;
+	}
+
+	public void prepareGraphs() {
+		prepareStations();
+		adjacentAll();
+	}
+
+	public String route(int i) {
+		i = i % routeFrom.length;
+		return graphs[routeFile[i]].route(routeFrom[i], routeTo[i]);
+	}
+
+	public int deleteAll() {
+		for (int i = 0; i < stationPoint.length; i++)
+			graphs[stationFile[i]].delete(stationPoint[i]);
+		return stationPoint.length;
+	}
+
+	public long driveAll() throws IOException {
+		long bytes = 0;
+		RouteWriter out = new RouteWriter(OutputStream.nullOutputStream(), RouteWriter.RAW);
+		for (int f = 0; f < files; f++) {
+			CommandTokens tokens = new ByteCommandReader(Channels.newChannel(new ByteArrayInputStream(inputs[f])));
+			SubwayDriver.driver(tokens, new SubwayGraph(), null, null, out, true);
+			bytes += inputs[f].length;
+		}
+		out.flush();
+		return bytes;
+	}
+
+	// growable int array for the parser
+	private static class IntList {
+		private int[] a = new int[64];
+		private int n;
+
+		void add(int v) {
+			if (n == a.length)
+				a = Arrays.copyOf(a, 2 * n);
+			a[n++] = v;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(a, n);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Main class of benchmarks.jar.
+ *
+ * With arguments, they are plain JMH options (java -jar benchmarks.jar -h).
+ * Without, every benchmark runs twice, with the GC profiler on:
+ *
+ *   throughput   ops/s, plus the allocation rate (gc.alloc.rate and
+ *                gc.alloc.rate.norm, bytes per operation)
+ *   sample time  latency per operation in microseconds, with the p50, p90,
+ *                p99, p99.9 ... percentiles
+ *
+ * and the results also go to jmh-throughput.json and jmh-latency.json, to
+ * compare with the numbers of an earlier build.
+ */
+public class BenchMain {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		run(Mode.Throughput, TimeUnit.SECONDS, "jmh-throughput.json");
+		run(Mode.SampleTime, TimeUnit.MICROSECONDS, "jmh-latency.json");
+	}
+
+	private static void run(Mode mode, TimeUnit unit, String result) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include("bench\\..*Benchmark")
+				.mode(mode)
+				.timeUnit(unit)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * End to end: every command file of the dataset through SubwayDriver's state
+ * machine, each on a new graph, parsed from bytes in memory and with the
+ * output thrown away. One operation is the whole dataset.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class DriverBenchmark {
+
+	@Param({ "tiny", "small", "blocka" })
+	public String dataset;
+
+	private Workload w;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		w = Workload.load(Workload.dataset(dataset));
+	}
+
+	@Benchmark
+	public long driveAll() throws IOException {
+		return w.driveAll();
+	}
+}
@@ -0,0 +1,98 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * SubwayGraph: adjacent, route and delete.
+ *
+ * adjacentAll and deleteAll change the graphs, so each of them is one whole
+ * dataset per operation, on graphs rebuilt before every operation (outside
+ * the timing). route is a single Route command, going round all the Route
+ * commands of the dataset, with the route cache off so that every call
+ * searches.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class GraphBenchmark {
+
+	// graphs with stations only, fresh for every adjacentAll
+	@State(Scope.Thread)
+	public static class Stations {
+		@Param({ "tiny", "small", "blocka" })
+		public String dataset;
+
+		Workload w;
+
+		@Setup(Level.Trial)
+		public void load() throws IOException {
+			w = Workload.load(Workload.dataset(dataset));
+		}
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			w.prepareStations();
+		}
+	}
+
+	// whole graphs, fresh for every deleteAll
+	@State(Scope.Thread)
+	public static class Graphs {
+		@Param({ "tiny", "small", "blocka" })
+		public String dataset;
+
+		Workload w;
+
+		@Setup(Level.Trial)
+		public void load() throws IOException {
+			w = Workload.load(Workload.dataset(dataset));
+		}
+
+		@Setup(Level.Invocation)
+		public void prepare() {
+			w.prepareGraphs();
+		}
+	}
+
+	// whole graphs, built once for the Routes
+	@State(Scope.Thread)
+	public static class Routes {
+		@Param({ "tiny", "small", "blocka" })
+		public String dataset;
+
+		Workload w;
+		int next;
+
+		@Setup(Level.Trial)
+		public void load() throws IOException {
+			w = Workload.load(Workload.dataset(dataset));
+			w.prepareGraphs();
+		}
+	}
+
+	@Benchmark
+	public int adjacentAll(Stations s) {
+		return s.w.adjacentAll();
+	}
+
+	@Benchmark
+	public String route(Routes r) {
+		return r.w.route(r.next++ & Integer.MAX_VALUE);
+	}
+
+	@Benchmark
+	public int deleteAll(Graphs g) {
+		return g.w.deleteAll();
+	}
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * SplayTree on its own: insert_record and search.
+ *
+ * insertAll is one whole dataset per operation (every station of every file
+ * into a new tree per file), since a tree cannot be filled twice. search is a
+ * single lookup, going round all the stations of the dataset.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SplayTreeBenchmark {
+
+	@Param({ "tiny", "small", "blocka" })
+	public String dataset;
+
+	private Workload w;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		w = Workload.load(Workload.dataset(dataset));
+		w.insertAll(); // the trees for search
+	}
+
+	@Benchmark
+	public int insertAll() {
+		return w.insertAll();
+	}
+
+	@Benchmark
+	public Object search() {
+		return w.search(next++ & Integer.MAX_VALUE);
+	}
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * The operations the benchmarks time, on one dataset.
+ *
+ * JMH only accepts benchmarks in a named package, and a named package cannot
+ * see the classes of the project, which are all in the default package. So
+ * the benchmarks only use this interface, and SubwayWorkload (in the default
+ * package, next to the project classes) implements it. load() makes the one
+ * instance, by name, during setup; the timed calls are plain interface calls.
+ *
+ * A dataset is a directory of command files (tiny/, small/, blocka/). Every
+ * file is its own network, like in a real run, so the stations of different
+ * files never mix.
+ */
+public interface Workload {
+
+	// reads every command file of the directory
+	static Workload load(File dir) throws IOException {
+		try {
+			Workload w = (Workload) Class.forName("SubwayWorkload").getDeclaredConstructor().newInstance();
+			w.read(dir);
+			return w;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("SubwayWorkload is not on the class path", e);
+		}
+	}
+
+	// the dataset directory under the project directory (-Dsubway.data,
+	// the parent directory by default, which is right when run from bench/)
+	static File dataset(String name) {
+		return new File(System.getProperty("subway.data", ".."), name);
+	}
+
+	// parses the command files of dir
+	void read(File dir) throws IOException;
+
+	// number of stations, tracks and routes over all files
+	int stations();
+
+	int tracks();
+
+	int routes();
+
+	// builds a splay tree of the stations of every file, with insert_record;
+	// returns something that depends on the result
+	int insertAll();
+
+	// one SplayTree.search for the i-th station (mod stations()), on trees
+	// built by insertAll()
+	Object search(int i);
+
+	// makes a graph for every file, with its stations but no tracks yet
+	void prepareStations();
+
+	// adds every track of every file with SubwayGraph.adjacent, on the
+	// graphs of prepareStations()
+	int adjacentAll();
+
+	// makes a graph for every file, with its stations and tracks, and the
+	// route cache turned off
+	void prepareGraphs();
+
+	// one SubwayGraph.route for the i-th Route command (mod routes()), on the
+	// graphs of prepareGraphs()
+	String route(int i);
+
+	// deletes every station of every file with SubwayGraph.delete, on the
+	// graphs of prepareGraphs()
+	int deleteAll();
+
+	// runs every command file through the driver, the way SubwayDriver runs
+	// one file, with the output thrown away; returns the bytes of input
+	long driveAll() throws IOException;
+}
@@ -0,0 +1,298 @@
+/*
+ * The neighbors of every station: for each slot of the StationStore, a set of
+ * slots that keeps the order they were added in.
+ *
+ * There is no object per set: the sets of all stations are in a few big
+ * IntArrays, taken from the StationStore so that they are where the stations
+ * are (on the heap or off it):
+ *
+ *   - per slot, in columns: where its list and its table are, how much of
+ *     the list is used (holes included), its size, the table entries in use
+ *     and the log2 of both capacities
+ *   - the lists and the tables themselves are blocks of one int heap: a
+ *     block has a power of two of ints, at least 4, and a free block goes on
+ *     a free list for its size, for the next set that needs one that big
+ *
+ * Inside a set:
+ *
+ *   - the neighbors are in the list, in the order they were added
+ *   - up to SMALL of them (most stations), the list is all there is: a scan
+ *     is as fast as a hash at that size, and a remove shifts the rest down
+ *     like ArrayList.remove()
+ *   - above that, an open-addressing table (linear probing, by a hash of the
+ *     slot) has the position of every neighbor in the list, which makes add,
+ *     contains and remove O(1). A removed neighbor leaves a hole (NIL) in the
+ *     list, so the others do not move, and the holes are squeezed out once
+ *     they outnumber the neighbors
+ *
+ * To go through the neighbors of s in the order of addition:
+ *
+ *   for (int i = 0, e = sets.end(s); i < e; i++)
+ *       if ((m = sets.neighbor(s, i)) != NIL) ...
+ *
+ * The set must not be changed while it is gone through like that.
+ */
+public class AdjacencySets {
+
+	static final int SMALL = 8; // most neighbors without a table
+	static final int NIL = -1; // a hole in a list
+
+	private static final int DELETED = -1; // table entry of a removed neighbor
+
+	// per slot: block of the list and of the table (0 if none), list used
+	// (holes included), neighbors, table entries that are not 0, and the
+	// log2 of the capacity of the list (low byte) and of the table (next byte)
+	private final IntArray list, table, end, size, used, shape;
+
+	// the blocks. An address is in units of 4 ints, so that an int can
+	// point anywhere in 2^33 ints; 0 is no block, so the heap starts at 1
+	private final IntArray heap;
+	private long top = 1; // first unit never handed out
+	private final int[] freeBlocks = new int[32]; // per log2 of the units, 0 if none
+
+	// no sets yet, on the heap
+	public AdjacencySets() {
+		this(new HeapStationStore());
+	}
+
+	// no sets yet, in the memory of the stations of store (see
+	// StationStore.column())
+	public AdjacencySets(StationStore store) {
+		list = store.column();
+		table = store.column();
+		end = store.column();
+		size = store.column();
+		used = store.column();
+		shape = store.column();
+		heap = store.column();
+	}
+
+	// makes room for slot s, which starts out with no neighbors
+	public void added(int s) {
+		list.grow(s + 1);
+		table.grow(s + 1);
+		end.grow(s + 1);
+		size.grow(s + 1);
+		used.grow(s + 1);
+		shape.grow(s + 1);
+		list.set(s, 0);
+		table.set(s, 0);
+		end.set(s, 0);
+		size.set(s, 0);
+		used.set(s, 0);
+		shape.set(s, 0);
+	}
+
+	// drops every neighbor of s and gives its blocks back
+	public void clear(int s) {
+		if (list.get(s) != 0)
+			release(list.get(s), listBits(s));
+		if (table.get(s) != 0)
+			release(table.get(s), tableBits(s));
+		list.set(s, 0);
+		table.set(s, 0);
+		end.set(s, 0);
+		size.set(s, 0);
+		used.set(s, 0);
+		shape.set(s, 0);
+	}
+
+	// number of neighbors of s
+	public int size(int s) {
+		return size.get(s);
+	}
+
+	// positions of the list of s in use, holes included
+	public int end(int s) {
+		return end.get(s);
+	}
+
+	// the neighbor at position i of the list of s, NIL for a hole
+	public int neighbor(int s, int i) {
+		return heap.get(4L * list.get(s) + i);
+	}
+
+	public boolean contains(int s, int n) {
+		return table.get(s) == 0 ? indexOf(s, n) != -1 : entry(s, n) != -1;
+	}
+
+	// adds n at the end of the list of s, unless it is already in the set.
+	// Returns true if it was added
+	public boolean add(int s, int n) {
+		if (contains(s, n))
+			return false;
+		int e = end.get(s), k = size.get(s);
+		if (list.get(s) == 0 || e == 1 << listBits(s)) {
+			if (2 * (e - k) >= e && e > 0)
+				compact(s);
+			else
+				resize(s, list.get(s) == 0 ? 2 : listBits(s) + 1);
+			e = end.get(s);
+		}
+		heap.set(4L * list.get(s) + e, n);
+		if (table.get(s) != 0)
+			put(s, n, e);
+		end.set(s, e + 1);
+		size.set(s, ++k);
+		if (table.get(s) == 0 ? k > SMALL : 2 * used.get(s) > 1 << tableBits(s))
+			rehash(s);
+		return true;
+	}
+
+	// removes n from the set of s, if it is in it. Returns true if it was
+	public boolean remove(int s, int n) {
+		long base = 4L * list.get(s);
+		int e = end.get(s);
+		if (table.get(s) == 0) {
+			int i = indexOf(s, n);
+			if (i == -1)
+				return false;
+			for (int j = i + 1; j < e; j++)
+				heap.set(base + j - 1, heap.get(base + j));
+			end.set(s, e - 1);
+			size.set(s, size.get(s) - 1);
+			return true;
+		}
+
+		int t = entry(s, n);
+		if (t == -1)
+			return false;
+		long at = 4L * table.get(s) + t;
+		heap.set(base + heap.get(at) - 1, NIL);
+		heap.set(at, DELETED);
+		int k = size.get(s) - 1;
+		size.set(s, k);
+		if (e - k > k)
+			compact(s);
+		return true;
+	}
+
+	private int listBits(int s) {
+		return shape.get(s) & 0xFF;
+	}
+
+	private int tableBits(int s) {
+		return shape.get(s) >>> 8 & 0xFF;
+	}
+
+	// position of n in the list of s, scanning, or -1
+	private int indexOf(int s, int n) {
+		long base = 4L * list.get(s);
+		for (int i = 0, e = end.get(s); i < e; i++)
+			if (heap.get(base + i) == n)
+				return i;
+		return -1;
+	}
+
+	private static int hash(int n) {
+		int h = n * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	// the entry of the table of s for n, or -1
+	private int entry(int s, int n) {
+		long base = 4L * table.get(s), items = 4L * list.get(s);
+		int mask = (1 << tableBits(s)) - 1;
+		for (int t = hash(n) & mask;; t = (t + 1) & mask) {
+			int v = heap.get(base + t);
+			if (v == 0)
+				return -1;
+			if (v > 0 && heap.get(items + v - 1) == n)
+				return t;
+		}
+	}
+
+	// enters n, which is at position i of the list of s, into its table
+	private void put(int s, int n, int i) {
+		long base = 4L * table.get(s);
+		int mask = (1 << tableBits(s)) - 1;
+		int t = hash(n) & mask;
+		while (heap.get(base + t) != 0)
+			t = (t + 1) & mask;
+		heap.set(base + t, i + 1);
+		used.set(s, used.get(s) + 1);
+	}
+
+	// moves the list of s to a block of 2^bits ints
+	private void resize(int s, int bits) {
+		int old = list.get(s), block = allocate(bits);
+		for (int i = 0, e = end.get(s); i < e; i++)
+			heap.set(4L * block + i, heap.get(4L * old + i));
+		if (old != 0)
+			release(old, listBits(s));
+		list.set(s, block);
+		shape.set(s, shape.get(s) & ~0xFF | bits);
+	}
+
+	// a new table for the neighbors s has now (at most a quarter full), or
+	// none if there are few enough to scan
+	private void rehash(int s) {
+		if (table.get(s) != 0)
+			release(table.get(s), tableBits(s));
+		table.set(s, 0);
+		used.set(s, 0);
+		shape.set(s, shape.get(s) & 0xFF);
+		int k = size.get(s);
+		if (k <= SMALL)
+			return;
+		int bits = 32 - Integer.numberOfLeadingZeros(4 * k - 1);
+		int block = allocate(bits);
+		for (int i = 0; i < 1 << bits; i++)
+			heap.set(4L * block + i, 0);
+		table.set(s, block);
+		shape.set(s, shape.get(s) | bits << 8);
+		long items = 4L * list.get(s);
+		for (int i = 0, e = end.get(s); i < e; i++) {
+			int n = heap.get(items + i);
+			if (n != NIL)
+				put(s, n, i);
+		}
+	}
+
+	// squeezes the holes out of the list of s, keeping the order, and
+	// rebuilds the table for the new positions
+	private void compact(int s) {
+		long base = 4L * list.get(s);
+		int k = 0;
+		for (int i = 0, e = end.get(s); i < e; i++) {
+			int n = heap.get(base + i);
+			if (n != NIL)
+				heap.set(base + k++, n);
+		}
+		end.set(s, k);
+		rehash(s);
+	}
+
+	// a block of 2^bits ints (bits >= 2), from its free list if there is one
+	private int allocate(int bits) {
+		int c = bits - 2, block = freeBlocks[c];
+		if (block != 0) {
+			freeBlocks[c] = heap.get(4L * block);
+			return block;
+		}
+		if (top + (1L << c) > Integer.MAX_VALUE)
+			throw new IllegalStateException("neighbor lists past " + 4L * Integer.MAX_VALUE + " ints");
+		block = (int) top;
+		top += 1L << c;
+		heap.grow(4 * top);
+		return block;
+	}
+
+	// puts a block of 2^bits ints on its free list
+	private void release(int block, int bits) {
+		int c = bits - 2;
+		heap.set(4L * block, freeBlocks[c]);
+		freeBlocks[c] = block;
+	}
+
+	// gives the memory back; the sets must not be used after this
+	public void free() {
+		list.free();
+		table.free();
+		end.free();
+		size.free();
+		used.free();
+		shape.free();
+		heap.free();
+	}
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+ * Reads driver commands straight from bytes.
+ *
+ * The line reader decodes every line into a String, StringTokenizer cuts it
+ * into more Strings, and every coordinate goes through Integer.parseInt, which
+ * is several allocations per token. This reader instead pulls the input in big
+ * chunks into one direct ByteBuffer (or memory-maps a file), copies each token
+ * into a small reusable byte array, and compares command words and parses ints
+ * right from those bytes. Only station names (and error messages) become
+ * Strings.
+ *
+ * Tokens are separated by the same whitespace StringTokenizer uses
+ * (space, tab, newline, carriage return, form feed). A token may be cut by a
+ * chunk boundary; it is simply continued from the next chunk.
+ */
+public class ByteCommandReader implements CommandTokens {
+
+	static final int CHUNK = 1 << 20; // bytes per read
+	static final long WINDOW = 1L << 30; // bytes per mapping
+
+	private final ReadableByteChannel in; // null when mapping a file
+	private final FileChannel file; // null when reading chunks
+	private long mapped; // how much of the file is mapped so far
+	private ByteBuffer buf;
+
+	private byte[] tok = new byte[64]; // the current token
+	private int len; // its length
+
+	// reads the channel in chunks, through one direct buffer
+	public ByteCommandReader(ReadableByteChannel in) {
+		this.in = in;
+		this.file = null;
+		buf = ByteBuffer.allocateDirect(CHUNK);
+		buf.flip(); // nothing read yet
+	}
+
+	// memory-maps the file, in windows of at most 1 GB
+	public ByteCommandReader(FileChannel file) {
+		this.in = null;
+		this.file = file;
+		buf = ByteBuffer.allocate(0);
+	}
+
+	/*
+	 * Description:
+	 * Gets the next piece of input into buf. Returns false at the end of
+	 * the input.
+	 */
+	private boolean refill() throws IOException {
+		if (file != null) {
+			long size = file.size();
+			if (mapped >= size)
+				return false;
+			long length = Math.min(WINDOW, size - mapped);
+			MappedByteBuffer map = file.map(FileChannel.MapMode.READ_ONLY, mapped, length);
+			mapped += length;
+			buf = map;
+			return true;
+		}
+
+		buf.clear();
+		int n = 0;
+		while (n == 0)
+			n = in.read(buf);
+		buf.flip();
+		return n > 0;
+	}
+
+	// the whitespace StringTokenizer splits on by default
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	/*
+	 * Description:
+	 * Skips the whitespace, then copies bytes into tok until the next
+	 * whitespace or the end of the input.
+	 */
+	public boolean next() throws IOException {
+		len = 0;
+
+		// skips the whitespace before the token
+		while (true) {
+			if (!buf.hasRemaining() && !refill())
+				return false;
+			if (!isSpace(buf.get(buf.position())))
+				break;
+			buf.get();
+		}
+
+		// copies the token
+		while (true) {
+			if (!buf.hasRemaining() && !refill())
+				return true;
+			byte b = buf.get(buf.position());
+			if (isSpace(b))
+				return true;
+			buf.get();
+			if (len == tok.length) {
+				byte[] bigger = new byte[len * 2];
+				System.arraycopy(tok, 0, bigger, 0, len);
+				tok = bigger;
+			}
+			tok[len++] = b;
+		}
+	}
+
+	// compares the bytes of the token with the (ASCII) word
+	public boolean is(String word) {
+		if (word.length() != len)
+			return false;
+		for (int i = 0; i < len; i++)
+			if (tok[i] != word.charAt(i))
+				return false;
+		return true;
+	}
+
+	/*
+	 * Description:
+	 * Parses the token as a decimal int, accepting what Integer.parseInt
+	 * accepts for ASCII input: an optional sign, then at least one digit, and
+	 * nothing out of range. It accumulates the value as a negative number so
+	 * Integer.MIN_VALUE works too. Anything else throws the same exception
+	 * Integer.parseInt would.
+	 */
+	public int intValue() {
+		int i = 0;
+		boolean negative = false;
+		if (len > 0 && (tok[0] == '-' || tok[0] == '+')) {
+			negative = tok[0] == '-';
+			i = 1;
+		}
+		if (i == len)
+			throw new NumberFormatException("For input string: \"" + text() + "\"");
+
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int result = 0;
+		for (; i < len; i++) {
+			int digit = tok[i] - '0';
+			if (digit < 0 || digit > 9 || result < limit / 10 || result * 10 < limit + digit)
+				throw new NumberFormatException("For input string: \"" + text() + "\"");
+			result = result * 10 - digit;
+		}
+		return negative ? result : -result;
+	}
+
+	// the token as a String, in the platform charset like the line reader
+	public String text() {
+		return new String(tok, 0, len);
+	}
+
+	/*
+	 * Description:
+	 * Closes the channel and lets go of the buffer. There is no call that
+	 * unmaps a file: the mapping goes away once the buffer is collected, and
+	 * the closed channel cannot be mapped again. After this, next() fails
+	 * with the IOException of the closed channel.
+	 */
+	public void close() throws IOException {
+		buf = ByteBuffer.allocate(0);
+		if (file != null)
+			file.close();
+		else
+			in.close();
+	}
+}
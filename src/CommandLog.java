@@ -0,0 +1,227 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Write-ahead log of the changes to a SubwayGraph, with checkpoints.
+ *
+ * Without it, the only way to get a graph back after a restart is to replay
+ * every command from the very first one. With a log, every insert, adjacent
+ * and delete that changes the graph is appended to a log file as a small
+ * binary record before the graph itself is changed, so a change is never
+ * made without being in the log. Once the change is made, SubwayGraph calls
+ * applied(). Every so many changes the whole graph is saved there as a
+ * checkpoint (a SnapshotFile) and a new, empty log file is started.
+ * Recovery loads the newest checkpoint and replays only the log that came
+ * after it, so it takes time for the recent changes, not the whole history.
+ *
+ * The directory holds, for the newest checkpoint taken after seq changes:
+ *
+ *   checkpoint-<seq>.snap   the graph after the first seq changes
+ *   wal-<seq>.log           the changes after those
+ *
+ * (no checkpoint-0.snap: before the first checkpoint the graph starts empty).
+ * Older files are deleted once a newer checkpoint is in place.
+ *
+ * Records (ints big-endian):
+ *
+ *   byte 'I', int x, int y, int length, byte name[length] (UTF-8)
+ *   byte 'A', int x1, int y1, int x2, int y2
+ *   byte 'D', int x, int y
+ *
+ * Each record is handed to the operating system as soon as it is written, so
+ * it survives the process dying (not a power cut; there is no fsync per
+ * record). A record that was cut short by a crash is dropped on recovery. A
+ * whole record whose change the crash kept from being made is replayed, so
+ * recovery finishes it.
+ *
+ * A record may also be for a command that turns out to change nothing (a
+ * track to a station inserted later in a bulk import, say). Replaying it
+ * changes nothing either, since replay applies the commands one by one in
+ * the same order.
+ */
+public class CommandLog {
+
+	static final byte INSERT = 'I', ADJACENT = 'A', DELETE = 'D';
+
+	private final File dir;
+	private final int checkpointEvery; // changes between checkpoints
+	private long seq; // changes covered by the newest checkpoint
+	private int pending; // changes in the current log file
+	private FileChannel channel; // the current log file, appended to
+	private ByteBuffer record = ByteBuffer.allocate(64);
+
+	private CommandLog(File dir, int checkpointEvery, long seq, int pending) throws IOException {
+		this.dir = dir;
+		this.checkpointEvery = checkpointEvery;
+		this.seq = seq;
+		this.pending = pending;
+		channel = new RandomAccessFile(logFile(seq), "rw").getChannel();
+		channel.position(channel.size());
+	}
+
+	/*
+	 * Description:
+	 * Brings back the graph kept in dir (an empty graph if dir is empty or
+	 * does not exist yet) and attaches a log to it, so that its changes are
+	 * logged from now on. A checkpoint is taken after every checkpointEvery
+	 * changes. The stations are kept in store.
+	 */
+	public static SubwayGraph recover(String dir, int checkpointEvery, StationStore store) throws IOException {
+		File d = new File(dir);
+		if (!d.isDirectory() && !d.mkdirs())
+			throw new IOException(dir + ": cannot create log directory");
+
+		// the newest checkpoint
+		long seq = 0;
+		File[] files = d.listFiles();
+		for (File f : files) {
+			String name = f.getName();
+			if (name.startsWith("checkpoint-") && name.endsWith(".snap"))
+				seq = Math.max(seq, Long.parseLong(name.substring(11, name.length() - 5)));
+		}
+		SubwayGraph subway = seq == 0 ? new SubwayGraph(store)
+				: SubwayGraph.load(new File(d, checkpointName(seq)).getPath(), store);
+
+		// the log after it; the graph has no log attached yet, so the
+		// replayed changes are not logged again
+		File log = new File(d, logName(seq));
+		int replayed = log.exists() ? replay(log, subway) : 0;
+
+		subway.setLog(new CommandLog(d, checkpointEvery, seq, replayed));
+		return subway;
+	}
+
+	/*
+	 * Description:
+	 * Applies the records of the log file to the graph, in order, and returns
+	 * how many there were. If the file ends in the middle of a record, that
+	 * record is cut off the file, so new records go right after the last
+	 * whole one.
+	 */
+	private static int replay(File log, SubwayGraph subway) throws IOException {
+		byte[] bytes = Files.readAllBytes(log.toPath());
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		int count = 0, good = 0;
+
+		while (buf.hasRemaining()) {
+			byte op = buf.get();
+			if (op == INSERT && buf.remaining() >= 12) {
+				int x = buf.getInt(), y = buf.getInt(), length = buf.getInt();
+				if (length < 0 || buf.remaining() < length)
+					break;
+				subway.insert(new Point(x, y), new String(bytes, buf.position(), length, StandardCharsets.UTF_8));
+				buf.position(buf.position() + length);
+			} else if (op == ADJACENT && buf.remaining() >= 16)
+				subway.adjacent(new Point(buf.getInt(), buf.getInt()), new Point(buf.getInt(), buf.getInt()));
+			else if (op == DELETE && buf.remaining() >= 8)
+				subway.delete(new Point(buf.getInt(), buf.getInt()));
+			else
+				break;
+			count++;
+			good = buf.position();
+		}
+
+		if (good < bytes.length) {
+			try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+				raf.setLength(good);
+			}
+		}
+		return count;
+	}
+
+	// logs an insert of name s at (x, y)
+	void insert(SubwayGraph subway, int x, int y, String s) {
+		byte[] name = s.getBytes(StandardCharsets.UTF_8);
+		if (record.capacity() < 13 + name.length)
+			record = ByteBuffer.allocate(13 + name.length);
+		record.clear();
+		record.put(INSERT).putInt(x).putInt(y).putInt(name.length).put(name);
+		append(subway);
+	}
+
+	// logs a track between (x1, y1) and (x2, y2)
+	void adjacent(SubwayGraph subway, int x1, int y1, int x2, int y2) {
+		record.clear();
+		record.put(ADJACENT).putInt(x1).putInt(y1).putInt(x2).putInt(y2);
+		append(subway);
+	}
+
+	// logs a delete of the station at (x, y)
+	void delete(SubwayGraph subway, int x, int y) {
+		record.clear();
+		record.put(DELETE).putInt(x).putInt(y);
+		append(subway);
+	}
+
+	// writes the record to the log file
+	private void append(SubwayGraph subway) {
+		try {
+			record.flip();
+			while (record.hasRemaining())
+				channel.write(record);
+			pending++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// called once the changes logged so far are made to subway: takes a
+	// checkpoint of it if it is time for one
+	void applied(SubwayGraph subway) {
+		if (pending < checkpointEvery)
+			return;
+		try {
+			checkpoint(subway);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Description:
+	 * Saves the graph as the checkpoint after all changes so far, and starts
+	 * a new log file for the changes after it. The checkpoint is written
+	 * under a temporary name and renamed when complete, so a crash in the
+	 * middle leaves the previous checkpoint and log in charge. Only then are
+	 * the older files deleted.
+	 */
+	public void checkpoint(SubwayGraph subway) throws IOException {
+		long next = seq + pending;
+		File tmp = new File(dir, checkpointName(next) + ".tmp");
+		subway.save(tmp.getPath());
+		Files.move(tmp.toPath(), new File(dir, checkpointName(next)).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+		channel.close();
+		long old = seq;
+		seq = next;
+		pending = 0;
+		channel = new RandomAccessFile(logFile(seq), "rw").getChannel();
+
+		new File(dir, logName(old)).delete();
+		new File(dir, checkpointName(old)).delete();
+	}
+
+	// closes the log file
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private File logFile(long s) {
+		return new File(dir, logName(s));
+	}
+
+	private static String checkpointName(long s) {
+		return "checkpoint-" + s + ".snap";
+	}
+
+	private static String logName(long s) {
+		return "wal-" + s + ".log";
+	}
+}
@@ -0,0 +1,29 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+ * The tokens of a driver command stream, one at a time.
+ *
+ * The driver's state machine only needs to know, for the current token,
+ * whether it is a given command word, its int value, or (for station names and
+ * error messages) its text. Hiding the input behind this interface lets the
+ * same state machine run on the line-by-line reader (BufferedReader and
+ * StringTokenizer) and on ByteCommandReader, which parses straight from bytes,
+ * so both accept exactly the same input and fail with the same messages.
+ * Closing the tokens closes the input they read.
+ */
+public interface CommandTokens extends Closeable {
+
+	// moves to the next token; false at the end of the input
+	boolean next() throws IOException;
+
+	// true if the current token is exactly word
+	boolean is(String word);
+
+	// the current token as an int, like Integer.parseInt (which means a
+	// NumberFormatException if it is not one)
+	int intValue();
+
+	// the current token as a String
+	String text();
+}
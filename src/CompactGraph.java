@@ -0,0 +1,575 @@
+import java.util.Arrays;
+
+/*
+ * Read-optimized snapshot of a SubwayGraph.
+ *
+ * The live graph keeps every station as a slot of its StationStore, with its
+ * neighbors in a block of AdjacencySets wherever that happened to be free,
+ * which is fine for updates but means a BFS jumps all over memory.
+ * This class packs the stations into dense int ids (in the inorder / Point order
+ * of the splay tree) and stores the edges in compressed sparse row (CSR) form:
+ *
+ *   the neighbors of station i are targets[offsets[i]] .. targets[offsets[i + 1] - 1]
+ *
+ * in the same order as the station's adjacency list, so a search over the
+ * snapshot visits stations in exactly the same order as a search over the slots.
+ *
+ * A search stops when it reaches the finish station itself (its id), not the
+ * first station with the same name as the finish: names need not be unique,
+ * and a path to a namesake of the finish is not a route to it.
+ *
+ * A snapshot never changes after it is built. It keeps its own copy of the
+ * coordinates and names, so it does not depend on the store either, and the
+ * live graph can keep changing while searches run on an older snapshot (see
+ * GraphVersion). SubwayGraph builds a new one when a Route needs it after the
+ * graph was modified. The searches keep their state in a SearchWorkspace, so
+ * several searches can run on one snapshot at the same time, each with its
+ * own workspace.
+ */
+public class CompactGraph {
+
+	// what a weighted route minimizes: the number of stations (plain BFS),
+	// or the total length of the tracks, measured straight or along the grid
+	public static final int HOPS = 0, EUCLIDEAN = 1, MANHATTAN = 2;
+
+	int[] xs, ys; // id -> coordinates, sorted in Point order
+	String[] names; // id -> name
+	int[] offsets; // CSR row starts, length size() + 1
+	int[] targets; // CSR neighbor ids
+
+	// workspace for the methods that do not take one. Only one thread
+	// at a time may use those
+	private final SearchWorkspace own = new SearchWorkspace();
+
+	/*
+	 * Description:
+	 * Builds the snapshot from the stations of the tree. First every station
+	 * gets its dense id (kept in the station store, see
+	 * StationStore.index()), then the neighbor lists are copied into one
+	 * flat array, leaving out tombstones (stations deleted lazily that are
+	 * still in the lists). The caller must make sure the graph does not
+	 * change while this runs.
+	 */
+	public CompactGraph(SplayTree tree, AdjacencySets neighbors) {
+		StationStore store = tree.store;
+		int[] stations = tree.inOrderNodes();
+		int n = stations.length;
+		xs = new int[n];
+		ys = new int[n];
+		names = new String[n];
+
+		// assigns ids, copies the station data and counts the edges
+		int edges = 0;
+		for (int i = 0; i < n; i++) {
+			store.setIndex(stations[i], i);
+			xs[i] = store.x(stations[i]);
+			ys[i] = store.y(stations[i]);
+			names[i] = store.name(stations[i]);
+			edges += neighbors.size(stations[i]);
+		}
+
+		// copies the neighbor lists, row by row
+		offsets = new int[n + 1];
+		int[] t = new int[edges];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			offsets[i] = k;
+			for (int j = 0, e = neighbors.end(stations[i]); j < e; j++) {
+				int m = neighbors.neighbor(stations[i], j);
+				if (m != AdjacencySets.NIL && !store.deleted(m))
+					t[k++] = store.index(m);
+			}
+		}
+		offsets[n] = k;
+		targets = k < edges ? Arrays.copyOf(t, k) : t;
+	}
+
+	// a snapshot made from arrays that already have the layout above (see
+	// SnapshotFile). The arrays are used as they are, not copied
+	CompactGraph(int[] xs, int[] ys, String[] names, int[] offsets, int[] targets) {
+		this.xs = xs;
+		this.ys = ys;
+		this.names = names;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	// the snapshot's own workspace. Only one thread at a time may use it
+	SearchWorkspace workspace() {
+		return own;
+	}
+
+	// number of stations in the snapshot
+	public int size() {
+		return xs.length;
+	}
+
+	/*
+	 * Description:
+	 * Returns the id of the station at (x, y), or -1 if there is none. The
+	 * ids are in the inorder of the splay tree, so this is a binary search
+	 * with the same comparison as Point.compareTo.
+	 */
+	public int find(int x, int y) {
+		int lo = 0, hi = xs.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			final int dy = ys[mid] - y;
+			final int c = 0 == dy ? xs[mid] - x : dy; // Point(x, y).compareTo(station mid)
+
+			if (c > 0) // the tree would go left
+				hi = mid - 1;
+			else if (c < 0)
+				lo = mid + 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	// the station in the same format as StationStore.station
+	public String station(int id) {
+		return "Station " + xs[id] + ", " + ys[id] + " " + names[id];
+	}
+
+	/*
+	 * Description:
+	 * Breadth first search from station id "from" until station id "to" is
+	 * dequeued. Returns the stations of the path, one per line, or "NO PATH".
+	 * The queue is a plain int array since every station is enqueued at most
+	 * once.
+	 */
+	public String route(int from, int to) {
+		return route(from, to, own);
+	}
+
+	// route() with the given workspace
+	public String route(int from, int to, SearchWorkspace w) {
+		return bfs(from, to, w) ? path(to, w) : "NO PATH";
+	}
+
+	// route() with the given workspace, written to out instead of returned
+	public void route(int from, int to, SearchWorkspace w, RouteWriter out) {
+		if (bfs(from, to, w))
+			path(to, w, out);
+		else
+			out.noPath();
+	}
+
+	// route() with the given workspace, as the ids of the stations on the
+	// path (see write() and text()), or null if there is no path
+	public int[] routeIds(int from, int to, SearchWorkspace w) {
+		return bfs(from, to, w) ? ids(to, w) : null;
+	}
+
+	// the BFS of route(). Returns true if "to" was reached, and then the
+	// path is in the parent array of w
+	private boolean bfs(int from, int to, SearchWorkspace w) {
+		w.begin(size());
+		int[] mark = w.mark, parent = w.parent, queue = w.queue;
+		int stamp = w.stamp;
+
+		int head = 0, tail = 0;
+		queue[tail++] = from;
+		mark[from] = stamp;
+		parent[from] = -1;
+
+		while (head < tail) {
+			int curr = queue[head++];
+
+			// found the destination, the parents lead back to the start
+			if (curr == to) {
+				if (Metrics.enabled)
+					Metrics.search(head - 1, tracks(queue, 0, head - 1));
+				return true;
+			}
+
+			// enqueues all unvisited neighbors of curr
+			for (int e = offsets[curr]; e < offsets[curr + 1]; e++) {
+				int next = targets[e];
+				if (mark[next] != stamp) {
+					mark[next] = stamp;
+					parent[next] = curr;
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		// there is no path
+		if (Metrics.enabled)
+			Metrics.search(head, tracks(queue, 0, head));
+		return false;
+	}
+
+	/*
+	 * Description:
+	 * One breadth first search from "from" for many destinations. The search
+	 * stops as soon as every station in "to" has been dequeued, and each path
+	 * is read off the parent array at the moment its station is dequeued.
+	 * Since a BFS never changes a parent once it is set, every path is the
+	 * same one route(from, to[i]) would return. An id of -1 in "to" (a station
+	 * that does not exist) gets "NO PATH".
+	 */
+	public String[] routes(int from, int[] to) {
+		return routes(from, to, own);
+	}
+
+	// routes() with the given workspace
+	public String[] routes(int from, int[] to, SearchWorkspace w) {
+		w.begin(size());
+		int[] mark = w.mark, parent = w.parent, queue = w.queue;
+		int stamp = w.stamp;
+		String[] result = new String[to.length];
+
+		// how many of the destinations are not settled yet, and for each
+		// station the list of requests that want it: first[id] is the first
+		// request, chain[i] the request after request i (-1 ends both)
+		int left = 0;
+		int[] first = new int[size()];
+		int[] chain = new int[to.length];
+		Arrays.fill(first, -1);
+		for (int i = 0; i < to.length; i++) {
+			if (to[i] == -1) {
+				result[i] = "NO PATH";
+				continue;
+			}
+			if (first[to[i]] == -1)
+				left++;
+			chain[i] = first[to[i]];
+			first[to[i]] = i;
+		}
+
+		int head = 0, tail = 0;
+		queue[tail++] = from;
+		mark[from] = stamp;
+		parent[from] = -1;
+
+		while (head < tail && left > 0) {
+			int curr = queue[head++];
+
+			// a destination: its path is complete, so we write it down for
+			// every request that asked for it
+			if (first[curr] != -1) {
+				String s = path(curr, w);
+				for (int i = first[curr]; i != -1; i = chain[i])
+					result[i] = s;
+				left--;
+			}
+
+			// enqueues all unvisited neighbors of curr
+			for (int e = offsets[curr]; e < offsets[curr + 1]; e++) {
+				int next = targets[e];
+				if (mark[next] != stamp) {
+					mark[next] = stamp;
+					parent[next] = curr;
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		if (Metrics.enabled)
+			Metrics.search(head, tracks(queue, 0, head));
+
+		// the destinations the search never reached
+		for (int i = 0; i < to.length; i++)
+			if (result[i] == null)
+				result[i] = "NO PATH";
+		return result;
+	}
+
+	/*
+	 * Description:
+	 * Bidirectional breadth first search. One BFS grows from "from" and one from
+	 * "to", and each round we expand one whole level of whichever frontier is
+	 * smaller. As soon as a level touches a station already reached by the
+	 * other side we have a shortest path. Since stations in one level can meet
+	 * the other side at different depths, the whole level is scanned and the
+	 * best meeting edge is kept, which keeps the path minimum-hop.
+	 *
+	 * On a big network this explores about 2 b^(d/2) stations instead of b^d.
+	 * The path has the same number of stations as the one route() finds, but
+	 * when there are several shortest paths it may pick a different one.
+	 */
+	public String bidirectionalRoute(int from, int to) {
+		return bidirectionalRoute(from, to, own);
+	}
+
+	// bidirectionalRoute() with the given workspace
+	public String bidirectionalRoute(int from, int to, SearchWorkspace w) {
+		return meet(from, to, w) ? path(to, w) : "NO PATH";
+	}
+
+	// bidirectionalRoute() with the given workspace, written to out instead
+	// of returned
+	public void bidirectionalRoute(int from, int to, SearchWorkspace w, RouteWriter out) {
+		if (meet(from, to, w))
+			path(to, w, out);
+		else
+			out.noPath();
+	}
+
+	// bidirectionalRoute() with the given workspace, as the ids of the
+	// stations on the path, or null if there is no path
+	public int[] bidirectionalRouteIds(int from, int to, SearchWorkspace w) {
+		return meet(from, to, w) ? ids(to, w) : null;
+	}
+
+	// the search of bidirectionalRoute(). Returns true if the two sides met,
+	// and then the whole path is in the parent array of w
+	private boolean meet(int from, int to, SearchWorkspace w) {
+		w.begin(size());
+		int[] mark = w.mark, parent = w.parent, queue = w.queue, dist = w.dist;
+		int[] markB = w.markB, parentB = w.parentB, queueB = w.queueB, distB = w.distB;
+		int stamp = w.stamp;
+
+		if (from == to) {
+			parent[from] = -1;
+			return true;
+		}
+
+		int head = 0, tail = 0, headB = 0, tailB = 0;
+		queue[tail++] = from;
+		mark[from] = stamp;
+		parent[from] = -1;
+		dist[from] = 0;
+		queueB[tailB++] = to;
+		markB[to] = stamp;
+		parentB[to] = -1;
+		distB[to] = 0;
+
+		// best meeting edge so far: a is reached from the start, b from the finish
+		int a = -1, b = -1, best = Integer.MAX_VALUE;
+
+		// stops when either side runs out, then there is no path
+		while (head < tail && headB < tailB) {
+			if (tail - head <= tailB - headB) {
+				// expands one level of the forward frontier
+				int end = tail;
+				while (head < end) {
+					int curr = queue[head++];
+					for (int e = offsets[curr]; e < offsets[curr + 1]; e++) {
+						int next = targets[e];
+						if (markB[next] == stamp && dist[curr] + 1 + distB[next] < best) {
+							best = dist[curr] + 1 + distB[next];
+							a = curr;
+							b = next;
+						}
+						if (mark[next] != stamp) {
+							mark[next] = stamp;
+							parent[next] = curr;
+							dist[next] = dist[curr] + 1;
+							queue[tail++] = next;
+						}
+					}
+				}
+			} else {
+				// expands one level of the backward frontier
+				int end = tailB;
+				while (headB < end) {
+					int curr = queueB[headB++];
+					for (int e = offsets[curr]; e < offsets[curr + 1]; e++) {
+						int next = targets[e];
+						if (mark[next] == stamp && dist[next] + 1 + distB[curr] < best) {
+							best = dist[next] + 1 + distB[curr];
+							a = next;
+							b = curr;
+						}
+						if (markB[next] != stamp) {
+							markB[next] = stamp;
+							parentB[next] = curr;
+							distB[next] = distB[curr] + 1;
+							queueB[tailB++] = next;
+						}
+					}
+				}
+			}
+
+			// the two searches met in this level
+			if (a != -1) {
+				// hooks the backward half onto the forward parents, so the
+				// normal path walk works from the finish station
+				for (int prev = a, curr = b; curr != -1;) {
+					int next = parentB[curr];
+					parent[curr] = prev;
+					prev = curr;
+					curr = next;
+				}
+				if (Metrics.enabled)
+					Metrics.search(head + headB, tracks(queue, 0, head) + tracks(queueB, 0, headB));
+				return true;
+			}
+		}
+
+		// there is no path
+		if (Metrics.enabled)
+			Metrics.search(head + headB, tracks(queue, 0, head) + tracks(queueB, 0, headB));
+		return false;
+	}
+
+	// the tracks a search scanned when it expanded queue[from .. to - 1],
+	// for Metrics (the loops themselves do not count)
+	private long tracks(int[] queue, int from, int to) {
+		long n = 0;
+		for (int i = from; i < to; i++)
+			n += offsets[queue[i] + 1] - offsets[queue[i]];
+		return n;
+	}
+
+	/*
+	 * Description:
+	 * Shortest route by length instead of by stations: a track between two
+	 * stations is as long as the distance between their coordinates, under
+	 * the metric (EUCLIDEAN or MANHATTAN). Same output as route().
+	 *
+	 * This is A*: stations are expanded in order of (length so far + straight
+	 * distance left to the finish), from an IndexedHeap. The distance left can
+	 * never be more than the rest of any route (a track is never shorter than
+	 * the distance it covers), so the first time the finish comes off the heap
+	 * its route is a shortest one. Compared to a BFS the search heads for the
+	 * finish and leaves most of a spread-out network alone.
+	 */
+	public String weightedRoute(int from, int to, int metric) {
+		return weightedRoute(from, to, metric, own);
+	}
+
+	// weightedRoute() with the given workspace
+	public String weightedRoute(int from, int to, int metric, SearchWorkspace w) {
+		return astar(from, to, metric, w) ? path(to, w) : "NO PATH";
+	}
+
+	// weightedRoute() with the given workspace, written to out instead of
+	// returned
+	public void weightedRoute(int from, int to, int metric, SearchWorkspace w, RouteWriter out) {
+		if (astar(from, to, metric, w))
+			path(to, w, out);
+		else
+			out.noPath();
+	}
+
+	// weightedRoute() with the given workspace, as the ids of the stations
+	// on the path, or null if there is no path
+	public int[] weightedRouteIds(int from, int to, int metric, SearchWorkspace w) {
+		return astar(from, to, metric, w) ? ids(to, w) : null;
+	}
+
+	// the search of weightedRoute(). Returns true if "to" was reached, and
+	// then the path is in the parent array of w
+	private boolean astar(int from, int to, int metric, SearchWorkspace w) {
+		w.begin(size());
+		int[] mark = w.mark, parent = w.parent;
+		double[] cost = w.cost;
+		IndexedHeap heap = w.heap;
+		int stamp = w.stamp;
+		heap.begin(size());
+
+		mark[from] = stamp;
+		parent[from] = -1;
+		cost[from] = 0;
+		heap.push(from, distance(from, to, metric));
+		int expanded = 0; // for Metrics
+		long scanned = 0;
+
+		while (!heap.isEmpty()) {
+			int curr = heap.pop();
+			if (curr == to) {
+				if (Metrics.enabled)
+					Metrics.search(expanded, scanned);
+				return true;
+			}
+			expanded++;
+			scanned += offsets[curr + 1] - offsets[curr];
+
+			// relaxes the tracks of curr. A station that was already popped
+			// goes back on the heap if it is reached a shorter way (which a
+			// consistent heuristic only allows through rounding)
+			for (int e = offsets[curr]; e < offsets[curr + 1]; e++) {
+				int next = targets[e];
+				double c = cost[curr] + distance(curr, next, metric);
+				if (mark[next] != stamp || c < cost[next]) {
+					mark[next] = stamp;
+					parent[next] = curr;
+					cost[next] = c;
+					heap.push(next, c + distance(next, to, metric));
+				}
+			}
+		}
+
+		// there is no path
+		if (Metrics.enabled)
+			Metrics.search(expanded, scanned);
+		return false;
+	}
+
+	// the distance between stations a and b under the metric
+	private double distance(int a, int b, int metric) {
+		double dx = (double) xs[a] - xs[b], dy = (double) ys[a] - ys[b];
+		return metric == MANHATTAN ? Math.abs(dx) + Math.abs(dy) : Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/*
+	 * Description:
+	 * Walks back from "to" along the parent array and builds the route string
+	 * from start to finish. The ids are collected first so the string can be
+	 * appended in order instead of inserting at the front for every station.
+	 */
+	private String path(int to, SearchWorkspace w) {
+		int[] parent = w.parent, scratch = w.scratch;
+		int len = 0;
+		for (int curr = to; curr != -1; curr = parent[curr])
+			scratch[len++] = curr;
+
+		StringBuilder s = new StringBuilder();
+		for (int i = len - 1; i >= 0; i--)
+			s.append(station(scratch[i])).append('\n');
+		return s.toString();
+	}
+
+	// the path in the parent array of w as station ids, from start to finish
+	private int[] ids(int to, SearchWorkspace w) {
+		int[] parent = w.parent;
+		int len = 0;
+		for (int curr = to; curr != -1; curr = parent[curr])
+			len++;
+
+		int[] ids = new int[len];
+		for (int curr = to; curr != -1; curr = parent[curr])
+			ids[--len] = curr;
+		return ids;
+	}
+
+	// the route of a path of station ids (null for none), the same string
+	// route() returns for it
+	public String text(int[] ids) {
+		if (ids == null)
+			return "NO PATH";
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < ids.length; i++)
+			s.append(station(ids[i])).append('\n');
+		return s.toString();
+	}
+
+	// a path of station ids (null for none) written to out, the same way
+	// route() writes it
+	public void write(int[] ids, RouteWriter out) {
+		if (ids == null) {
+			out.noPath();
+			return;
+		}
+		for (int i = 0; i < ids.length; i++)
+			out.station(xs[ids[i]], ys[ids[i]], names[ids[i]]);
+		out.endRoute();
+	}
+
+	// path() written to out, one station at a time, then the blank line
+	// that ends a route
+	private void path(int to, SearchWorkspace w, RouteWriter out) {
+		int[] parent = w.parent, scratch = w.scratch;
+		int len = 0;
+		for (int curr = to; curr != -1; curr = parent[curr])
+			scratch[len++] = curr;
+
+		for (int i = len - 1; i >= 0; i--)
+			out.station(xs[scratch[i]], ys[scratch[i]], names[scratch[i]]);
+		out.endRoute();
+	}
+}
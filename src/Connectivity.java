@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/*
+ * Which stations are connected to which, as a union-find (disjoint set)
+ * structure.
+ *
+ * A Route between two stations in different parts of the network ends in
+ * "NO PATH" only after the BFS has visited every station it can reach from the
+ * start. With this structure, SubwayGraph can tell that the two stations are
+ * in different components right away, in O(alpha(n)), before any snapshot or
+ * search.
+ *
+ * Stations are numbered by add() (StationStore.serial()), and a deleted station's
+ * number is not reused: SubwayGraph renumbers from scratch once too many of
+ * them are gone (see SubwayGraph.number()). Adjacent only ever joins
+ * components, which is a union. Delete can split a component, which a
+ * union-find cannot undo, so after a delete that could have split something,
+ * SubwayGraph rebuilds the structure from the live graph the next time it is
+ * asked (see SubwayGraph.connected()).
+ *
+ * Union by size and path halving keep the trees flat.
+ */
+public class Connectivity {
+
+	private int[] parent = new int[16]; // parent[i] == i for a root
+	private int[] size = new int[16]; // stations under a root
+	private int count; // serials handed out
+
+	// a new station in a component of its own; returns its serial
+	public int add() {
+		if (count == parent.length) {
+			parent = Arrays.copyOf(parent, 2 * count);
+			size = Arrays.copyOf(size, 2 * count);
+		}
+		parent[count] = count;
+		size[count] = 1;
+		return count++;
+	}
+
+	// the root of the component of station s
+	private int find(int s) {
+		while (parent[s] != s) {
+			parent[s] = parent[parent[s]];
+			s = parent[s];
+		}
+		return s;
+	}
+
+	// joins the components of stations a and b
+	public void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return;
+		if (size[a] < size[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		parent[b] = a;
+		size[a] += size[b];
+	}
+
+	// true if stations a and b are in the same component
+	public boolean connected(int a, int b) {
+		return find(a) == find(b);
+	}
+
+	// forgets every station, for a rebuild. The arrays start small again,
+	// so they end up as big as the rebuilt graph, not the biggest it was
+	public void clear() {
+		parent = new int[16];
+		size = new int[16];
+		count = 0;
+	}
+
+	// number of serials handed out since the last clear()
+	public int serials() {
+		return count;
+	}
+}
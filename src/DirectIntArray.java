@@ -0,0 +1,112 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+ * An IntArray outside the Java heap: chunks of direct ByteBuffers, in
+ * native byte order. They are not limited by -Xmx (but by
+ * -XX:MaxDirectMemorySize), and the GC never has to scan or move them.
+ *
+ * free() gives the memory back right away (see free(ByteBuffer)), and
+ * drops the chunks with it, so a get or set after that throws a
+ * NullPointerException instead of reaching memory that is gone.
+ */
+public class DirectIntArray implements IntArray {
+
+	private ByteBuffer[] chunks = { allocate(16) };
+	private long length = 16;
+
+	private static ByteBuffer allocate(int ints) {
+		return ByteBuffer.allocateDirect(4 * ints).order(ByteOrder.nativeOrder());
+	}
+
+	public int get(long i) {
+		return chunks[(int) (i >>> SHIFT)].getInt(((int) i & MASK) << 2);
+	}
+
+	public void set(long i, int v) {
+		chunks[(int) (i >>> SHIFT)].putInt(((int) i & MASK) << 2, v);
+	}
+
+	public long length() {
+		return length;
+	}
+
+	/*
+	 * Description:
+	 * The first chunk doubles (or grows to n) until it is CHUNK ints, then
+	 * whole chunks are added behind it. A new buffer is all zeros.
+	 */
+	public void grow(long n) {
+		if (n <= length)
+			return;
+		if (length < CHUNK) {
+			ByteBuffer old = chunks[0];
+			ByteBuffer b = allocate((int) Math.min(CHUNK, Math.max(2 * length, n)));
+			old.clear();
+			b.put(old);
+			b.clear();
+			chunks[0] = b;
+			length = b.capacity() / 4;
+			free(old);
+		}
+		while (length < n) {
+			int c = (int) (length >>> SHIFT);
+			if (c == chunks.length)
+				chunks = Arrays.copyOf(chunks, 2 * c);
+			chunks[c] = allocate(CHUNK);
+			length += CHUNK;
+		}
+	}
+
+	public void free() {
+		if (chunks != null)
+			for (ByteBuffer b : chunks)
+				if (b != null)
+					free(b);
+		chunks = null;
+		length = 0;
+	}
+
+	// sun.misc.Unsafe.invokeCleaner, or null if this JVM does not have it
+	private static final Object UNSAFE;
+	private static final Method CLEANER;
+	static {
+		Object unsafe = null;
+		Method cleaner = null;
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+			cleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			unsafe = null;
+			cleaner = null;
+		}
+		UNSAFE = unsafe;
+		CLEANER = cleaner;
+	}
+
+	/*
+	 * Description:
+	 * Gives the memory of a direct buffer back now, with the buffer's own
+	 * cleaner (the one the GC would run once the buffer is unreachable).
+	 * There is no public API for that, so this goes through
+	 * sun.misc.Unsafe.invokeCleaner; where that cannot be had, the buffer is
+	 * just dropped and its memory comes back at a later GC. Returns whether
+	 * the memory was freed now.
+	 */
+	static boolean free(ByteBuffer b) {
+		if (CLEANER == null)
+			return false;
+		try {
+			CLEANER.invoke(UNSAFE, b);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return false;
+		}
+	}
+}
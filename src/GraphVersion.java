@@ -0,0 +1,91 @@
+/*
+ * One published, immutable version of a SubwayGraph, for readers.
+ *
+ * The SplayTree changes its own shape on every access, and the station
+ * store, the StationIndex and the neighbor sets are changed in place by insert,
+ * adjacent and delete, so none of them can be read while a writer works on
+ * them. Instead, SubwayGraph publishes versions: a CompactGraph (stations,
+ * names and tracks, with its own coordinate lookup) plus the label index and
+ * the search mode that go with it. Nothing in a version is ever written to
+ * again, so any number of threads can route on it without locks while the
+ * writer builds the next one. A reader pins a version simply by holding on to
+ * it; an old version stays valid (and consistent) until nobody uses it.
+ */
+public class GraphVersion {
+
+	final CompactGraph graph;
+	final HubLabels labels; // null if the label index was not built
+	final boolean bidirectional;
+	final int metric; // CompactGraph.HOPS, or the metric of a weighted route
+	final long epoch; // the epoch of the graph this version was built from
+
+	GraphVersion(CompactGraph graph, HubLabels labels, boolean bidirectional, int metric, long epoch) {
+		this.graph = graph;
+		this.labels = labels;
+		this.bidirectional = bidirectional;
+		this.metric = metric;
+		this.epoch = epoch;
+	}
+
+	// the snapshot of this version
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	// the epoch of the graph this version was built from
+	public long getEpoch() {
+		return epoch;
+	}
+
+	// route() with the given workspace, looking the stations up by coordinates
+	public String route(Point start, Point finish, SearchWorkspace w) {
+		int from = graph.find(start.x, start.y);
+		int to = graph.find(finish.x, finish.y);
+		if (from == -1 || to == -1)
+			return "NO PATH";
+		return route(from, to, w);
+	}
+
+	/*
+	 * Answers one Route between two station ids of this version, the same way
+	 * SubwayGraph.route() does: with A* if routes are weighted, else from the
+	 * labels if they are built (they only know hops), else with the chosen
+	 * search. With w == null the search uses the snapshot's own
+	 * workspace, which only one thread at a time may do.
+	 */
+	public String route(int from, int to, SearchWorkspace w) {
+		if (metric != CompactGraph.HOPS)
+			return graph.weightedRoute(from, to, metric, w == null ? graph.workspace() : w);
+		if (labels != null)
+			return labels.route(graph, from, to);
+		if (w == null)
+			return bidirectional ? graph.bidirectionalRoute(from, to) : graph.route(from, to);
+		return bidirectional ? graph.bidirectionalRoute(from, to, w) : graph.route(from, to, w);
+	}
+
+	// route() as the ids of the stations on the path (see
+	// CompactGraph.write()), or null if there is no path
+	public int[] routeIds(int from, int to, SearchWorkspace w) {
+		if (w == null)
+			w = graph.workspace();
+		if (metric != CompactGraph.HOPS)
+			return graph.weightedRouteIds(from, to, metric, w);
+		if (labels != null)
+			return labels.path(from, to);
+		return bidirectional ? graph.bidirectionalRouteIds(from, to, w) : graph.routeIds(from, to, w);
+	}
+
+	// route() written to out instead of returned
+	public void route(int from, int to, SearchWorkspace w, RouteWriter out) {
+		if (w == null)
+			w = graph.workspace();
+		if (metric != CompactGraph.HOPS)
+			graph.weightedRoute(from, to, metric, w, out);
+		else if (labels != null)
+			labels.route(graph, from, to, out);
+		else if (bidirectional)
+			graph.bidirectionalRoute(from, to, w, out);
+		else
+			graph.route(from, to, w, out);
+	}
+}
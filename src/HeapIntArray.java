@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+/*
+ * An IntArray on the Java heap: chunks of int arrays. The GC never looks
+ * inside an int array, so however big the graph gets, these are a few
+ * objects to it.
+ */
+public class HeapIntArray implements IntArray {
+
+	private int[][] chunks = { new int[16] };
+	private long length = 16;
+
+	public int get(long i) {
+		return chunks[(int) (i >>> SHIFT)][(int) i & MASK];
+	}
+
+	public void set(long i, int v) {
+		chunks[(int) (i >>> SHIFT)][(int) i & MASK] = v;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	/*
+	 * Description:
+	 * The first chunk doubles (or grows to n) until it is CHUNK ints, then
+	 * whole chunks are added behind it.
+	 */
+	public void grow(long n) {
+		if (n <= length)
+			return;
+		if (length < CHUNK) {
+			chunks[0] = Arrays.copyOf(chunks[0], (int) Math.min(CHUNK, Math.max(2 * length, n)));
+			length = chunks[0].length;
+		}
+		while (length < n) {
+			int c = (int) (length >>> SHIFT);
+			if (c == chunks.length)
+				chunks = Arrays.copyOf(chunks, 2 * c);
+			chunks[c] = new int[CHUNK];
+			length += CHUNK;
+		}
+	}
+
+	// the arrays are garbage once this is, nothing to give back first
+	public void free() {
+		chunks = null;
+		length = 0;
+	}
+}
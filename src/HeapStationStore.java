@@ -0,0 +1,25 @@
+/*
+ * The coordinates and names of the stations, stored by column on the heap.
+ *
+ * A station is a slot number, and its data sits at that slot of parallel
+ * int columns (see StationStore), with no object for the station:
+ *
+ *   x, y      the coordinates
+ *   nameId    the name, as a number in the NameDictionary
+ *   serial    its id in the Connectivity
+ *   index     its id in the current CompactGraph
+ *   deleted   1 for a tombstone
+ *
+ * so a station costs 24 bytes here and its name nothing once the name is
+ * known. Its links in the splay tree and its neighbors are more columns by
+ * slot (see SplayTree and AdjacencySets), so there is no object per station
+ * anywhere. The slot of a removed station goes on a free list and is handed
+ * out again, so the columns do not grow with churn. The columns are
+ * HeapIntArrays: a few int arrays, however many stations there are.
+ */
+public class HeapStationStore extends StationStore {
+
+	public IntArray column() {
+		return new HeapIntArray();
+	}
+}
@@ -0,0 +1,91 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counts of non-negative long values (latencies in ns, stations per search,
+ * ...), for percentiles. Values are not kept; each one only bumps the counter
+ * of its bucket. Below 8 every value has its own bucket. Above that, every
+ * power of two is split into 4 buckets, so a percentile is off by at most a
+ * quarter of the value, and the whole long range fits in 8 + 61 * 4 buckets.
+ *
+ * Safe to use from several threads at once (parallel Routes).
+ */
+public class Histogram {
+
+	private static final int BUCKETS = 8 + 61 * 4;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder(), sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	// the bucket of value v
+	private static int bucket(long v) {
+		if (v < 8)
+			return (int) Math.max(0, v);
+		int exp = 63 - Long.numberOfLeadingZeros(v); // 3 or more
+		int sub = (int) (v >>> (exp - 2)) & 3;
+		return 8 + (exp - 3) * 4 + sub;
+	}
+
+	// the largest value that goes into bucket b
+	private static long top(int b) {
+		if (b < 8)
+			return b;
+		int exp = (b - 8) / 4 + 3, sub = (b - 8) % 4;
+		return ((5L + sub) << (exp - 2)) - 1;
+	}
+
+	// counts the value
+	public void add(long v) {
+		counts.incrementAndGet(bucket(v));
+		count.increment();
+		sum.add(v);
+		max.accumulateAndGet(v, Math::max);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long sum() {
+		return sum.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		long n = count();
+		return n == 0 ? 0 : (double) sum() / n;
+	}
+
+	/*
+	 * Description:
+	 * About the q-th quantile (0 < q <= 1) of the values: the top of the
+	 * bucket the value of that rank fell into, but never more than the max.
+	 */
+	public long percentile(double q) {
+		long n = count();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(q * n));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts.get(b);
+			if (seen >= rank)
+				return Math.min(top(b), max());
+		}
+		return max();
+	}
+
+	// forgets every value
+	public void clear() {
+		for (int b = 0; b < BUCKETS; b++)
+			counts.set(b, 0);
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+}
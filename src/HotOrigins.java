@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Shortest path trees for a few hot origins: the hub stations most Routes
+ * start or end at, kept up to date as the graph changes.
+ *
+ * For every origin, each station that can reach it has how many tracks away
+ * it is (hops) and its neighbor one track closer (via), so a Route from or
+ * to an origin is a walk along the via chain, with no search. Both are
+ * columns by the station's slot in the StationStore, one pair of columns
+ * per origin, next to its neighbors in AdjacencySets.
+ *
+ * A tree is built with one BFS when its origin is added, and after that it
+ * is only repaired where the graph changed:
+ *
+ *   new track        if it brings one end closer, a BFS from that end finds
+ *                    the stations it brings closer, and stops where nothing
+ *                    improves
+ *   deleted station  the stations under it in the tree lose their distance.
+ *                    Each gets the best distance a neighbor outside that
+ *                    subtree offers, and from those the subtree is grown back
+ *                    in order of distance. Nothing outside it can change
+ *   new station      has no tracks yet, so it only matters if it is at the
+ *                    point of an origin, whose tree it then starts
+ *
+ * Deleting an origin makes its whole tree the subtree, so every station loses
+ * its distance, and the slot waits for a new station at that point.
+ *
+ * The path is a shortest one, but when there are several it is not always
+ * the one the BFS would have picked.
+ */
+public class HotOrigins {
+
+	static final int FAR = Integer.MAX_VALUE; // cannot reach the origin
+	static final int NIL = -1; // no station
+
+	private final StationStore store;
+	private final AdjacencySets neighbors;
+	private final ArrayList<Point> points = new ArrayList<Point>(); // origin of each slot
+	private final ArrayList<Integer> roots = new ArrayList<Integer>(); // its station, NIL if none
+	private final ArrayList<int[]> hops = new ArrayList<int[]>(); // slot -> distance, per origin
+	private final ArrayList<int[]> via = new ArrayList<int[]>(); // slot -> next station, per origin
+
+	// no origins yet, for the stations of store with those neighbors
+	public HotOrigins(StationStore store, AdjacencySets neighbors) {
+		this.store = store;
+		this.neighbors = neighbors;
+	}
+
+	// number of origins
+	public int size() {
+		return points.size();
+	}
+
+	// number of origins that are stations right now
+	public int built() {
+		int n = 0;
+		for (int root : roots)
+			if (root != NIL)
+				n++;
+		return n;
+	}
+
+	// makes the station at p (root, or NIL if there is none yet) a hot
+	// origin, building its tree
+	public void add(Point p, int root) {
+		for (Point q : points)
+			if (q.x == p.x && q.y == p.y)
+				return;
+		points.add(p);
+		roots.add(NIL);
+		int[] h = new int[16], v = new int[16];
+		Arrays.fill(h, FAR);
+		Arrays.fill(v, NIL);
+		hops.add(h);
+		via.add(v);
+		if (root != NIL)
+			start(points.size() - 1, root);
+	}
+
+	// distance from n to origin k
+	private int hops(int n, int k) {
+		int[] h = hops.get(k);
+		return n < h.length ? h[n] : FAR;
+	}
+
+	// the next station from n towards origin k, NIL at the origin (or if
+	// n cannot reach it)
+	private int via(int n, int k) {
+		int[] v = via.get(k);
+		return n < v.length ? v[n] : NIL;
+	}
+
+	// sets the distance from n to origin k, and the next station on the way.
+	// The columns of origin k grow to the slot when they need to
+	private void set(int n, int k, int d, int next) {
+		int[] h = hops.get(k);
+		if (n >= h.length) {
+			if (d == FAR)
+				return;
+			int old = h.length;
+			h = Arrays.copyOf(h, Math.max(2 * old, n + 1));
+			Arrays.fill(h, old, h.length, FAR);
+			hops.set(k, h);
+			int[] v = Arrays.copyOf(via.get(k), h.length);
+			Arrays.fill(v, old, v.length, NIL);
+			via.set(k, v);
+		}
+		h[n] = d;
+		via.get(k)[n] = next;
+	}
+
+	// makes root the station of origin k and grows its tree
+	private void start(int k, int root) {
+		roots.set(k, root);
+		set(root, k, 0, NIL);
+		ArrayList<Integer> queue = new ArrayList<Integer>();
+		queue.add(root);
+		spread(k, queue, 0);
+	}
+
+	/*
+	 * Description:
+	 * BFS for origin k from the stations in queue (from head on, in order of
+	 * distance), giving every neighbor that is more than one track farther
+	 * than the station the distance through it.
+	 */
+	private void spread(int k, ArrayList<Integer> queue, int head) {
+		while (head < queue.size())
+			relax(k, queue.get(head++), queue);
+	}
+
+	// gives every neighbor of x that is more than one track farther from
+	// origin k than x the distance through x, and queues it
+	private void relax(int k, int x, ArrayList<Integer> queue) {
+		int d = hops(x, k) + 1;
+		for (int i = 0, e = neighbors.end(x); i < e; i++) {
+			int y = neighbors.neighbor(x, i);
+			if (y != NIL && d < hops(y, k) && !store.deleted(y)) {
+				set(y, k, d, x);
+				queue.add(y);
+			}
+		}
+	}
+
+	// a new station, which has no tracks yet
+	public void inserted(int n) {
+		for (int k = 0; k < points.size(); k++)
+			if (roots.get(k) == NIL && points.get(k).x == store.x(n) && points.get(k).y == store.y(n))
+				start(k, n);
+	}
+
+	// a new track between a and b
+	public void tracked(int a, int b) {
+		for (int k = 0; k < points.size(); k++) {
+			int da = hops(a, k), db = hops(b, k);
+			if (da != FAR && da + 1 < db)
+				improve(k, b, da + 1, a);
+			else if (db != FAR && db + 1 < da)
+				improve(k, a, db + 1, b);
+		}
+	}
+
+	// n is now d tracks from origin k, through next; so may its neighbors be
+	private void improve(int k, int n, int d, int next) {
+		set(n, k, d, next);
+		ArrayList<Integer> queue = new ArrayList<Integer>();
+		queue.add(n);
+		spread(k, queue, 0);
+	}
+
+	/*
+	 * Description:
+	 * The station s was deleted; it has already been taken out of the
+	 * adjacency lists of its neighbors (or marked as a tombstone, which the
+	 * trees skip), but its own list still has them. Repairs every tree s
+	 * was in, see the class comment.
+	 */
+	public void deleted(int s) {
+		for (int k = 0; k < points.size(); k++) {
+			if (hops(s, k) == FAR)
+				continue;
+			if (roots.get(k) == s)
+				roots.set(k, NIL);
+
+			// the subtree under s, which loses its distances. A station
+			// has one via, so it is found once
+			ArrayList<Integer> lost = new ArrayList<Integer>();
+			children(s, k, lost);
+			set(s, k, FAR, NIL);
+			for (int i = 0; i < lost.size(); i++)
+				children(lost.get(i), k, lost);
+			for (int x : lost)
+				set(x, k, FAR, NIL);
+
+			// the best way in from outside for each of them, sorted by
+			// distance (distance in the high half, position in the low)
+			int[] best = new int[lost.size()];
+			int[] through = new int[lost.size()];
+			long[] seeds = new long[lost.size()];
+			int n = 0;
+			for (int i = 0; i < lost.size(); i++) {
+				best[i] = FAR;
+				int x = lost.get(i);
+				for (int j = 0, e = neighbors.end(x); j < e; j++) {
+					int z = neighbors.neighbor(x, j);
+					int d = z == NIL ? FAR : hops(z, k);
+					if (d != FAR && d + 1 < best[i]) {
+						best[i] = d + 1;
+						through[i] = z;
+					}
+				}
+				if (best[i] != FAR)
+					seeds[n++] = (long) best[i] << 32 | i;
+			}
+			Arrays.sort(seeds, 0, n);
+
+			// the subtree grown back, in order of distance: the next station
+			// is either the next seed or the next one in the queue,
+			// whichever is closer
+			ArrayList<Integer> queue = new ArrayList<Integer>();
+			int head = 0;
+			for (int next = 0; next < n || head < queue.size();) {
+				int x;
+				if (head == queue.size() || (next < n && (int) (seeds[next] >>> 32) <= hops(queue.get(head), k))) {
+					int i = (int) seeds[next++];
+					x = lost.get(i);
+					if (hops(x, k) <= best[i])
+						continue;
+					set(x, k, best[i], through[i]);
+				} else
+					x = queue.get(head++);
+				relax(k, x, queue);
+			}
+		}
+	}
+
+	// adds the neighbors of x whose way to origin k is through x to list
+	private void children(int x, int k, ArrayList<Integer> list) {
+		for (int i = 0, e = neighbors.end(x); i < e; i++) {
+			int y = neighbors.neighbor(x, i);
+			if (y != NIL && y != x && via(y, k) == x)
+				list.add(y);
+		}
+	}
+
+	/*
+	 * Description:
+	 * The Route between from and to if one of them is a hot origin and the
+	 * other can reach it, as route() returns it: the stations one per line,
+	 * starting at from. null if the trees cannot answer it.
+	 */
+	public String route(int from, int to) {
+		for (int k = 0; k < points.size(); k++) {
+			int root = roots.get(k);
+			if (root == NIL)
+				continue;
+			if (to == root && hops(from, k) != FAR) {
+				StringBuilder s = new StringBuilder();
+				for (int x = from; x != NIL; x = via(x, k))
+					s.append(store.station(x)).append('\n');
+				return s.toString();
+			}
+			if (from == root && hops(to, k) != FAR) {
+				ArrayList<Integer> path = new ArrayList<Integer>();
+				for (int x = to; x != NIL; x = via(x, k))
+					path.add(x);
+				StringBuilder s = new StringBuilder();
+				for (int i = path.size() - 1; i >= 0; i--)
+					s.append(store.station(path.get(i))).append('\n');
+				return s.toString();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/*
+ * 2-hop label index (pruned landmark labeling) over a CompactGraph.
+ *
+ * Every station v gets a label: a list of (hub, distance to hub, next station
+ * towards the hub). The labels are built so that for any two stations s and t,
+ * some hub on a shortest s-t path appears in both labels. The distance between
+ * s and t is then just
+ *
+ *   min over common hubs h of  dist(s, h) + dist(h, t)
+ *
+ * which is a merge of two short sorted lists instead of a BFS.
+ *
+ * Building: the stations are ranked by degree (busy transfer hubs first) and we
+ * run a BFS from each one in rank order. The BFS from hub h does not label or
+ * expand a station v if the labels built so far already give a distance from h
+ * to v that is no longer than the BFS distance. With a good order most of
+ * these BFSs stop almost right away, which keeps the labels small.
+ *
+ * Paths: the "next station" in a label entry is the BFS parent of v in the BFS
+ * from h. That parent was expanded by the same BFS, so it has an entry for h
+ * too, and following these entries from s leads to h. The route is s..h
+ * followed by the reverse of t..h.
+ *
+ * The index is only valid for snapshots with the same stations and tracks as
+ * the one it was built on. SubwayGraph drops it as soon as the stations or
+ * tracks change; a renamed station only changes the snapshot the names come
+ * from, which is why route() takes the snapshot.
+ */
+public class HubLabels {
+
+	// the labels of station v are entries labelOffsets[v] .. labelOffsets[v + 1] - 1,
+	// sorted by hub rank
+	private int[] labelOffsets;
+	private int[] labelHub; // rank of the hub
+	private int[] labelDist; // hops from v to the hub
+	private int[] labelNext; // next station from v towards the hub (-1 at the hub)
+
+	private int[] order; // rank -> station id
+
+	/*
+	 * Description:
+	 * Builds the labels. While building, each station's label is kept in its
+	 * own growable arrays, and they are packed into the flat arrays at the end.
+	 */
+	public HubLabels(CompactGraph graph) {
+		int n = graph.size();
+
+		// ranks the stations by degree, highest first (ties by id)
+		Integer[] byDegree = new Integer[n];
+		for (int i = 0; i < n; i++)
+			byDegree[i] = i;
+		final int[] offsets = graph.offsets;
+		Arrays.sort(byDegree, (a, b) -> {
+			int da = offsets[a + 1] - offsets[a], db = offsets[b + 1] - offsets[b];
+			return da != db ? db - da : a - b;
+		});
+		order = new int[n];
+		for (int i = 0; i < n; i++)
+			order[i] = byDegree[i];
+
+		// labels under construction
+		int[][] hub = new int[n][], dist = new int[n][], next = new int[n][];
+		int[] count = new int[n];
+
+		// BFS workspace. hubDist[r] is the distance from the current hub to
+		// hub r, taken from the current hub's own label (INF if none)
+		int[] queue = new int[n], bfsDist = new int[n], parent = new int[n];
+		int[] hubDist = new int[n];
+		boolean[] seen = new boolean[n];
+		Arrays.fill(hubDist, Integer.MAX_VALUE);
+
+		for (int r = 0; r < n; r++) {
+			int h = order[r];
+
+			for (int i = 0; i < count[h]; i++)
+				hubDist[hub[h][i]] = dist[h][i];
+
+			int head = 0, tail = 0;
+			queue[tail++] = h;
+			seen[h] = true;
+			bfsDist[h] = 0;
+			parent[h] = -1;
+
+			while (head < tail) {
+				int v = queue[head++];
+				int d = bfsDist[v];
+
+				// pruned: the labels already know a path this short
+				if (covered(hubDist, hub[v], dist[v], count[v], d))
+					continue;
+
+				// adds (r, d, parent) to the label of v
+				if (hub[v] == null || count[v] == hub[v].length) {
+					int size = hub[v] == null ? 4 : count[v] * 2;
+					hub[v] = hub[v] == null ? new int[size] : Arrays.copyOf(hub[v], size);
+					dist[v] = dist[v] == null ? new int[size] : Arrays.copyOf(dist[v], size);
+					next[v] = next[v] == null ? new int[size] : Arrays.copyOf(next[v], size);
+				}
+				hub[v][count[v]] = r;
+				dist[v][count[v]] = d;
+				next[v][count[v]] = parent[v];
+				count[v]++;
+
+				// expands v
+				for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+					int w = graph.targets[e];
+					if (!seen[w]) {
+						seen[w] = true;
+						bfsDist[w] = d + 1;
+						parent[w] = v;
+						queue[tail++] = w;
+					}
+				}
+			}
+
+			// resets the workspace for the next hub
+			for (int i = 0; i < tail; i++)
+				seen[queue[i]] = false;
+			for (int i = 0; i < count[h]; i++)
+				hubDist[hub[h][i]] = Integer.MAX_VALUE;
+		}
+
+		// packs the labels into the flat arrays
+		labelOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++)
+			labelOffsets[v + 1] = labelOffsets[v] + count[v];
+		int total = labelOffsets[n];
+		labelHub = new int[total];
+		labelDist = new int[total];
+		labelNext = new int[total];
+		for (int v = 0; v < n; v++) {
+			if (count[v] == 0)
+				continue;
+			System.arraycopy(hub[v], 0, labelHub, labelOffsets[v], count[v]);
+			System.arraycopy(dist[v], 0, labelDist, labelOffsets[v], count[v]);
+			System.arraycopy(next[v], 0, labelNext, labelOffsets[v], count[v]);
+		}
+	}
+
+	// true if some hub of the (partial) label of v is at most d away through
+	// the current hub, using the current hub's label spread out in hubDist
+	private static boolean covered(int[] hubDist, int[] hub, int[] dist, int count, int d) {
+		for (int i = 0; i < count; i++) {
+			int hd = hubDist[hub[i]];
+			if (hd != Integer.MAX_VALUE && hd + dist[i] <= d)
+				return true;
+		}
+		return false;
+	}
+
+	// total number of label entries, to see how big the index is
+	public int entries() {
+		return labelHub.length;
+	}
+
+	/*
+	 * Description:
+	 * Number of hops between stations s and t, or -1 if they are not
+	 * connected. Both labels are sorted by hub rank, so this is a merge.
+	 */
+	public int distance(int s, int t) {
+		int best = bestEntry(s, t);
+		return best < 0 ? -1 : labelDist[best] + labelDist[entryFor(t, labelHub[best])];
+	}
+
+	/*
+	 * Description:
+	 * Same output as SubwayGraph.route(): the stations from s to t, one per
+	 * line, or "NO PATH". The path goes through the best common hub. The
+	 * station names come from graph.
+	 */
+	public String route(CompactGraph graph, int s, int t) {
+		int[] path = path(s, t);
+		if (path == null)
+			return "NO PATH";
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < path.length; i++)
+			sb.append(graph.station(path[i])).append('\n');
+		return sb.toString();
+	}
+
+	// route() written to out instead of returned
+	public void route(CompactGraph graph, int s, int t, RouteWriter out) {
+		int[] path = path(s, t);
+		if (path == null) {
+			out.noPath();
+			return;
+		}
+
+		for (int i = 0; i < path.length; i++)
+			out.station(graph.xs[path[i]], graph.ys[path[i]], graph.names[path[i]]);
+		out.endRoute();
+	}
+
+	/*
+	 * Description:
+	 * The station ids of the path from s to t through the best common hub,
+	 * or null if there is none.
+	 */
+	int[] path(int s, int t) {
+		int best = bestEntry(s, t);
+		if (best < 0)
+			return null;
+		int r = labelHub[best];
+
+		int[] path = new int[labelDist[best] + labelDist[entryFor(t, r)] + 1];
+		int k = 0;
+
+		// s up to (not including) the hub, walking the next pointers
+		for (int v = s; v != order[r]; v = labelNext[entryFor(v, r)])
+			path[k++] = v;
+
+		// the hub down to t: walked from t upwards, so filled in backwards
+		for (int v = t, i = path.length - 1; v != -1; v = labelNext[entryFor(v, r)])
+			path[i--] = v;
+
+		return path;
+	}
+
+	// index of the label entry of s whose hub gives the shortest s-t
+	// distance, or -1 if the labels have no hub in common
+	private int bestEntry(int s, int t) {
+		int i = labelOffsets[s], iEnd = labelOffsets[s + 1];
+		int j = labelOffsets[t], jEnd = labelOffsets[t + 1];
+		int best = -1, bestDist = Integer.MAX_VALUE;
+
+		while (i < iEnd && j < jEnd) {
+			if (labelHub[i] < labelHub[j])
+				i++;
+			else if (labelHub[i] > labelHub[j])
+				j++;
+			else {
+				if (labelDist[i] + labelDist[j] < bestDist) {
+					bestDist = labelDist[i] + labelDist[j];
+					best = i;
+				}
+				i++;
+				j++;
+			}
+		}
+		return best;
+	}
+
+	// index of the label entry of v for hub rank r (binary search)
+	private int entryFor(int v, int r) {
+		return Arrays.binarySearch(labelHub, labelOffsets[v], labelOffsets[v + 1], r);
+	}
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/*
+ * Binary min-heap of station ids keyed by a double, for A*.
+ *
+ * java.util.PriorityQueue would need a boxed entry object per push and has no
+ * decrease-key, so a search would push a station again every time it finds a
+ * shorter way to it. This heap is three plain arrays: the ids in heap order,
+ * their keys, and for every station its position in the heap (-1 if it is not
+ * in it), which is what makes decrease-key O(log n). Equal keys are ordered by
+ * id, so a search always pops in the same order.
+ *
+ * clear() only resets the positions of the ids still in the heap, so starting
+ * a new search costs nothing for the stations the last one already popped.
+ */
+public class IndexedHeap {
+
+	private int[] heap = new int[0]; // ids, heap[0] is the minimum
+	private double[] keys = new double[0]; // keys[i] is the key of heap[i]
+	private int[] pos = new int[0]; // station id -> index in heap, or -1
+	private int size;
+
+	/*
+	 * Description:
+	 * Empties the heap for a search over n stations, growing the arrays if
+	 * needed.
+	 */
+	void begin(int n) {
+		for (int i = 0; i < size; i++)
+			pos[heap[i]] = -1;
+		size = 0;
+		if (pos.length < n) {
+			heap = new int[n];
+			keys = new double[n];
+			pos = new int[n];
+			Arrays.fill(pos, -1);
+		}
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	// true if id is waiting in the heap
+	boolean contains(int id) {
+		return pos[id] != -1;
+	}
+
+	// adds id with the key, or lowers its key if it is already in the heap
+	// with a higher one
+	void push(int id, double key) {
+		int i = pos[id];
+		if (i == -1) {
+			i = size++;
+			heap[i] = id;
+			keys[i] = key;
+			pos[id] = i;
+		} else if (key < keys[i])
+			keys[i] = key;
+		else
+			return;
+		up(i);
+	}
+
+	// removes and returns the id with the smallest key
+	int pop() {
+		int top = heap[0];
+		pos[top] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			keys[0] = keys[size];
+			pos[heap[0]] = 0;
+			down(0);
+		}
+		return top;
+	}
+
+	// true if the entry at i must come before the one at j
+	private boolean less(int i, int j) {
+		return keys[i] < keys[j] || (keys[i] == keys[j] && heap[i] < heap[j]);
+	}
+
+	private void up(int i) {
+		while (i > 0) {
+			int p = (i - 1) >>> 1;
+			if (!less(i, p))
+				break;
+			swap(i, p);
+			i = p;
+		}
+	}
+
+	private void down(int i) {
+		while (true) {
+			int l = 2 * i + 1, min = i;
+			if (l < size && less(l, min))
+				min = l;
+			if (l + 1 < size && less(l + 1, min))
+				min = l + 1;
+			if (min == i)
+				return;
+			swap(i, min);
+			i = min;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int id = heap[i];
+		double key = keys[i];
+		heap[i] = heap[j];
+		keys[i] = keys[j];
+		heap[j] = id;
+		keys[j] = key;
+		pos[heap[i]] = i;
+		pos[heap[j]] = j;
+	}
+}
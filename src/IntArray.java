@@ -0,0 +1,38 @@
+/*
+ * A growable array of ints, the one building block of the live graph.
+ *
+ * A station is a slot number (see StationStore), and everything the graph
+ * keeps about it is an int at that slot of some array: its coordinates, its
+ * links in the splay tree, where its neighbors are. The neighbors themselves
+ * and the hash index are more arrays of ints. So the live graph is a few big
+ * arrays, not an object (or three) per station, and where those arrays live
+ * is up to the implementation:
+ *
+ *   HeapIntArray    int arrays on the Java heap
+ *   DirectIntArray  direct buffers outside the heap
+ *
+ * Both keep the ints in chunks of CHUNK, so growing never copies what is
+ * already there (only the first chunk grows by doubling until it is full
+ * size, so a small graph stays small), and no single array or buffer has to
+ * hold more than CHUNK ints. Indexes are longs, so an array can go past
+ * 2^31 ints.
+ */
+public interface IntArray {
+
+	static final int SHIFT = 16;
+	static final int CHUNK = 1 << SHIFT; // ints per chunk
+	static final int MASK = CHUNK - 1;
+
+	int get(long i);
+
+	void set(long i, int v);
+
+	// number of ints there is room for
+	long length();
+
+	// makes room for at least n ints; the new ones are 0
+	void grow(long n);
+
+	// gives the memory back; the array must not be used after this
+	void free();
+}
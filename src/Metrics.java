@@ -0,0 +1,142 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * Runtime metrics of the driver and the graph engine.
+ *
+ * Everything is off unless "enabled" is set (the driver's --metrics flag).
+ * Off, every place that reports here only tests that flag, and the counting
+ * that feeds it is done in local variables the search or splay loop already
+ * has, or after the loop. On, it keeps:
+ *
+ *   - per command type, a count and a latency histogram
+ *   - per search (one BFS, bidirectional BFS or batch BFS), the stations
+ *     expanded and the tracks scanned
+ *   - per SplayTree.splay, the rotations; per tree lookup, the depth
+ *
+ * and also emits them as JFR events (category "Subway"), which a flight
+ * recording picks up like any other event: subway.Command and subway.Search.
+ * Splays are too frequent for an event each and only go into the histograms.
+ *
+ * report() is what the driver's "stats" command prints, together with
+ * SubwayGraph.stats() for the shape of the graph itself.
+ */
+public class Metrics {
+
+	// set before any command runs; read on every instrumented call
+	public static boolean enabled;
+
+	// command types
+	static final int INSERT = 0, ADJACENT = 1, ROUTE = 2, DELETE = 3, DEBUG_PRINT = 4, BUILD_LABELS = 5, STATS = 6,
+			ROUTE_BATCH = 7, NEAREST = 8, RANGE = 9, BULK_IMPORT = 10;
+	static final String[] COMMANDS = { "insert", "Adjacent", "Route", "Delete", "debug_print", "build_labels",
+			"stats", "Route batch", "Nearest", "Range", "bulk import" };
+
+	private static final Histogram[] commands = new Histogram[COMMANDS.length];
+	static {
+		for (int i = 0; i < commands.length; i++)
+			commands[i] = new Histogram();
+	}
+	private static final Histogram expanded = new Histogram(); // stations per search
+	private static final Histogram scanned = new Histogram(); // tracks per search
+	private static final Histogram rotations = new Histogram(); // per splay
+	private static final Histogram depth = new Histogram(); // per tree lookup
+
+	// a command of the given type took nanos
+	public static void command(int type, long nanos) {
+		commands[type].add(nanos);
+		CommandEvent e = new CommandEvent();
+		if (e.shouldCommit()) {
+			e.command = COMMANDS[type];
+			e.nanos = nanos;
+			e.commit();
+		}
+	}
+
+	// a search expanded this many stations and scanned this many tracks
+	public static void search(int stations, long tracks) {
+		expanded.add(stations);
+		scanned.add(tracks);
+		SearchEvent e = new SearchEvent();
+		if (e.shouldCommit()) {
+			e.expanded = stations;
+			e.scanned = tracks;
+			e.commit();
+		}
+	}
+
+	// a splay did this many rotations
+	public static void splay(int n) {
+		rotations.add(n);
+	}
+
+	// a tree lookup went this many levels down
+	public static void depth(int d) {
+		depth.add(d);
+	}
+
+	// forgets everything counted so far
+	public static void clear() {
+		for (Histogram h : commands)
+			h.clear();
+		expanded.clear();
+		scanned.clear();
+		rotations.clear();
+		depth.clear();
+	}
+
+	/*
+	 * Description:
+	 * The counters as text: one line per command type that was seen (count
+	 * and latency percentiles in microseconds) and one line per engine
+	 * histogram.
+	 */
+	public static String report() {
+		if (!enabled)
+			return "metrics off (run with --metrics)";
+
+		StringBuilder sb = new StringBuilder("commands (latency in us):\n");
+		for (int i = 0; i < commands.length; i++)
+			if (commands[i].count() > 0)
+				line(sb, COMMANDS[i], commands[i], 1e3);
+		sb.append("engine:\n");
+		line(sb, "stations expanded per search", expanded, 1);
+		line(sb, "tracks scanned per search", scanned, 1);
+		line(sb, "rotations per splay", rotations, 1);
+		line(sb, "tree depth per lookup", depth, 1);
+		return sb.substring(0, sb.length() - 1);
+	}
+
+	// one histogram as a line, values divided by unit
+	private static void line(StringBuilder sb, String name, Histogram h, double unit) {
+		sb.append(String.format("  %-30s count %d  mean %.1f  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f\n", name,
+				h.count(), h.mean() / unit, h.percentile(0.50) / unit, h.percentile(0.90) / unit,
+				h.percentile(0.99) / unit, h.max() / unit));
+	}
+
+	@Name("subway.Command")
+	@Label("Subway Command")
+	@Category("Subway")
+	public static class CommandEvent extends Event {
+		@Label("Command")
+		String command;
+
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	@Name("subway.Search")
+	@Label("Route Search")
+	@Category("Subway")
+	public static class SearchEvent extends Event {
+		@Label("Stations Expanded")
+		int expanded;
+
+		@Label("Tracks Scanned")
+		long scanned;
+	}
+}
@@ -0,0 +1,38 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * The distinct station names, each kept once and known by a number.
+ *
+ * Station names repeat a lot ("red", "blue", ...), so a store keeps the
+ * number of a station's name instead of the name itself (see StationStore).
+ * Names are never taken out, there are few distinct ones.
+ */
+public class NameDictionary {
+
+	private String[] names = new String[16]; // by id
+	private int size;
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+	// number of distinct names
+	public int size() {
+		return size;
+	}
+
+	// the id of name, adding it if it is new
+	public int intern(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		if (size == names.length)
+			names = Arrays.copyOf(names, 2 * size);
+		names[size] = name;
+		ids.put(name, size);
+		return size++;
+	}
+
+	// the name with this id
+	public String name(int id) {
+		return names[id];
+	}
+}
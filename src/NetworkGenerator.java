@@ -0,0 +1,234 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/*
+ * Makes up large subway networks, as driver input.
+ *
+ * The bundled inputs have at most a few hundred stations per file. This writes
+ * command streams of any size that look like a real network:
+ *
+ *   - the stations sit on a grid (spacing 10), the city is about square
+ *   - lines are long walks over the grid, mostly straight, turning now and
+ *     then, with a station every 1-3 grid cells
+ *   - every line starts at one of a few transfer hubs, and lines that cross
+ *     share the station at the crossing, so hubs and crossings get many tracks
+ *
+ * The stream is every insert, then every Adjacent (the tracks, line by line),
+ * then the query mix: Route commands between random stations, Delete commands
+ * of random stations and, for the rest, inserts that rename a station. The
+ * same seed always gives the same stream. Delete needs the driver's
+ * --extra-credit flag.
+ *
+ * Usage: java NetworkGenerator stations [--lines=N] [--hubs=N] [--queries=N]
+ *        [--routes=F] [--deletes=F] [--seed=S] [--out=FILE]
+ */
+public class NetworkGenerator {
+
+	static final int SPACING = 10; // grid cell size, in coordinate units
+
+	private final int stations;
+	private int lines; // 0: picked from the number of stations
+	private int hubs; // 0: picked from the number of lines
+	private int queries = 10000;
+	private double routes = 0.8, deletes = 0.05; // parts of the query mix
+	private long seed = 345;
+
+	// the network, built by build()
+	private int[] xs, ys;
+	private String[] names;
+	private int count; // stations made so far
+	private ArrayList<int[]> tracks; // {a, b} station ids
+
+	// a generator for a network of about this many stations
+	public NetworkGenerator(int stations) {
+		this.stations = stations;
+	}
+
+	public NetworkGenerator setLines(int lines) {
+		this.lines = lines;
+		return this;
+	}
+
+	public NetworkGenerator setHubs(int hubs) {
+		this.hubs = hubs;
+		return this;
+	}
+
+	public NetworkGenerator setQueries(int queries) {
+		this.queries = queries;
+		return this;
+	}
+
+	// the part of the queries that are Routes and Deletes (the rest are
+	// renames)
+	public NetworkGenerator setMix(double routes, double deletes) {
+		this.routes = routes;
+		this.deletes = deletes;
+		return this;
+	}
+
+	public NetworkGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/*
+	 * Description:
+	 * Writes the whole command stream, one command per line.
+	 */
+	public void write(PrintWriter out) {
+		Random rnd = new Random(seed);
+		build(rnd);
+
+		for (int i = 0; i < count; i++)
+			out.println("insert " + xs[i] + " " + ys[i] + " " + names[i]);
+		for (int[] t : tracks)
+			out.println("Adjacent " + xs[t[0]] + " " + ys[t[0]] + " " + xs[t[1]] + " " + ys[t[1]]);
+
+		// the query mix. Deleted stations can still come up in later
+		// queries; the driver ignores them (or answers NO PATH), like it
+		// would for any bad input
+		for (int q = 0; q < queries; q++) {
+			double kind = rnd.nextDouble();
+			int a = rnd.nextInt(count);
+			if (kind < routes) {
+				int b = rnd.nextInt(count);
+				out.println("Route " + xs[a] + " " + ys[a] + " " + xs[b] + " " + ys[b]);
+			} else if (kind < routes + deletes)
+				out.println("Delete " + xs[a] + " " + ys[a]);
+			else
+				out.println("insert " + xs[a] + " " + ys[a] + " " + names[a] + "_" + q);
+		}
+		out.flush();
+	}
+
+	/*
+	 * Description:
+	 * Lays out the lines until there are enough stations. A line walks from
+	 * its hub in one of the four grid directions, and at every step it may
+	 * turn left or right (1 in 8) and moves 1 to 3 cells. A cell that already
+	 * has a station (another line was there) becomes a shared stop. A line
+	 * ends after its length, or if it would leave the city, and the next line
+	 * starts from the next hub.
+	 */
+	private void build(Random rnd) {
+		int n = Math.max(2, stations);
+		int l = lines > 0 ? lines : Math.max(1, (int) Math.sqrt(n) / 2);
+		int h = hubs > 0 ? hubs : Math.max(1, l / 4);
+		int side = (int) Math.ceil(Math.sqrt(n)) * 2; // cells per side of the city
+		int length = Math.max(2, 2 * n / l); // stations per line, with room for sharing
+
+		xs = new int[n];
+		ys = new int[n];
+		names = new String[n];
+		count = 0;
+		tracks = new ArrayList<int[]>();
+		HashMap<Long, Integer> at = new HashMap<Long, Integer>(); // cell -> station id
+
+		int[] hubX = new int[h], hubY = new int[h];
+		for (int i = 0; i < h; i++) {
+			hubX[i] = side / 4 + rnd.nextInt(side / 2 + 1);
+			hubY[i] = side / 4 + rnd.nextInt(side / 2 + 1);
+		}
+
+		final int[] dx = { 1, 0, -1, 0 }, dy = { 0, 1, 0, -1 };
+		for (int line = 0; count < n; line++) {
+			int cx = hubX[line % h], cy = hubY[line % h];
+			int dir = rnd.nextInt(4);
+			int prev = stop(at, cx, cy, line);
+
+			for (int k = 1; k < length && count < n; k++) {
+				int turn = rnd.nextInt(8);
+				if (turn == 0)
+					dir = (dir + 1) & 3;
+				else if (turn == 1)
+					dir = (dir + 3) & 3;
+				int step = 1 + rnd.nextInt(3);
+				int nx = cx + step * dx[dir], ny = cy + step * dy[dir];
+				if (nx < 0 || ny < 0 || nx >= side || ny >= side)
+					break;
+				cx = nx;
+				cy = ny;
+				int cur = stop(at, cx, cy, line);
+				if (cur != prev)
+					tracks.add(new int[] { prev, cur });
+				prev = cur;
+			}
+		}
+	}
+
+	// the station in grid cell (cx, cy), made (and named after the line) if
+	// there is none yet
+	private int stop(HashMap<Long, Integer> at, int cx, int cy, int line) {
+		Long cell = StationIndex.key(cx, cy);
+		Integer id = at.get(cell);
+		if (id != null)
+			return id;
+		xs[count] = cx * SPACING;
+		ys[count] = cy * SPACING;
+		names[count] = "L" + line + "-" + count;
+		at.put(cell, count);
+		return count++;
+	}
+
+	static final String USAGE = "usage: java NetworkGenerator stations [--lines=N] [--hubs=N] [--queries=N]"
+			+ " [--routes=F] [--deletes=F] [--seed=S] [--out=FILE]";
+
+	// exits with the usage, for an argument it does not know or a bad value
+	// (like SubwayDriver.usage())
+	static void usage(String arg) {
+		System.err.println("Error: bad flag " + arg + "\n" + USAGE);
+		System.exit(1);
+	}
+
+	public static void main(String[] argv) throws IOException {
+		if (argv.length == 0) {
+			System.err.println(USAGE);
+			System.exit(1);
+		}
+		NetworkGenerator gen = null;
+		try {
+			gen = new NetworkGenerator(Integer.parseInt(argv[0]));
+		} catch (NumberFormatException e) {
+			usage(argv[0]);
+		}
+		double routes = gen.routes, deletes = gen.deletes;
+		String file = null;
+		for (int i = 1; i < argv.length; i++) {
+			String arg = argv[i];
+			String value = arg.substring(arg.indexOf('=') + 1);
+			try {
+				if (arg.startsWith("--lines="))
+					gen.setLines(Integer.parseInt(value));
+				else if (arg.startsWith("--hubs="))
+					gen.setHubs(Integer.parseInt(value));
+				else if (arg.startsWith("--queries="))
+					gen.setQueries(Integer.parseInt(value));
+				else if (arg.startsWith("--routes="))
+					routes = Double.parseDouble(value);
+				else if (arg.startsWith("--deletes="))
+					deletes = Double.parseDouble(value);
+				else if (arg.startsWith("--seed="))
+					gen.setSeed(Long.parseLong(value));
+				else if (arg.startsWith("--out="))
+					file = value;
+				else
+					usage(arg);
+			} catch (NumberFormatException e) {
+				usage(arg);
+			}
+		}
+		gen.setMix(routes, deletes);
+
+		PrintWriter out = new PrintWriter(new BufferedWriter(
+				file == null ? new OutputStreamWriter(System.out) : new FileWriter(file), 1 << 16));
+		gen.write(out);
+		out.close();
+	}
+}
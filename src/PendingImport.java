@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * A run of consecutive insert and Adjacent commands that the driver has read
+ * but not applied yet.
+ *
+ * In bulk import mode the driver does not apply each insert or Adjacent as
+ * soon as it is read. It collects them here until some other command (or the
+ * end of input) comes along, and then hands the whole run to
+ * SubwayGraph.bulkLoad(), which sorts the new stations once, builds the tree
+ * balanced, and attaches the tracks in one pass. Which inserts came before
+ * which tracks is kept, so the graph ends up the same as applying the
+ * commands one by one.
+ */
+public class PendingImport {
+
+	private ArrayList<Point> points = new ArrayList<Point>();
+	private ArrayList<String> names = new ArrayList<String>();
+	private ArrayList<Point> from = new ArrayList<Point>();
+	private ArrayList<Point> to = new ArrayList<Point>();
+	private int[] after = new int[64]; // inserts read before each track
+
+	// remembers the insert command of name s at p
+	public void insert(Point p, String s) {
+		points.add(p);
+		names.add(s);
+	}
+
+	// remembers the Adjacent command between a and b
+	public void adjacent(Point a, Point b) {
+		if (from.size() == after.length)
+			after = Arrays.copyOf(after, 2 * after.length);
+		after[from.size()] = points.size();
+		from.add(a);
+		to.add(b);
+	}
+
+	// number of commands waiting
+	public int size() {
+		return points.size() + from.size();
+	}
+
+	// applies every waiting command to subway and empties the run
+	public void flush(SubwayGraph subway) {
+		if (size() == 0)
+			return;
+
+		subway.bulkLoad(points.toArray(new Point[points.size()]), names.toArray(new String[names.size()]),
+				from.toArray(new Point[from.size()]), to.toArray(new Point[to.size()]),
+				Arrays.copyOf(after, from.size()));
+
+		points.clear();
+		names.clear();
+		from.clear();
+		to.clear();
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * A run of consecutive Route commands that the driver has read but not
+ * answered yet.
+ *
+ * In batch mode the driver does not answer each Route as soon as it is read.
+ * It collects them here until some other command (or the end of input) comes
+ * along, and then answers the whole run at once with SubwayGraph.routes(),
+ * which shares one BFS between all Routes from the same start. Nothing can
+ * change the graph in the middle of a run, and the batch uses the same search
+ * route() would (the labels, the bidirectional BFS or A* one Route at a time),
+ * so the answers are the same as answering them one by one, and they are
+ * printed in the original order.
+ *
+ * With a pool, the run is instead answered with SubwayGraph.routesParallel(),
+ * one search per Route, spread over the threads of the pool. A pool made
+ * for a number of threads belongs to this object and is shut down by close().
+ */
+public class PendingRoutes {
+
+	private ArrayList<Point> starts = new ArrayList<Point>();
+	private ArrayList<Point> finishes = new ArrayList<Point>();
+	private final ForkJoinPool pool; // null to answer by start station
+	private final boolean owned; // the pool is ours to shut down
+
+	// collects Routes to answer by start station
+	public PendingRoutes() {
+		this(null);
+	}
+
+	// collects Routes to answer in parallel on the pool
+	public PendingRoutes(ForkJoinPool pool) {
+		this.pool = pool;
+		owned = false;
+	}
+
+	// collects Routes to answer in parallel on a pool of its own with the
+	// given number of threads (at least 1)
+	public PendingRoutes(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads " + threads);
+		pool = new ForkJoinPool(threads);
+		owned = true;
+	}
+
+	// remembers the Route command from start to finish
+	public void add(Point start, Point finish) {
+		starts.add(start);
+		finishes.add(finish);
+	}
+
+	// number of Route commands waiting
+	public int size() {
+		return starts.size();
+	}
+
+	// answers and prints every waiting Route to out, in order, and empties
+	// the run
+	public void flush(SubwayGraph subway, RouteWriter out) {
+		if (starts.isEmpty())
+			return;
+
+		Point[] from = starts.toArray(new Point[starts.size()]);
+		Point[] to = finishes.toArray(new Point[finishes.size()]);
+		String[] routes = pool != null ? subway.routesParallel(from, to, pool) : subway.routes(from, to);
+		for (int i = 0; i < routes.length; i++)
+			out.println(routes[i]);
+
+		starts.clear();
+		finishes.clear();
+	}
+
+	// shuts down the pool if it is our own; the Routes must have been flushed
+	public void close() {
+		if (owned)
+			pool.shutdown();
+	}
+}
@@ -0,0 +1,174 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Bounded LRU cache of Route answers, keyed by the (start, finish) pair.
+ *
+ * Every answer is stored together with the epoch of the graph it was computed
+ * on. SubwayGraph bumps its epoch whenever the graph is modified, so once a
+ * lookup or a put comes with another epoch than the entries have, every entry
+ * is stale and the whole cache is dropped at once (epochs are only compared
+ * for equality, so one that wrapped around is another epoch too, not an
+ * older one). That way we never have to find out which cached routes a
+ * change could have affected, and stale entries do not linger: an entry
+ * cached as station ids holds on to the whole CompactGraph it was computed
+ * on, and a cache full of old ones would keep up to capacity old snapshots
+ * alive.
+ *
+ * The LinkedHashMap in access order does the LRU bookkeeping for us: every get
+ * moves the entry to the back, and the eldest entry is removed when the cache
+ * grows past its capacity.
+ */
+public class RouteCache {
+
+	private final LinkedHashMap<Key, Entry> map;
+	private final int capacity;
+	private long hits, misses;
+	private long epoch; // of every entry in the map
+
+	// makes an empty cache holding at most capacity routes
+	public RouteCache(final int capacity) {
+		this.capacity = capacity;
+		map = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Key, RouteCache.Entry> eldest) {
+				return size() > RouteCache.this.capacity;
+			}
+		};
+	}
+
+	/*
+	 * Description:
+	 * Returns the cached route from start to finish, or null if there is none
+	 * for this epoch. A route cached as station ids gets its String built
+	 * (once) here.
+	 */
+	public String get(Point start, Point finish, long epoch) {
+		Entry e = lookup(start, finish, epoch);
+		if (e == null)
+			return null;
+		if (e.route == null)
+			e.route = e.graph.text(e.ids);
+		return e.route;
+	}
+
+	/*
+	 * Description:
+	 * Writes the cached route from start to finish to out and returns true,
+	 * or returns false if there is none for this epoch. A route cached as
+	 * station ids is streamed into out without building its String.
+	 */
+	public boolean write(Point start, Point finish, long epoch, RouteWriter out) {
+		Entry e = lookup(start, finish, epoch);
+		if (e == null)
+			return false;
+		if (e.route != null)
+			out.println(e.route);
+		else
+			e.graph.write(e.ids, out);
+		return true;
+	}
+
+	// the entry for start and finish if it is from this epoch, else null
+	private Entry lookup(Point start, Point finish, long epoch) {
+		advance(epoch);
+		Entry e = map.get(new Key(start, finish));
+		if (e != null && e.epoch == epoch) {
+			hits++;
+			return e;
+		}
+		misses++;
+		return null;
+	}
+
+	// moves the cache to this epoch: if it is not the one of the entries,
+	// they are all stale and go now, with the snapshots they hold
+	private void advance(long epoch) {
+		if (epoch != this.epoch) {
+			map.clear();
+			this.epoch = epoch;
+		}
+	}
+
+	// stores the route from start to finish, computed in this epoch
+	public void put(Point start, Point finish, long epoch, String route) {
+		if (capacity > 0) {
+			advance(epoch);
+			map.put(new Key(start, finish), new Entry(route, null, null, epoch));
+		}
+	}
+
+	// stores the route from start to finish as the station ids of its path
+	// in graph (null for no path), computed in this epoch
+	public void put(Point start, Point finish, long epoch, CompactGraph graph, int[] ids) {
+		if (capacity > 0) {
+			advance(epoch);
+			map.put(new Key(start, finish), new Entry(null, graph, ids, epoch));
+		}
+	}
+
+	// removes every entry, but keeps the counters
+	public void clear() {
+		map.clear();
+	}
+
+	// number of lookups answered from the cache
+	public long getHits() {
+		return hits;
+	}
+
+	// number of lookups that had to run a search
+	public long getMisses() {
+		return misses;
+	}
+
+	// number of routes currently cached (stale ones too, until the next
+	// lookup or put drops them)
+	public int size() {
+		return map.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	// the (start, finish) pair. Points do not implement equals, so the
+	// coordinates are copied into the key
+	private static final class Key {
+		final int x1, y1, x2, y2;
+
+		Key(Point start, Point finish) {
+			x1 = start.x;
+			y1 = start.y;
+			x2 = finish.x;
+			y2 = finish.y;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return x1 == k.x1 && y1 == k.y1 && x2 == k.x2 && y2 == k.y2;
+		}
+
+		public int hashCode() {
+			return ((x1 * 31 + y1) * 31 + x2) * 31 + y2;
+		}
+	}
+
+	// a cached answer and the epoch it is valid for. The answer is the
+	// route String, or the ids of its path in graph, or both once the String
+	// was asked for
+	private static final class Entry {
+		String route;
+		final CompactGraph graph;
+		final int[] ids;
+		final long epoch;
+
+		Entry(String route, CompactGraph graph, int[] ids, long epoch) {
+			this.route = route;
+			this.graph = graph;
+			this.ids = ids;
+			this.epoch = epoch;
+		}
+	}
+}
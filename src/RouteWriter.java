@@ -0,0 +1,178 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/*
+ * Where the driver's output goes.
+ *
+ * The plain way to print a route is to build its whole String (one
+ * "Station x, y name" line per station) and hand it to System.out.println,
+ * which flushes and locks the stream on every call. A route can instead be
+ * streamed into a RouteWriter, one station at a time, in path order, and the
+ * buffered modes do that without building the String at all. There are
+ * three modes:
+ *
+ *   DIRECT    every answer is one System.out-style println call, like
+ *             before: a streamed route is collected into one String first,
+ *             since System.out flushes at every line break it prints
+ *   BUFFERED  text goes through one large character buffer, written out in
+ *             blocks
+ *   RAW       the lines are written as bytes straight into one large byte
+ *             buffer: coordinates as ASCII digits, names byte by byte
+ *             (no charset encoder for ASCII names), written out in blocks
+ *
+ * A route's output is the same in every mode: its stations followed by a
+ * blank line, or "NO PATH". Call flush() at the end, since the buffered modes
+ * hold on to up to a block of output.
+ */
+public class RouteWriter {
+
+	public static final int DIRECT = 0, BUFFERED = 1, RAW = 2;
+
+	static final int BLOCK = 1 << 16; // bytes (or chars) per write
+
+	private final int mode;
+	private final PrintStream ps; // DIRECT
+	private final StringBuilder route; // DIRECT, the stations of the route so far
+	private final Writer writer; // BUFFERED
+	private final OutputStream os; // RAW
+	private final byte[] buf; // RAW
+	private int pos; // RAW, bytes used in buf
+
+	// makes a writer on out in the given mode
+	public RouteWriter(OutputStream out, int mode) {
+		this.mode = mode;
+		ps = mode == DIRECT ? (out instanceof PrintStream ? (PrintStream) out : new PrintStream(out, true)) : null;
+		route = mode == DIRECT ? new StringBuilder() : null;
+		writer = mode == BUFFERED ? new BufferedWriter(new OutputStreamWriter(out), BLOCK) : null;
+		os = mode == RAW ? out : null;
+		buf = mode == RAW ? new byte[BLOCK] : null;
+	}
+
+	// writes the string and a line separator, like println
+	public void println(String s) {
+		if (mode == DIRECT)
+			ps.println(s);
+		else {
+			print(s);
+			newline();
+		}
+	}
+
+	// writes the line of one station of a route, like StationStore.station
+	public void station(int x, int y, String name) {
+		if (mode == RAW) {
+			bytes("Station ");
+			number(x);
+			bytes(", ");
+			number(y);
+			put((byte) ' ');
+			bytes(name);
+			put((byte) '\n');
+		} else if (mode == DIRECT)
+			route.append("Station ").append(x).append(", ").append(y).append(' ').append(name).append('\n');
+		else
+			print("Station " + x + ", " + y + " " + name + "\n");
+	}
+
+	// ends a route that was written station by station
+	public void endRoute() {
+		if (mode == DIRECT) {
+			ps.println(route);
+			route.setLength(0);
+		} else
+			newline();
+	}
+
+	// the answer for a route that does not exist
+	public void noPath() {
+		println("NO PATH");
+	}
+
+	// writes out everything that is still buffered
+	public void flush() {
+		try {
+			if (mode == DIRECT)
+				ps.flush();
+			else if (mode == BUFFERED)
+				writer.flush();
+			else {
+				os.write(buf, 0, pos);
+				pos = 0;
+				os.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// writes the string without a line separator
+	private void print(String s) {
+		try {
+			if (mode == DIRECT)
+				ps.print(s);
+			else if (mode == BUFFERED)
+				writer.write(s);
+			else
+				bytes(s);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// the line separator println would write
+	private void newline() {
+		print(System.lineSeparator());
+	}
+
+	/*
+	 * Description:
+	 * RAW mode: copies the string into the buffer. ASCII strings (all the
+	 * station names we have seen) are copied char by char, anything else is
+	 * encoded with the platform charset like the other modes would.
+	 */
+	private void bytes(String s) {
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			if (s.charAt(i) >= 0x80) {
+				byte[] b = s.getBytes();
+				for (int j = 0; j < b.length; j++)
+					put(b[j]);
+				return;
+			}
+		}
+		for (int i = 0; i < n; i++)
+			put((byte) s.charAt(i));
+	}
+
+	// RAW mode: writes the int as decimal digits, without making a String
+	private void number(int v) {
+		long n = v; // so that -Integer.MIN_VALUE fits
+		if (n < 0) {
+			put((byte) '-');
+			n = -n;
+		}
+		long div = 1;
+		while (div * 10 <= n)
+			div *= 10;
+		for (; div > 0; div /= 10)
+			put((byte) ('0' + (n / div) % 10));
+	}
+
+	// RAW mode: adds one byte, writing the buffer out when it is full
+	private void put(byte b) {
+		if (pos == buf.length) {
+			try {
+				os.write(buf, 0, pos);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			pos = 0;
+		}
+		buf[pos++] = b;
+	}
+}
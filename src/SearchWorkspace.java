@@ -0,0 +1,53 @@
+import java.util.Arrays;
+
+/*
+ * The per-query state of a search over a CompactGraph.
+ *
+ * The snapshot itself is never written to by a search, so any number of
+ * searches can run on it at the same time, as long as each one has its own
+ * workspace. A workspace can be reused for any number of queries (one at a
+ * time) and on any snapshot; the arrays grow when a bigger snapshot needs them.
+ *
+ * A station has been reached in the current query only if mark[id] == stamp,
+ * so nothing has to be cleared between queries. The second set of arrays
+ * (markB, parentB, ...) is the backward side of the bidirectional search, where
+ * parentB points towards the finish station.
+ *
+ * The weighted search (A*) uses mark and parent like the BFS, plus cost (the
+ * length of the best way to each reached station found so far) and heap.
+ */
+public class SearchWorkspace {
+
+	int[] mark, parent, queue, dist, scratch;
+	int[] markB, parentB, queueB, distB;
+	double[] cost;
+	final IndexedHeap heap = new IndexedHeap();
+	int stamp;
+
+	/*
+	 * Description:
+	 * Starts a new query on a snapshot of n stations, so everything marked
+	 * before is now unvisited. The marks are only cleared when the stamp
+	 * wraps around, or when the arrays are replaced by bigger ones.
+	 */
+	void begin(int n) {
+		if (mark == null || mark.length < n) {
+			mark = new int[n];
+			parent = new int[n];
+			queue = new int[n];
+			dist = new int[n];
+			scratch = new int[n];
+			markB = new int[n];
+			parentB = new int[n];
+			queueB = new int[n];
+			distB = new int[n];
+			cost = new double[n];
+			stamp = 0;
+		}
+		if (++stamp == 0) {
+			Arrays.fill(mark, 0);
+			Arrays.fill(markB, 0);
+			stamp = 1;
+		}
+	}
+}
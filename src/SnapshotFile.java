@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Binary file format for a whole subway graph (stations, names and tracks).
+ *
+ * Rebuilding a network by replaying its insert and Adjacent commands parses
+ * every line again and splays the tree on every insert. A snapshot file is
+ * just a CompactGraph written out as int arrays, so loading one is a memory
+ * map and a few bulk copies, and Route can use it right away.
+ *
+ * Layout (all ints big-endian, so every array is 4-byte aligned):
+ *
+ *   int   MAGIC, VERSION
+ *   int   n (stations), m (entries in the CSR target array), b (name bytes)
+ *   int   xs[n], ys[n]                  coordinates, in Point order
+ *   int   nameOffsets[n + 1]            name i is bytes nameOffsets[i] .. nameOffsets[i + 1] - 1
+ *   int   offsets[n + 1], targets[m]    the tracks, as in CompactGraph
+ *   byte  names[b]                      all names, UTF-8
+ */
+public class SnapshotFile {
+
+	static final int MAGIC = 0x53554257; // "SUBW"
+	static final int VERSION = 1;
+
+	/*
+	 * Description:
+	 * Writes the snapshot to the file, replacing it. The file is sized first
+	 * and then filled through a memory map.
+	 */
+	public static void write(CompactGraph g, String file) throws IOException {
+		int n = g.size();
+		byte[][] names = new byte[n][];
+		for (int i = 0; i < n; i++)
+			names[i] = g.names[i].getBytes(StandardCharsets.UTF_8);
+		int[] nameOffsets = nameOffsets(file, names);
+
+		// counted in longs: a big graph can pass 2^31 bytes, which one
+		// mapping cannot hold
+		long ints = 5 + 2L * n + (n + 1) + (n + 1) + g.targets.length;
+		long size = 4 * ints + nameOffsets[n];
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(file + ": snapshot of " + size + " bytes is too big for one file mapping");
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel ch = raf.getChannel()) {
+			raf.setLength(size);
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+			IntBuffer header = buf.asIntBuffer();
+			header.put(MAGIC).put(VERSION).put(n).put(g.targets.length).put(nameOffsets[n]);
+			header.put(g.xs).put(g.ys).put(nameOffsets).put(g.offsets).put(g.targets);
+
+			buf.position((int) (4 * ints));
+			for (int i = 0; i < n; i++)
+				buf.put(names[i]);
+			buf.force();
+		}
+	}
+
+	/*
+	 * Description:
+	 * The offsets of the names in the file (name i is bytes offsets[i] ..
+	 * offsets[i + 1] - 1). They are added up in a long and checked before
+	 * they are stored, so names that take more than 2^31 bytes in all are
+	 * an IOException, not offsets that wrapped around to negative numbers.
+	 */
+	static int[] nameOffsets(String file, byte[][] names) throws IOException {
+		int[] offsets = new int[names.length + 1];
+		long end = 0;
+		for (int i = 0; i < names.length; i++) {
+			end += names[i].length;
+			if (end > Integer.MAX_VALUE)
+				throw new IOException(file + ": the station names take more than " + Integer.MAX_VALUE
+						+ " bytes, too many for a snapshot");
+			offsets[i + 1] = (int) end;
+		}
+		return offsets;
+	}
+
+	/*
+	 * Description:
+	 * Reads a snapshot written by write(). The file is memory-mapped and the
+	 * int arrays are bulk-copied out of it. Throws an IOException if the file
+	 * is not a snapshot, is cut short, or has arrays that do not fit together
+	 * (see check()), so a damaged file is never searched.
+	 */
+	public static CompactGraph read(String file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+			if (ch.size() > Integer.MAX_VALUE)
+				throw new IOException(file + ": snapshot of " + ch.size() + " bytes is too big for one file mapping");
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (buf.remaining() < 20 || buf.getInt(0) != MAGIC)
+				throw new IOException(file + ": not a subway snapshot");
+			if (buf.getInt(4) != VERSION)
+				throw new IOException(file + ": unsupported snapshot version " + buf.getInt(4));
+
+			int n = buf.getInt(8), m = buf.getInt(12), b = buf.getInt(16);
+			if (n < 0 || m < 0 || b < 0)
+				throw new IOException(file + ": snapshot is damaged (negative count in the header: " + n + " stations, "
+						+ m + " tracks, " + b + " name bytes)");
+			long ints = 5 + 2L * n + (n + 1) + (n + 1) + m;
+			if (buf.remaining() != 4 * ints + b)
+				throw new IOException(file + ": snapshot is damaged (" + buf.remaining() + " bytes, the header says "
+						+ (4 * ints + b) + ")");
+
+			IntBuffer body = buf.asIntBuffer();
+			body.position(5);
+			int[] xs = new int[n], ys = new int[n], nameOffsets = new int[n + 1];
+			int[] offsets = new int[n + 1], targets = new int[m];
+			body.get(xs).get(ys).get(nameOffsets).get(offsets).get(targets);
+			check(file, xs, ys, nameOffsets, b, offsets, targets);
+
+			byte[] bytes = new byte[b];
+			buf.position((int) (4 * ints));
+			buf.get(bytes);
+			String[] names = new String[n];
+			for (int i = 0; i < n; i++)
+				names[i] = new String(bytes, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+
+			return new CompactGraph(xs, ys, names, offsets, targets);
+		}
+	}
+
+	/*
+	 * Description:
+	 * Makes sure the arrays of a snapshot are what CompactGraph expects: the
+	 * stations strictly in Point order (find() is a binary search), the name
+	 * and CSR offsets starting at 0, never going down and ending at the end of
+	 * their arrays, and every track pointing at a station. Throws an
+	 * IOException naming the first thing that is wrong.
+	 */
+	private static void check(String file, int[] xs, int[] ys, int[] nameOffsets, int b, int[] offsets, int[] targets)
+			throws IOException {
+		int n = xs.length, m = targets.length;
+		for (int i = 1; i < n; i++) {
+			final int dy = ys[i] - ys[i - 1];
+			if ((0 == dy ? xs[i] - xs[i - 1] : dy) <= 0) // the comparison of Point.compareTo and find()
+				throw new IOException(file + ": snapshot is damaged (station " + i + " is out of order)");
+		}
+		checkOffsets(file, "name", nameOffsets, b);
+		checkOffsets(file, "track", offsets, m);
+		for (int e = 0; e < m; e++)
+			if (targets[e] < 0 || targets[e] >= n)
+				throw new IOException(file + ": snapshot is damaged (track " + e + " goes to station " + targets[e]
+						+ " of " + n + ")");
+	}
+
+	// offsets from 0 up to end, never going down
+	private static void checkOffsets(String file, String what, int[] offsets, int end) throws IOException {
+		int n = offsets.length - 1;
+		if (offsets[0] != 0 || offsets[n] != end)
+			throw new IOException(file + ": snapshot is damaged (" + what + " offsets run from " + offsets[0] + " to "
+					+ offsets[n] + ", not 0 to " + end + ")");
+		for (int i = 0; i < n; i++)
+			if (offsets[i] > offsets[i + 1])
+				throw new IOException(file + ": snapshot is damaged (" + what + " offsets go down at station " + i + ")");
+	}
+}
@@ -0,0 +1,346 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Spatial index of the stations: a uniform grid of square cells.
+ *
+ * The splay tree orders stations by y and then x, which is no help for "the
+ * stations near (x, y)" or "the stations in this rectangle"; both would be a
+ * walk over every station. Here every station is in the bucket of the grid
+ * cell its coordinates fall into, and only the cells that can matter are
+ * looked at:
+ *
+ *   range    the cells that overlap the rectangle (or, if that is more cells
+ *            than there are buckets, every bucket), so the cost follows the
+ *            size of the answer rather than of the network
+ *   nearest  rings of cells around the query point, one ring at a time, until
+ *            the k-th closest station found is closer than anything outside
+ *            the rings can be
+ *
+ * Only cells with stations have a bucket (a hash map by cell), so empty parts
+ * of the map cost nothing. A bucket is an int[] of the stations' slots in the
+ * StationStore, with how many there are in its first entry. The cell size is
+ * picked from the area the stations cover and how many there are (about 2
+ * stations per cell), and everything is re-bucketed whenever the number of
+ * stations has doubled or halved, or the area they cover has grown 4 times,
+ * since the last time, so the grid keeps up with the network as it grows.
+ *
+ * Results come out in Point order (y, then x), or nearest first with ties in
+ * Point order, so the output does not depend on hashing.
+ */
+public class SpatialGrid {
+
+	private final StationStore store;
+	private HashMap<Long, int[]> cells = new HashMap<Long, int[]>();
+	private long cell = 16; // side of a cell
+	private int size;
+	private int sizeAtRebuild; // size when the cell size was last picked
+	private double areaAtRebuild = 1; // bounding box area at that time
+	private long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+
+	// makes an empty grid of the stations of store
+	public SpatialGrid(StationStore store) {
+		this.store = store;
+	}
+
+	// number of stations in the grid
+	public int size() {
+		return size;
+	}
+
+	// the cell coordinate of v
+	private long cellOf(long v) {
+		return Math.floorDiv(v, cell);
+	}
+
+	// one key for cell (cx, cy). Cell coordinates fit in 32 bits, since the
+	// cell size is at least 1 and coordinates are ints
+	private static long key(long cx, long cy) {
+		return StationIndex.key((int) cx, (int) cy);
+	}
+
+	// adds the station in slot n (it must not be in the grid yet)
+	public void add(int n) {
+		int x = store.x(n), y = store.y(n);
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		bucket(n);
+		size++;
+		if (size > 2 * Math.max(8, sizeAtRebuild) || area() > 4 * areaAtRebuild)
+			rebuild(null);
+	}
+
+	// adds many stations (none of them in the grid yet) and re-buckets
+	// everything once, instead of every time the grid doubles
+	public void addAll(int[] list) {
+		for (int n : list) {
+			minX = Math.min(minX, store.x(n));
+			minY = Math.min(minY, store.y(n));
+			maxX = Math.max(maxX, store.x(n));
+			maxY = Math.max(maxY, store.y(n));
+		}
+		size += list.length;
+		rebuild(list);
+	}
+
+	// removes the station in slot n, if it is in the grid
+	public void remove(int n) {
+		Long k = key(cellOf(store.x(n)), cellOf(store.y(n)));
+		int[] b = cells.get(k);
+		if (b == null)
+			return;
+		int i = 1;
+		while (i <= b[0] && b[i] != n)
+			i++;
+		if (i > b[0])
+			return;
+		System.arraycopy(b, i + 1, b, i, b[0] - i);
+		if (--b[0] == 0)
+			cells.remove(k);
+		size--;
+		if (sizeAtRebuild > 16 && size < sizeAtRebuild / 2)
+			rebuild(null);
+	}
+
+	// area of the bounding box of the stations
+	private double area() {
+		return size == 0 ? 1 : (double) (maxX - minX + 1) * (maxY - minY + 1);
+	}
+
+	private void bucket(int n) {
+		Long k = key(cellOf(store.x(n)), cellOf(store.y(n)));
+		int[] b = cells.get(k);
+		if (b == null || b[0] + 1 == b.length) {
+			b = b == null ? new int[4] : Arrays.copyOf(b, 2 * b.length);
+			cells.put(k, b);
+		}
+		b[++b[0]] = n;
+	}
+
+	/*
+	 * Description:
+	 * Picks the cell size for the current stations (the bounding box split
+	 * into about size / 2 square cells) and puts every station into its new
+	 * bucket, along with the extra stations (if not null) that are not in a
+	 * bucket yet. The bounding box is recomputed too, since stations may
+	 * have been deleted.
+	 */
+	private void rebuild(int[] extra) {
+		int[] all = new int[size];
+		int k = 0;
+		for (int[] b : cells.values())
+			for (int i = 1; i <= b[0]; i++)
+				all[k++] = b[i];
+		if (extra != null)
+			for (int n : extra)
+				all[k++] = n;
+
+		minX = minY = Long.MAX_VALUE;
+		maxX = maxY = Long.MIN_VALUE;
+		for (int n : all) {
+			minX = Math.min(minX, store.x(n));
+			minY = Math.min(minY, store.y(n));
+			maxX = Math.max(maxX, store.x(n));
+			maxY = Math.max(maxY, store.y(n));
+		}
+		double area = area();
+		cell = Math.max(1, (long) Math.ceil(Math.sqrt(2 * area / Math.max(1, all.length))));
+		areaAtRebuild = area;
+
+		cells = new HashMap<Long, int[]>(2 * all.length);
+		for (int n : all)
+			bucket(n);
+		sizeAtRebuild = size;
+	}
+
+	/*
+	 * Description:
+	 * The stations with x1 <= x <= x2 and y1 <= y <= y2 (the corners may be
+	 * given in any order), in Point order, as their slots.
+	 */
+	public int[] range(int x1, int y1, int x2, int y2) {
+		long lx = Math.max(Math.min(x1, x2), minX), hx = Math.min(Math.max(x1, x2), maxX);
+		long ly = Math.max(Math.min(y1, y2), minY), hy = Math.min(Math.max(y1, y2), maxY);
+		int[] found = { 0 }; // a bucket too
+		if (size == 0 || lx > hx || ly > hy)
+			return new int[0];
+
+		long cx1 = cellOf(lx), cx2 = cellOf(hx), cy1 = cellOf(ly), cy2 = cellOf(hy);
+		if ((double) (cx2 - cx1 + 1) * (cy2 - cy1 + 1) <= cells.size()) {
+			for (long cy = cy1; cy <= cy2; cy++)
+				for (long cx = cx1; cx <= cx2; cx++)
+					found = collect(cells.get(key(cx, cy)), lx, ly, hx, hy, found);
+		} else {
+			for (int[] b : cells.values())
+				found = collect(b, lx, ly, hx, hy, found);
+		}
+
+		Integer[] order = new Integer[found[0]];
+		for (int i = 0; i < order.length; i++)
+			order[i] = found[i + 1];
+		Arrays.sort(order, (a, b) -> store.y(a) != store.y(b) ? Integer.compare(store.y(a), store.y(b))
+				: Integer.compare(store.x(a), store.x(b)));
+		int[] list = new int[order.length];
+		for (int i = 0; i < list.length; i++)
+			list[i] = order[i];
+		return list;
+	}
+
+	// adds the stations of the bucket that are inside the rectangle to the
+	// bucket found, which is returned (grown if it had to be)
+	private int[] collect(int[] b, long lx, long ly, long hx, long hy, int[] found) {
+		if (b == null)
+			return found;
+		for (int i = 1; i <= b[0]; i++) {
+			int n = b[i], x = store.x(n), y = store.y(n);
+			if (x >= lx && x <= hx && y >= ly && y <= hy) {
+				if (found[0] + 1 == found.length)
+					found = Arrays.copyOf(found, 2 * found.length);
+				found[++found[0]] = n;
+			}
+		}
+		return found;
+	}
+
+	/*
+	 * Description:
+	 * The k stations closest to (x, y) by straight-line distance, closest
+	 * first (fewer if there are not that many). Ring r is the cells at
+	 * Chebyshev distance r from the query's cell; a station outside rings
+	 * 0..r - 1 is at least r cells away, so at least (r - 1) * cell from the
+	 * query (which can sit anywhere in its own cell). Once the k-th best
+	 * distance is within that, no other ring can do better. If the rings
+	 * would cover more cells than there are buckets (a query far from the
+	 * stations), every bucket is scanned instead. Returns their slots.
+	 */
+	public int[] nearest(int x, int y, int k) {
+		if (k <= 0 || size == 0)
+			return new int[0];
+
+		Best best = new Best(Math.min(k, size), x, y);
+		long qx = cellOf(x), qy = cellOf(y);
+		long scanned = 0;
+		for (long r = 0;; r++) {
+			double reach = (double) Math.max(0, r - 1) * cell;
+			if (best.full() && best.worst() <= reach * reach)
+				break;
+			// no cell of the grid is this far away any more
+			if (qx - r < cellOf(minX) && qx + r > cellOf(maxX) && qy - r < cellOf(minY) && qy + r > cellOf(maxY))
+				break;
+			scanned += r == 0 ? 1 : 8 * r;
+			if (scanned > cells.size()) {
+				best = new Best(Math.min(k, size), x, y);
+				for (int[] b : cells.values())
+					best.offer(b);
+				break;
+			}
+			for (long cx = qx - r; cx <= qx + r; cx++) {
+				best.offer(cells.get(key(cx, qy - r)));
+				if (r > 0)
+					best.offer(cells.get(key(cx, qy + r)));
+			}
+			for (long cy = qy - r + 1; cy <= qy + r - 1; cy++) {
+				best.offer(cells.get(key(qx - r, cy)));
+				best.offer(cells.get(key(qx + r, cy)));
+			}
+		}
+		return best.sorted();
+	}
+
+	// the k best candidates seen so far, as a max-heap on distance (ties:
+	// the later station in Point order counts as farther)
+	private class Best {
+		private final int[] heap;
+		private final double[] dist;
+		private int n;
+		private final long x, y;
+
+		Best(int k, long x, long y) {
+			heap = new int[k];
+			dist = new double[k];
+			this.x = x;
+			this.y = y;
+		}
+
+		boolean full() {
+			return n == heap.length;
+		}
+
+		double worst() {
+			return dist[0];
+		}
+
+		void offer(int[] b) {
+			if (b == null)
+				return;
+			for (int i = 1; i <= b[0]; i++) {
+				int m = b[i];
+				double dx = store.x(m) - x, dy = store.y(m) - y;
+				double d = dx * dx + dy * dy;
+				if (!full()) {
+					heap[n] = m;
+					dist[n] = d;
+					up(n++);
+				} else if (farther(dist[0], heap[0], d, m)) {
+					heap[0] = m;
+					dist[0] = d;
+					down(0);
+				}
+			}
+		}
+
+		// true if (da, a) is farther than (db, b)
+		private boolean farther(double da, int a, double db, int b) {
+			if (da != db)
+				return da > db;
+			if (store.y(a) != store.y(b))
+				return store.y(a) > store.y(b);
+			return store.x(a) > store.x(b);
+		}
+
+		private void up(int i) {
+			while (i > 0 && farther(dist[i], heap[i], dist[(i - 1) / 2], heap[(i - 1) / 2])) {
+				swap(i, (i - 1) / 2);
+				i = (i - 1) / 2;
+			}
+		}
+
+		private void down(int i) {
+			while (true) {
+				int l = 2 * i + 1, max = i;
+				if (l < n && farther(dist[l], heap[l], dist[max], heap[max]))
+					max = l;
+				if (l + 1 < n && farther(dist[l + 1], heap[l + 1], dist[max], heap[max]))
+					max = l + 1;
+				if (max == i)
+					return;
+				swap(i, max);
+				i = max;
+			}
+		}
+
+		private void swap(int i, int j) {
+			int t = heap[i];
+			heap[i] = heap[j];
+			heap[j] = t;
+			double d = dist[i];
+			dist[i] = dist[j];
+			dist[j] = d;
+		}
+
+		// the candidates, closest first
+		int[] sorted() {
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> farther(dist[a], heap[a], dist[b], heap[b]) ? 1
+					: farther(dist[b], heap[b], dist[a], heap[a]) ? -1 : 0);
+			int[] list = new int[n];
+			for (int i = 0; i < n; i++)
+				list[i] = heap[order[i]];
+			return list;
+		}
+	}
+}
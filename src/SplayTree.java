@@ -1,3 +1,4 @@
+import java.util.Arrays;
 
 /*
  * Splay tree (BST invented by Sleator and Tarjan).
@@ -31,8 +32,82 @@
  */
 public class SplayTree
 {
+	//no node: the null of the links below
+	static final int NIL = -1;
+
 	//root instance variable
-	Node root = null;
+	int root = NIL;
+
+	//where the keys and the satellite data of the nodes are kept. A node is
+	//the slot of its station there
+	final StationStore store;
+
+	// the links of every node, by slot: the whole tree is two int arrays,
+	// in the memory of the store (see StationStore.column())
+	private final IntArray left, right;
+
+	//an empty tree with a store of its own
+	public SplayTree()
+	{
+		this(new HeapStationStore());
+	}
+
+	//an empty tree keeping its records in store (SubwayGraph shares it)
+	public SplayTree(StationStore store)
+	{
+		this.store = store;
+		left = store.column();
+		right = store.column();
+	}
+
+	//gives the memory of the links back; the tree must not be used after
+	//this (the store is closed on its own)
+	public void free()
+	{
+		left.free();
+		right.free();
+		root = NIL;
+	}
+
+	//key.compareTo() the key of t, read from the store without making a
+	//Point for it
+	private int compare(int kx, int ky, int t)
+	{
+		final int dy = store.y(t) - ky;
+		return 0 == dy ? store.x(t) - kx : dy;
+	}
+
+	//the left and right child of node t, NIL if there is none
+	int left(int t)
+	{
+		return left.get(t);
+	}
+
+	int right(int t)
+	{
+		return right.get(t);
+	}
+
+	private void setLeft(int t, int child)
+	{
+		left.set(t, child);
+	}
+
+	private void setRight(int t, int child)
+	{
+		right.set(t, child);
+	}
+
+	//a new node for a new slot of the store, with no children yet
+	private int node(int px, int py, String sat)
+	{
+		int t = store.add(px, py, sat);
+		left.grow(t + 1);
+		right.grow(t + 1);
+		setLeft(t, NIL);
+		setRight(t, NIL);
+		return t;
+	}
 
 	/** Portray tree as a string.  Optional but recommended. */
 	/*
@@ -45,7 +120,7 @@ public class SplayTree
 	public String toString()
 	{
 		//calls helper method. pass in an empty string and node ROOT
-		return inOrder("", root);
+		return root == NIL ? "" : inOrder("", root);
 	}
 
 	/*
@@ -60,26 +135,86 @@ public class SplayTree
 	 * traversed to the left-most node, we then do the same to the right-most. This is, again, 
 	 * recursive, so we check Left, Data, Right, at each node. 
 	 */
-	private String inOrder(String string, Node head) {
+	private String inOrder(String string, int head) {
 		//traverse to left-most node on the tree
-		if (head.left != null) 
+		if (left(head) != NIL) 
 			//recursively call the inOrder method
-			string = inOrder(string, head.left);
+			string = inOrder(string, left(head));
 
 		//reach a node where there is no more LEFT
-		//thus adds the satellite data into our string
-		string += " " + head.satellite;
+		//thus adds the satellite data into our string (unless it is a
+		//tombstone, a station that was deleted lazily)
+		if (!store.deleted(head))
+			string += " " + store.name(head);
 
 		//traverse to the right nodes on the tree
-		if (head.right != null) 
+		if (right(head) != NIL) 
 			//recursively call the inOrder method
-			string = inOrder(string, head.right);
+			string = inOrder(string, right(head));
 
 		//trims just in case there is an extra spaces
 		return string.trim();
 	}
 
 
+	/*
+	 * Description:
+	 * Returns every node of the tree, in the same inorder as toString,
+	 * leaving out the tombstones (see SubwayGraph.delete()). This is used to
+	 * build a CompactGraph. Unlike inOrder, this walks the tree
+	 * with an explicit stack, since a splay tree can end up as deep as a 
+	 * linked list and the recursion would overflow the call stack.
+	 */
+	int[] inOrderNodes() {
+		int[] list = new int[16], stack = new int[16];
+		int size = 0, depth = 0;
+		int ref = root;
+
+		while (ref != NIL || depth > 0) {
+			//goes as far left as possible, remembering the way back
+			while (ref != NIL) {
+				if (depth == stack.length)
+					stack = Arrays.copyOf(stack, 2 * depth);
+				stack[depth++] = ref;
+				ref = left(ref);
+			}
+
+			//visits the node, then its right subtree
+			ref = stack[--depth];
+			if (!store.deleted(ref)) {
+				if (size == list.length)
+					list = Arrays.copyOf(list, 2 * size);
+				list[size++] = ref;
+			}
+			ref = right(ref);
+		}
+		return Arrays.copyOf(list, size);
+	}
+
+	/*
+	 * Description:
+	 * Replaces the whole tree with the nodes, which must already be sorted
+	 * in inorder. The middle node becomes the root and both halves are built
+	 * the same way, so the tree is perfectly balanced. This takes O(n) time
+	 * and no splaying at all, which is what a bulk load wants.
+	 */
+	void buildBalanced(int[] sorted) {
+		left.grow(store.slots());
+		right.grow(store.slots());
+		root = buildBalanced(sorted, 0, sorted.length - 1);
+	}
+
+	//recursive helper: builds the subtree of sorted[lo..hi]
+	private int buildBalanced(int[] sorted, int lo, int hi) {
+		if (lo > hi)
+			return NIL;
+		int mid = (lo + hi) >>> 1;
+		int ref = sorted[mid];
+		setLeft(ref, buildBalanced(sorted, lo, mid - 1));
+		setRight(ref, buildBalanced(sorted, mid + 1, hi));
+		return ref;
+	}
+
 	/**
 	 * Search tree for key k.  Return its satellite data if found,
 	 * and splay the found node.
@@ -88,61 +223,36 @@ public class SplayTree
 	/*
 	 * Description: 
 	 * This method will search for the desired KEY. For this algorithm, 
-	 * we call the private helper method SEARCH to return the place of the 
+	 * we call the helper method SEARCH to return the place of the 
 	 * desired node. If we can't find it, we return null and splay the would-be
 	 * parent. But if we do find it, we return the node, which will possess the
 	 * satellite data that we want to return. 
 	 */
 	public String lookup(Point key)
 	{
-		//returns the node.satellite, which should return the satellite data
+		//returns the name of the node, which should be the satellite data
 		//of that key POINT.
-		try{
-			return search(key).satellite;
-		}catch(Exception e){
-			return null; //null check to prevent nullpointerexception
-		}
-
+		int found = search(key);
+		return found == NIL ? null : store.name(found);
 	}
 
 	/*
 	 * Description: 
-	 * This public helper method will search for the desired KEY. For this algorithm, 
-	 * we set the ref to the root value and traverse the tree. Because a splay tree is a 
-	 * BST, we can use the key value and compare it to the ref value. If it is less, we go left
-	 * else we go right. If we ever get key == ref.key, that means we found the desired node
-	 * and we can return the node. If we don't find it, based on the specs, we just return null;
+	 * This public helper method will search for the desired KEY. It splays on
+	 * every access: the node with the key (or the last node on the way to
+	 * where it would be) ends up at the root, so the stations that are looked
+	 * up the most (the hubs) stay near the top of the tree. Looking up the
+	 * same key again finds it at the root, with no rotations. If we get key ==
+	 * root.key after the splay, we found the desired node and we can return it.
+	 * If we don't find it, based on the specs, we just return NIL.
 	 */
-	public Node search(Point key) {
-		//sets ref node to root
-		Node ref = root;
-
-		//while loop to traverse the tree
-		while(ref != null){
-			//parent = ref.parent;
-
-			//go left since key is smaller than the ref value
-			if (key.compareTo(ref.record) > 0){
-				ref = ref.left;
-			}
-
-
-			//go right since key is larger than the ref value
-			else if(key.compareTo(ref.record) < 0){
-				ref = ref.right;
-			}
-
-			//finds the ref.record ==  key! Returns ref node
-			else{
-				//splay(ref);
-				return ref;
-			}
-		}
-
-		//splay(parent);
+	public int search(Point key) {
+		//empty tree, nothing to find
+		if(root == NIL)
+			return NIL;
 
-		//can't find it, thus return null
-		return null;
+		splay(key.x, key.y);
+		return compare(key.x, key.y, root) == 0 ? root : NIL;
 	}
 
 	/**
@@ -151,230 +261,169 @@ public class SplayTree
 	 * If the search fails, we insert a new record.
 	 * Otherwise we update the satellite data with sat.
 	 * Splay the new, or altered, node.
+	 * Returns the new, or altered, node (its slot in the store).
 	 */
 	/*
 	 * Description: 
 	 * Algorithm was already written out by Dr. Predoehl above. 
-	 * So first, we search in the tree for the key value. If we can't
-	 * find it, then we insert the value. 
-	 * But if the key already exists, we just update the sat value. 
+	 * So first, we splay the key to the root. If the root has the key, we 
+	 * just update the sat value. Otherwise the root is the would-be parent
+	 * (the closest key on one side), so we split the tree there: the new node
+	 * becomes the root, with everything smaller on its left and everything
+	 * bigger on its right. The new node is the root, so it is "splayed" too.
 	 */
-	public void insert_record(Point key, String sat)
+	public int insert_record(Point key, String sat)
 	{
-		//sets values. ref is root and the parentNode is null because root has
-		//no parent
-		Node ref = root;
-		Node parentNode = null;
-
-		//search the key
-		while(ref != null){
-			//throughout entire process, updates the parent of ref
-			//so parent can still be accurately used
-			parentNode = ref;
-
-			//compares key values for insertion -> moves left since it is smaller
-			if(key.compareTo(parentNode.record) > 0)
-				ref = ref.left;
-
-			//compares key values for insertion -> moves right since it is bigger
-			else if(key.compareTo(parentNode.record) < 0)
-				ref = ref.right;
-
-			//duplicate value means we replace the satellite value of the old
-			//ref node -> return
-			else{
-				ref.satellite = sat;
-				return;
-			}
+		//empty tree, the new node is the whole tree
+		if(root == NIL){
+			root = node(key.x, key.y, sat);
+			return root;
 		}
 
-		//makes new node, insert data
-		ref = new Node(key, sat);
-		//throughout entire process, updates the parent of ref
-		ref.parent = parentNode;
+		splay(key.x, key.y);
 
-		//if parent is null, then ref is a root node
-		if(parentNode == null){
+		//duplicate value means we replace the satellite value of the old
+		//ref node -> return. A tombstone (deleted lazily) is replaced by a new
+		//node instead, which takes over its place in the tree
+		int cmp = compare(key.x, key.y, root);
+		if(cmp == 0 && store.deleted(root)){
+			int ref = node(key.x, key.y, sat);
+			setLeft(ref, left(root));
+			setRight(ref, right(root));
 			root = ref;
+			return ref;
 		}
-
-		//else move right from parent is the key is bigger,
-		//BST behavior
-		else if(key.compareTo(parentNode.record) < 0){
-			parentNode.right = ref;
+		if(cmp == 0){
+			store.rename(root, sat);
+			return root;
 		}
 
-		//else move left from parent is the key is smaller,
-		//BST behavior
-		else if(key.compareTo(parentNode.record) > 0){
-			parentNode.left = ref;
+		//makes new node, insert data, and hangs the old root (and one of its
+		//subtrees) under it, BST behavior
+		int ref = node(key.x, key.y, sat);
+
+		//key is smaller than the root: root and its right go to the right
+		if(cmp > 0){
+			setLeft(ref, left(root));
+			setRight(ref, root);
+			setLeft(root, NIL);
 		}
 
-		//duplicate value means we replace the satellite value of the old
-		//ref node
+		//key is bigger than the root: root and its left go to the left
 		else{
-			ref.satellite = sat;
-			return;
+			setRight(ref, right(root));
+			setLeft(ref, root);
+			setRight(root, NIL);
 		}
-
-		//splay the new or altered node
-		splay(ref);
+		root = ref;
+		return ref;
 	}
 
 	/*
 	 * Description:
 	 * The head poncho of the SplayTree class. 
-	 * What the splay does it is moves desired node, x, to the root of the splay tree. 
-	 * Through reorganizing the structure of the tree while still keeping the organization
-	 * of the BST and splay, there are THREE factors to consider
+	 * What the splay does it is moves the node with the KEY (or, if there is
+	 * none, the last node on the search path to it) to the root of the splay
+	 * tree. This is the TOP-DOWN splay (also Sleator and Tarjan): instead of
+	 * walking down to the node and then rotating it back up with parent
+	 * pointers, we go down once and take the tree apart on the way:
+	 * 
+	 * L holds everything we passed that is smaller than the key, R everything
+	 * bigger. At each step, looking at the current node t and its child on the
+	 * way to the key:
 	 * 
-	 * (wikipedia)
-	 * FACTOR 1: Whether x is the left or right child of its parent node, p,
-	 * FACTOR 2: Whether p is the root or not, and if not
-	 * FACTOR 3: Whether p is the left or right child of its parent, g (the grandparent of x).
+	 * ZIG: the child is the last one on the path. We link t into R (or L).
+	 * ZIG-ZIG: the key is two steps down the same side. We rotate t with its
+	 * child first, then link, so the path gets about half as deep (this is
+	 * what makes splaying amortized O(log n)).
+	 * ZIG-ZAG: the key is two steps down on different sides. This is just
+	 * two links, one into R and one into L.
 	 * 
-	 * Using a left and right rotate, we can "splay" the tree so the values and the BST 
-	 * quality is kept, however, the organization of the tree is different, where the splayed
-	 * value is at the root of the tree instead of the whereever-it-is sort of tree
+	 * At the end t is the new root and L and R are put back as its subtrees.
+	 * No parent pointers are needed (or kept up to date), so there is no
+	 * column for them. L and R start out empty: l and r are NIL until the
+	 * first node is linked in, and lTop and rTop are their roots.
 	 */
-	public void splay(Node ref) {
-		//null checks
-		while(ref.parent != null){
-			Node parent = ref.parent;
-			Node gparent = parent.parent;
-
-			/*ZIG STEP
-			 * When the ref is the root, we rotate the tree. Comparing the ref with the parent's left
-			 * and right nodes, we insert it to the correct location
-			 */
-			if(gparent == null){
-				if(ref == parent.right)
-					rotateRight(ref, parent);
-				else
-					rotateLeft(ref, parent);
+	private void splay(int kx, int ky) {
+		int l = NIL, r = NIL, lTop = NIL, rTop = NIL, t = root;
+		int rotations = 0, depth = 0; //for Metrics
+
+		while(true){
+			int cmp = compare(kx, ky, t);
+
+			//key is smaller, go left
+			if(cmp > 0){
+				if(left(t) == NIL)
+					break;
+
+				//ZIG-ZIG -> rotate right first
+				if(compare(kx, ky, left(t)) > 0){
+					int y = left(t);
+					setLeft(t, right(y));
+					setRight(y, t);
+					t = y;
+					rotations++;
+					if(left(t) == NIL)
+						break;
+				}
 
+				//links t into R
+				if(r == NIL)
+					rTop = t;
+				else
+					setLeft(r, t);
+				r = t;
+				t = left(t);
 			}
 
-			/*
-			 * ZIG-ZIG 
-			 * parent is not the root and ref && parent are both right or both left children. 
-			 * tree is rotated on the grandparnet-parent edge. and then rotated again on the 
-			 * parent-ref edge. ref will now be the root of the tree. 
-			 * or 
-			 * ZIG-ZAG
-			 * parent is not the root and ref && parent are are one left and one right child. 
-			 * tree is rotated on the parent-ref edge. ref will now be the root of the tree.then it
-			 * is rotated on the grandparent-ref edge to make it go in order
-			 */
-			else{
-
-				if(ref == parent.left){
-					if(parent != gparent.left){
-						//ZIG-ZAG -> based on comparison key values
-						rotateLeft(ref, ref.parent);
-						rotateRight(ref, ref.parent);
-
-
-					}
-					else{
-						//ZIG-ZIG -> based on comparison key values
-						rotateLeft(parent, gparent);
-						rotateLeft(ref, parent);
-					}
-				}
-
-				//ref == parent.right
-				else{
-					if(parent != gparent.left){
-						//ZIG-ZIG -> based on comparison key values
-						rotateRight(parent, gparent);
-						rotateRight(ref, parent);
-					}
-					else{
-						//ZIG-ZAG-> based on comparison key values
-						rotateRight(ref, ref.parent);
-						rotateLeft(ref, ref.parent);
-					}
+			//key is bigger, go right
+			else if(cmp < 0){
+				if(right(t) == NIL)
+					break;
+
+				//ZIG-ZIG -> rotate left first
+				if(compare(kx, ky, right(t)) < 0){
+					int y = right(t);
+					setRight(t, left(y));
+					setLeft(y, t);
+					t = y;
+					rotations++;
+					if(right(t) == NIL)
+						break;
 				}
-			}	
-		}
-
-		//sets root to ref since we already shifted the graphs
-		root = ref;
-	}
 
-	/*
-	 * Description: 
-	 * Rotates tree and makes right child to the parent.This private
-	 * helper method is necessary for the SPLAY method because it rotates the
-	 * tree is a nice easy way. 
-	 * Because we have 3 pointers (left, right, and parent), at each step
-	 * we need to make sure to update the values
-	 */
-	private void rotateRight(Node ref, Node parent) {
+				//links t into L
+				if(l == NIL)
+					lTop = t;
+				else
+					setRight(l, t);
+				l = t;
+				t = right(t);
+			}
 
-		//null checks
-		if(parent.parent != null){
-			//sets the parent node's parent (gparent)'s left child (aunt/uncle?)
-			//to the ref's value
-			if(parent == parent.parent.left)
-				parent.parent.left = ref;
-
-			//sets the parent node's parent (gparent)'s right child (aunt/uncle?)
-			//to the ref's value
+			//found the key
 			else
-				parent.parent.right = ref;
+				break;
+			depth++;
 		}
 
-		//null checks
-		//sets the parent value to ref.left's parents
-		//sets left, not right due to BST comparison of Point values
-		if(ref.left != null)
-			ref.left.parent = parent;
-
-		//sets, updates references of 3 pointers
-		ref.parent = parent.parent;
-		parent.parent = ref;
-		parent.right = ref.left;
-		ref.left = parent;
-
-	}
-
-	/*
-	 * Description: 
-	 * Rotates tree and makes left child to the parent.This private
-	 * helper method is necessary for the SPLAY method because it rotates the
-	 * tree is a nice easy way. 
-	 * Because we have 3 pointers (left, right, and parent), at each step
-	 * we need to make sure to update the values
-	 */
-	private void rotateLeft(Node ref, Node parent) {
-
-		//null checks
-		if(parent.parent != null){
-			//sets the parent node's parent (gparent)'s left child (aunt/uncle?)
-			//to the ref's value
-			if(parent == parent.parent.left)
-				parent.parent.left = ref;
-
-			//sets the parent node's parent (gparent)'s right child (aunt/uncle?)
-			//to the ref's value
-			else
-				parent.parent.right = ref;
+		//puts L, t and R back together, t is the new root
+		if(l == NIL)
+			lTop = left(t);
+		else
+			setRight(l, left(t));
+		if(r == NIL)
+			rTop = right(t);
+		else
+			setLeft(r, right(t));
+		setLeft(t, lTop);
+		setRight(t, rTop);
+		root = t;
+
+		if(Metrics.enabled){
+			Metrics.splay(rotations);
+			Metrics.depth(depth);
 		}
-
-		//null checks
-		//sets the parent value to ref.right's parents
-		//sets right, not right due to BST comparison of Point values
-		if(ref.right != null)
-			ref.right.parent = parent;
-
-		//sets, updates references of 3 pointers
-		ref.parent = parent.parent;
-		parent.parent = ref;
-		parent.left = ref.right;
-		ref.right = parent;
-
 	}
 
 	/**
@@ -392,70 +441,57 @@ public class SplayTree
 	 */
 	public String delete(Point key)
 	{
-		try{
-			//searches for the node that we want to delete
-			Node deleteNode = search(key);
-			//calls private helper method removeNode on deleteNode
-			removeNode(deleteNode);
-			//returns the satellite data of the deleted node. 
-			return deleteNode.satellite;
-		}catch(Exception e){
-			//null check for nullpointerexception errors
+		//searches for the node that we want to delete (splaying it to
+		//the root)
+		int deleteNode = search(key);
+		if(deleteNode == NIL)
 			return null;
-		}
-
 
+		//calls helper method removeNode on deleteNode, then gives its slot
+		//in the store back
+		removeNode(deleteNode);
+		String sat = store.name(deleteNode);
+		store.remove(deleteNode);
+		//returns the satellite data of the deleted node. 
+		return sat;
 	}
 
 	/*
 	 * Description:
-	 * This private helper method will remove the desired node. We are using Method
-	 * 2 as since we splay first to find the desired node and then according to whether
-	 * it has a left or right child, it goes from there. 
+	 * This helper method will remove the desired node. We are still using
+	 * Method 2, splay twice, but with the top-down splay: first the node goes
+	 * to the root, then we splay its key again in its LEFT subtree. Every key
+	 * there is smaller, so that splay brings the biggest one (the predecessor)
+	 * to the top of the left subtree, and it has no right child. The old
+	 * right subtree goes there, and the predecessor is the new root. 
+	 * SubwayGraph calls this directly when it already has the node.
 	 */
-	private void removeNode(Node ref) {
+	void removeNode(int ref) {
 
-		//null check
-		if(ref == null)
+		//null checks
+		if(ref == NIL || root == NIL)
 			return;
 
 		//splay puts desired ref value at the root of the SplayTree
-		splay(ref);
-
-		//there are both left and right children
-		if(ref.left != null && ref.right != null){
-			Node l = ref.left;
-			while(l.right != null)
-				l = l.right;
-
-			//moves the pointer
-			l.right = ref.right;
-			ref.right.parent = l;
-			ref.left.parent = null;
-			root = ref.left;
-			//splay(ref.left); //splays the new root???? potentially fix?
+		if(root != ref)
+			splay(store.x(ref), store.y(ref));
+		if(root != ref)
+			return; //not in this tree
 
-		}
-
-		//ref.right is null, thus we move the ref.left as root
-		else if(ref.left != null){
-			ref.left.parent = null;
-			root = ref.left;
-			//splay(ref.left); //splays the new root; potentially fix?
-		}
+		//the left of ref is NIL, thus we move its right as root
+		if(left(ref) == NIL)
+			root = right(ref);
 
-		//ref.left is null, thus we move the ref.right as root
-		else if(ref.right != null){
-			ref.right.parent = null;
-			root = ref.right;
-			//splay(ref.right); //splays the new root; potentially fix?
+		//splays the predecessor to the top of the left subtree, then hangs
+		//the right subtree under it
+		else{
+			int right = right(ref);
+			root = left(ref);
+			splay(store.x(ref), store.y(ref));
+			setRight(root, right);
 		}
 
-		//if both ref.left and ref.right is null, thus 
-		//it is a root node and we simply set the root as null
-		else
-			root = null;
-
-
+		setLeft(ref, NIL);
+		setRight(ref, NIL);
 	}
-}
\ No newline at end of file
+}
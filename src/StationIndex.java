@@ -0,0 +1,167 @@
+/*
+ * Hash index of the stations by their coordinates.
+ *
+ * The splay tree finds a station in O(depth) steps with two compareTo calls per
+ * level, and SubwayGraph looks stations up several times per command. This
+ * index answers the same exact-match lookups in O(1) expected time.
+ *
+ * The table is open addressing with linear probing over an IntArray (from
+ * the StationStore, see StationStore.column()) of the stations' slots (plus
+ * one, so that 0 is an empty entry), hashed by the (x, y) pair packed into
+ * one long. The keys are not kept a second time: a probe compares the
+ * coordinates in the StationStore. So a lookup allocates nothing (no Point,
+ * no boxed Long, no entry objects), and the index is 4 bytes per entry.
+ * Removal shifts the following entries of the probe run back instead of
+ * leaving deleted markers, so the table never fills up with garbage.
+ */
+public class StationIndex {
+
+	static final int NIL = -1; // no station
+
+	private final StationStore store;
+	private IntArray table; // slot + 1, 0 if empty
+	private int size;
+	private int mask; // capacity - 1, capacity is always a power of two
+
+	// makes an empty index of the stations of store
+	public StationIndex(StationStore store) {
+		this.store = store;
+		table = table(16);
+		mask = 15;
+	}
+
+	// a table of capacity empty entries, in the memory of the store
+	private IntArray table(int capacity) {
+		IntArray t = store.column();
+		t.grow(capacity);
+		return t;
+	}
+
+	// packs the coordinates into one key
+	static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	// spreads the bits of the key over the table (the finalizer of MurmurHash3)
+	private static int slot(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	// the home entry of station s
+	private int home(int s) {
+		return slot(key(store.x(s), store.y(s)), mask);
+	}
+
+	// whether station s is at (x, y)
+	private boolean at(int s, int x, int y) {
+		return store.x(s) == x && store.y(s) == y;
+	}
+
+	// number of stations in the index
+	public int size() {
+		return size;
+	}
+
+	// returns the slot of the station at (x, y), or NIL if there is none
+	public int get(int x, int y) {
+		for (int i = slot(key(x, y), mask), e; (e = table.get(i)) != 0; i = (i + 1) & mask)
+			if (at(e - 1, x, y))
+				return e - 1;
+		return NIL;
+	}
+
+	// returns the slot of the station at point p, or NIL if there is none
+	public int get(Point p) {
+		return get(p.x, p.y);
+	}
+
+	/*
+	 * Description:
+	 * Adds the station in slot s under its coordinates, replacing the
+	 * station that was there before. The table doubles when it gets more than
+	 * half full, which keeps the probe runs short.
+	 */
+	public void put(int s) {
+		if (2 * (size + 1) > mask + 1)
+			resize(2 * (mask + 1));
+
+		int x = store.x(s), y = store.y(s);
+		int i = slot(key(x, y), mask);
+		for (int e; (e = table.get(i)) != 0; i = (i + 1) & mask) {
+			if (at(e - 1, x, y)) {
+				table.set(i, s + 1);
+				return;
+			}
+		}
+		table.set(i, s + 1);
+		size++;
+	}
+
+	/*
+	 * Description:
+	 * Removes the station at (x, y) and returns its slot, or NIL if there is
+	 * none. The entries after the removed one are moved back into the hole
+	 * when their home slot allows it, so every remaining key can still be
+	 * found from its home slot without crossing an empty slot.
+	 */
+	public int remove(int x, int y) {
+		int i = slot(key(x, y), mask);
+		while (table.get(i) != 0 && !at(table.get(i) - 1, x, y))
+			i = (i + 1) & mask;
+		if (table.get(i) == 0)
+			return NIL;
+
+		int removed = table.get(i) - 1;
+		table.set(i, 0);
+		size--;
+
+		// backward shift of the rest of the probe run
+		for (int j = (i + 1) & mask, e; (e = table.get(j)) != 0; j = (j + 1) & mask) {
+			int home = home(e - 1);
+			// moves j into the hole at i unless its home lies in (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				table.set(i, e);
+				table.set(j, 0);
+				i = j;
+			}
+		}
+		return removed;
+	}
+
+	// removes every station
+	public void clear() {
+		table.free();
+		table = table(16);
+		mask = 15;
+		size = 0;
+	}
+
+	// rehashes everything into a table of the given capacity
+	private void resize(int capacity) {
+		IntArray old = table;
+		int oldCapacity = mask + 1;
+		table = table(capacity);
+		mask = capacity - 1;
+
+		for (int i = 0; i < oldCapacity; i++) {
+			int e = old.get(i);
+			if (e == 0)
+				continue;
+			int j = home(e - 1);
+			while (table.get(j) != 0)
+				j = (j + 1) & mask;
+			table.set(j, e);
+		}
+		old.free();
+	}
+
+	// gives the memory back; the index must not be used after this
+	public void free() {
+		table.free();
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Where the coordinates and names of the stations are kept.
+ *
+ * A station is a slot number, and there is no object for it: the store has
+ * its x, y and the id of its name in a NameDictionary at that slot of its
+ * columns, and what the graph keeps about it goes in more columns by slot:
+ * its serial in the Connectivity, its index in the current CompactGraph and
+ * whether it is a tombstone (all 0 for a new slot) here, its links in the
+ * splay tree in SplayTree, its neighbors in AdjacencySets. The slot of a
+ * removed station is handed out again by a later add(). Nothing checks that
+ * a slot is in use: SubwayGraph frees it once the station is out of the tree
+ * for good.
+ *
+ * The columns are IntArrays, and the two stores only differ in where those
+ * are (column() hands out more of them, for the rest of the live graph):
+ *
+ *   HeapStationStore     int arrays on the Java heap (the default)
+ *   OffHeapStationStore  direct buffers outside the heap (the driver's
+ *                        --off-heap flag). Only these columns move: the
+ *                        rest of the graph stays on the heap, see there
+ */
+public abstract class StationStore {
+
+	private final IntArray x = column(), y = column(), nameId = column();
+	private final IntArray serial = column(), index = column(), deleted = column();
+	private final IntArray free = column(); // slots to reuse
+	private int slots; // slots handed out so far, free ones included
+	private int freeCount;
+	private final NameDictionary dictionary = new NameDictionary();
+
+	// a new, empty column in the memory of this store. The graph takes the
+	// columns of its tree, neighbor sets and index from here too, so they
+	// live where the stations do; whoever takes one frees it
+	public abstract IntArray column();
+
+	// number of stations in the store
+	public int size() {
+		return slots - freeCount;
+	}
+
+	// number of slots handed out so far, free ones included: every slot in
+	// use is below this
+	public int slots() {
+		return slots;
+	}
+
+	// number of distinct names
+	public int names() {
+		return dictionary.size();
+	}
+
+	// a slot for a station at (x, y) named name
+	public int add(int px, int py, String name) {
+		int s;
+		if (freeCount > 0)
+			s = free.get(--freeCount);
+		else {
+			s = slots++;
+			x.grow(slots);
+			y.grow(slots);
+			nameId.grow(slots);
+			serial.grow(slots);
+			index.grow(slots);
+			deleted.grow(slots);
+		}
+		x.set(s, px);
+		y.set(s, py);
+		nameId.set(s, dictionary.intern(name));
+		serial.set(s, 0);
+		index.set(s, 0);
+		deleted.set(s, 0);
+		return s;
+	}
+
+	// gives the slot back, for a later add()
+	public void remove(int s) {
+		free.grow(freeCount + 1);
+		free.set(freeCount++, s);
+	}
+
+	public int x(int s) {
+		return x.get(s);
+	}
+
+	public int y(int s) {
+		return y.get(s);
+	}
+
+	// the satellite data
+	public String name(int s) {
+		return dictionary.name(nameId.get(s));
+	}
+
+	// renames the station
+	public void rename(int s, String name) {
+		nameId.set(s, dictionary.intern(name));
+	}
+
+	// the station's id in the graph's Connectivity
+	public int serial(int s) {
+		return serial.get(s);
+	}
+
+	public void setSerial(int s, int v) {
+		serial.set(s, v);
+	}
+
+	// the station's dense id in the current CompactGraph
+	public int index(int s) {
+		return index.get(s);
+	}
+
+	public void setIndex(int s, int v) {
+		index.set(s, v);
+	}
+
+	// tombstone: deleted lazily, still in the tree (see SubwayGraph.delete())
+	public boolean deleted(int s) {
+		return deleted.get(s) != 0;
+	}
+
+	public void setDeleted(int s, boolean d) {
+		deleted.set(s, d ? 1 : 0);
+	}
+
+	// the station as a line of a route: "Station x, y name"
+	public String station(int s) {
+		return "Station " + x(s) + ", " + y(s) + " " + name(s);
+	}
+
+	// gives the memory of the store back; it must not be used after this
+	public void close() {
+		x.free();
+		y.free();
+		nameId.free();
+		serial.free();
+		index.free();
+		deleted.free();
+		free.free();
+		slots = freeCount = 0;
+	}
+}
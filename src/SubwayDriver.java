@@ -1,15 +1,90 @@
 import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Driver class for project 5.
  *
  * If you do the extra credit, and can support deletion, invoke the driver with
  * flag "--extra-credit" as the first command-line argument. Otherwise, we
- * assume deletion is not supported.
+ * assume deletion is not supported. (This driver always supports it, so the
+ * flag is accepted and changes nothing.)
+ *
+ * Any flag the driver does not know, or a flag with a bad value, stops it
+ * with a usage message before it reads a command (see usage()).
+ *
+ * With flag "--bidirectional", Route commands use a bidirectional BFS instead
+ * of the one-sided BFS. Both print a shortest path.
+ *
+ * With flag "--weighted=euclidean" or "--weighted=manhattan", Route commands
+ * find the route with the shortest total track length instead of the fewest
+ * stations, taking each track to be as long as the straight (or grid)
+ * distance between its stations. The search is A*.
+ *
+ * With flag "--hot-origin=X,Y" (may be given more than once), the station at
+ * (X, Y) is a hot origin: a shortest path tree to it is kept up to date as
+ * the graph changes, and a Route from or to it is answered from the tree (see
+ * HotOrigins). It is still a shortest path, but may not be the same one.
+ *
+ * With flag "--route-cache=N", at most N Route answers are cached between
+ * changes to the graph (default 1024, 0 turns the cache off).
+ *
+ * With flag "--batch-routes", a run of consecutive Route commands is answered
+ * all at once when the next other command (or the end of input) is read, with
+ * one BFS per start station (see PendingRoutes). The output is the same.
+ *
+ * With flag "--bulk-import", a run of consecutive insert and Adjacent commands
+ * is applied all at once when the next other command (or the end of input) is
+ * read: the new stations are sorted and the tree is built balanced, and the
+ * tracks are added in one pass (see PendingImport). The graph is the same.
+ *
+ * With flag "--parallel" (or "--parallel=N" for N threads), runs of Route
+ * commands are collected the same way, but each Route gets its own search and
+ * the searches run in parallel. The output is still in input order. Only one
+ * of "--batch-routes", "--parallel" and "--parallel=N" may be given.
+ *
+ * With flag "--fast-input", the input is parsed straight from bytes read in
+ * large chunks (see ByteCommandReader) instead of line by line. The commands,
+ * and the error messages, are the same.
+ *
+ * With flag "--input=FILE", commands are read from FILE instead of standard
+ * input. With "--fast-input" as well, the file is memory-mapped.
+ *
+ * With flag "--buffered-output" or "--raw-output", routes are streamed into a
+ * large output buffer that is written in blocks, as text or as raw bytes (see
+ * RouteWriter). Otherwise every answer is printed with its own println.
+ *
+ * With flag "--load-snapshot=FILE", the graph starts out as the one saved in
+ * FILE instead of empty. With "--save-snapshot=FILE", the graph is saved to
+ * FILE after the last command. See SnapshotFile.
+ *
+ * With flag "--metrics", every command is timed and the search and splay
+ * tree internals are counted, for the "stats" command and as JFR events.
+ *
+ * With flag "--lazy-delete" (or "--lazy-delete=R"), Delete only marks the
+ * station as deleted, and the deleted stations are taken out of the tree and
+ * the adjacency lists in one go once there are more than R of them per
+ * station left (default 0.25). See SubwayGraph.setLazyDelete().
+ *
+ * With flag "--off-heap", the live graph (the station records, the links of
+ * the splay tree, the tracks and the coordinate index) is kept in direct
+ * buffers outside the Java heap instead of in arrays on it, and freed when
+ * the driver exits (see OffHeapStationStore). The names, the union-find,
+ * the spatial grid, the hot origin trees, the snapshots Route searches and
+ * their search state stay on the heap, so the heap still grows with the
+ * network, by a bit more than half of what it takes without the flag. The
+ * commands and the output are the same.
+ *
+ * With flag "--wal=DIR", the graph starts out as the one recovered from the
+ * write-ahead log in DIR (instead of empty or --load-snapshot), and every
+ * change is logged there. A checkpoint of the graph is taken every 100000
+ * changes, or every N changes with "--checkpoint-every=N". See CommandLog.
  *
  * This reads commands from standard input. The commands are as follows:
  * 
@@ -37,6 +112,23 @@ import java.util.StringTokenizer;
  * command prints "NO PATH"; otherwise the output consists of lines showing the
  * stations along a path in the graph.
  *
+ * "Nearest x y k" . . . prints the k stations closest to (x, y) in straight-line
+ * distance, closest first, one per line like a route (fewer if there are not
+ * k stations), or "NO STATIONS".
+ *
+ * "Range x1 y1 x2 y2" . . . prints every station with x1 <= x <= x2 and
+ * y1 <= y <= y2 (the corners can be in any order), in y-then-x order, one per
+ * line like a route, or "NO STATIONS".
+ *
+ * "build_labels" . . . builds the hub label index of the graph (see
+ * HubLabels), which answers the following Route commands without a search. It
+ * is dropped by the next command that adds or removes a station or a track.
+ * The command produces no output.
+ *
+ * "stats" . . . prints the runtime metrics (see Metrics; only with the
+ * "--metrics" flag) and the shape of the graph: stations, tracks, adjacency
+ * list sizes, route cache counters.
+ *
  * "Delete x y" This command removes a vertex at (x,y) and its associated edges
  * from the graph. If there is no station at coordinates (x, y), the command is
  * ignored. The command produces no output. For this assignment, this command is
@@ -59,23 +151,224 @@ import java.util.StringTokenizer;
 public class SubwayDriver {
 
 	// State machine states
-	static final int RESET = 0, INSERT = 1, ADJACENT = 2, ROUTE = 3, DELETE = 4;
+	static final int RESET = 0, INSERT = 1, ADJACENT = 2, ROUTE = 3, DELETE = 4, NEAREST = 5, RANGE = 6;
 
 	// Input sequence states
 	static final int X1IN = 0, Y1IN = 1, X2IN = 2, Y2IN = 3, STRINGYSTUFF = 4;
 
+	// Where main() sends the output. exit() flushes it, so the answers
+	// printed before the error are not lost in the buffer.
+	private static RouteWriter writer;
+
+	// The flags, for usage().
+	static final String USAGE = "usage: SubwayDriver [--extra-credit] [--bidirectional]"
+			+ " [--weighted=euclidean|manhattan] [--hot-origin=X,Y]... [--route-cache=N]"
+			+ " [--batch-routes | --parallel | --parallel=N] [--bulk-import] [--fast-input]"
+			+ " [--input=FILE] [--buffered-output | --raw-output] [--load-snapshot=FILE]"
+			+ " [--save-snapshot=FILE] [--metrics] [--lazy-delete | --lazy-delete=R]"
+			+ " [--off-heap] [--wal=DIR] [--checkpoint-every=N]";
+
 	// Print an error message and exit.
 	public static void exit(String message) {
+		if (writer != null)
+			writer.flush();
 		System.err.println("Error: " + message);
 		System.exit(1);
 	}
 
-	// Look for extra-credit flag and launch the state machine based on it.
+	// Exit with the usage, for a flag the driver does not know or a bad value
+	// of one it does, rather than run without it.
+	static void usage(String flag) {
+		exit("bad flag " + flag + "\n" + USAGE);
+	}
+
+	// The int after the "=" of the flag, at least min (else exits with the
+	// usage).
+	private static int intFlag(String flag, int min) {
+		try {
+			int n = Integer.parseInt(flag.substring(flag.indexOf('=') + 1));
+			if (n >= min)
+				return n;
+		} catch (NumberFormatException e) {
+		}
+		usage(flag);
+		return min;
+	}
+
+	// The number after the "=" of the flag, at least 0 (else exits with the
+	// usage).
+	private static double ratioFlag(String flag) {
+		try {
+			double r = Double.parseDouble(flag.substring(flag.indexOf('=') + 1));
+			if (r >= 0)
+				return r;
+		} catch (NumberFormatException e) {
+		}
+		usage(flag);
+		return 0;
+	}
+
+	// The point "X,Y" after the "=" of the flag (else exits with the usage).
+	private static Point pointFlag(String flag) {
+		String[] xy = flag.substring(flag.indexOf('=') + 1).split(",", -1);
+		try {
+			if (xy.length == 2)
+				return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+		} catch (NumberFormatException e) {
+		}
+		usage(flag);
+		return null;
+	}
+
+	// Read the flags and run the state machine on the input.
 	public static void main(String[] argv) throws FileNotFoundException, IOException {
-		boolean ec = argv.length > 1 && argv[1].equals("--extra-credit");
+		/*
+		 * Instantiate the graph data structure.
+		 */
+		String snapshot = null;
+		String wal = null;
+		int checkpointEvery = 100000;
+		boolean offHeap = false;
+		for (String arg : argv)
+			if (arg.startsWith("--load-snapshot="))
+				snapshot = arg.substring("--load-snapshot=".length());
+			else if (arg.startsWith("--wal="))
+				wal = arg.substring("--wal=".length());
+			else if (arg.startsWith("--checkpoint-every="))
+				checkpointEvery = intFlag(arg, 1);
+			else if (arg.equals("--off-heap"))
+				offHeap = true;
+		StationStore store = offHeap ? new OffHeapStationStore() : new HeapStationStore();
+		SubwayGraph subway;
+		if (wal != null)
+			subway = CommandLog.recover(wal, checkpointEvery, store);
+		else if (snapshot != null)
+			subway = SubwayGraph.load(snapshot, store);
+		else
+			subway = new SubwayGraph(store);
+		String save = null;
+		PendingRoutes pending = null;
+		PendingImport imports = null;
+		boolean fast = false;
+		String input = null;
+		int output = RouteWriter.DIRECT;
+		for (String arg : argv)
+			if (arg.equals("--extra-credit"))
+				continue; // deletion is always supported
+			else if (arg.startsWith("--load-snapshot=") || arg.startsWith("--wal=")
+					|| arg.startsWith("--checkpoint-every=") || arg.equals("--off-heap"))
+				continue; // read above
+			else if (arg.equals("--fast-input"))
+				fast = true;
+			else if (arg.equals("--buffered-output"))
+				output = RouteWriter.BUFFERED;
+			else if (arg.equals("--raw-output"))
+				output = RouteWriter.RAW;
+			else if (arg.startsWith("--save-snapshot="))
+				save = arg.substring("--save-snapshot=".length());
+			else if (arg.startsWith("--input="))
+				input = arg.substring("--input=".length());
+			else if (arg.equals("--bulk-import"))
+				imports = new PendingImport();
+			else if ((arg.equals("--batch-routes") || arg.equals("--parallel") || arg.startsWith("--parallel="))
+					&& pending != null)
+				usage(arg); // one way to run Routes, not whichever comes last
+			else if (arg.equals("--batch-routes"))
+				pending = new PendingRoutes();
+			else if (arg.equals("--parallel"))
+				pending = new PendingRoutes(ForkJoinPool.commonPool());
+			else if (arg.startsWith("--parallel="))
+				pending = new PendingRoutes(intFlag(arg, 1));
+			else if (arg.equals("--metrics"))
+				Metrics.enabled = true;
+			else if (arg.equals("--weighted=euclidean"))
+				subway.setMetric(CompactGraph.EUCLIDEAN);
+			else if (arg.equals("--weighted=manhattan"))
+				subway.setMetric(CompactGraph.MANHATTAN);
+			else if (arg.equals("--bidirectional"))
+				subway.setBidirectional(true);
+			else if (arg.equals("--lazy-delete"))
+				subway.setLazyDelete(0.25);
+			else if (arg.startsWith("--lazy-delete="))
+				subway.setLazyDelete(ratioFlag(arg));
+			else if (arg.startsWith("--hot-origin="))
+				subway.addHotOrigin(pointFlag(arg));
+			else if (arg.startsWith("--route-cache="))
+				subway.setRouteCacheSize(intFlag(arg, 0));
+			else
+				usage(arg);
 
-		// Read from standard input
-		driver(new BufferedReader(new InputStreamReader(System.in)), true);
+		// Read from standard input (or the --input file), line by line or
+		// straight from the bytes. A file is memory-mapped for the byte reader.
+		// The input is closed when the driver is done with it, also when a bad
+		// number ends it with an exception
+		RouteWriter out = new RouteWriter(System.out, output);
+		writer = out;
+		try (CommandTokens tokens = tokens(input, fast)) {
+			driver(tokens, subway, pending, imports, out, true);
+		} finally {
+			// also when a bad number ends the input with an exception: the
+			// commands before it are still applied and answered
+			finish(subway, pending, imports, out);
+			if (pending != null)
+				pending.close();
+			out.flush();
+			writer = null;
+		}
+
+		if (save != null)
+			subway.save(save);
+		if (subway.getLog() != null)
+			subway.getLog().close();
+		subway.close();
+	}
+
+	// the commands from the file (standard input if null), read by the byte
+	// reader if fast, else line by line
+	private static CommandTokens tokens(String input, boolean fast) throws IOException {
+		if (input == null)
+			return fast ? new ByteCommandReader(Channels.newChannel(System.in))
+					: new LineTokens(new BufferedReader(new InputStreamReader(System.in)));
+		return fast ? new ByteCommandReader(new FileInputStream(input).getChannel())
+				: new LineTokens(new BufferedReader(new FileReader(input)));
+	}
+
+	// The tokens of the input, read line by line and split at whitespace.
+	private static class LineTokens implements CommandTokens {
+		private final BufferedReader br;
+		private StringTokenizer tz = new StringTokenizer("");
+		private String token;
+
+		LineTokens(BufferedReader br) {
+			this.br = br;
+		}
+
+		public boolean next() throws IOException {
+			while (!tz.hasMoreTokens()) {
+				String line = br.readLine();
+				if (line == null)
+					return false;
+				tz = new StringTokenizer(line);
+			}
+			token = tz.nextToken();
+			return true;
+		}
+
+		public boolean is(String word) {
+			return 0 == token.compareTo(word);
+		}
+
+		public int intValue() {
+			return Integer.parseInt(token);
+		}
+
+		public String text() {
+			return token;
+		}
+
+		public void close() throws IOException {
+			br.close();
+		}
 	}
 
 	// Tedious error handling. If the state is bad, NO RETURN, just exit.
@@ -83,7 +376,7 @@ public class SubwayDriver {
 		if (RESET == cmd_state)
 			return; // guaranteed fine
 
-		if (cmd_state < INSERT || DELETE < cmd_state)
+		if (cmd_state < INSERT || RANGE < cmd_state)
 			exit("internal error 1:  bad state " + cmd_state);
 		if (DELETE == cmd_state && !does_del)
 			exit("deletion unsupported (lacking --extra-credit flag)");
@@ -99,102 +392,186 @@ public class SubwayDriver {
 			exit("internal error 5:  DELETE post Y1IN");
 	}
 
-	// Driver state machine for the subway class.
-	private static void driver(BufferedReader br, boolean does_deletion) throws FileNotFoundException, IOException {
-		/*
-		 * Instantiate the graph data structure.
-		 */
-		SubwayGraph subway = new SubwayGraph();
-
+	// Driver state machine for the subway class. If pending is not null,
+	// Route commands are collected there and answered in batches. If imports
+	// is not null, insert and Adjacent commands are collected there and
+	// applied in bulk. All output goes to out.
+	static void driver(CommandTokens tz, SubwayGraph subway, PendingRoutes pending, PendingImport imports,
+			RouteWriter out, boolean does_deletion) throws IOException {
 		// Store state-machine state, and buffer for coordinates
 		int cmd_state = RESET, data_seq = X1IN, x1 = 0, y1 = 0, x2 = 0;
+		long started = 0; // when the current command was read, for Metrics
 
-		// Loop through the lines of input, and divide each line at whitespace:
-		for (String line = br.readLine(); line != null; line = br.readLine())
-			for (StringTokenizer tz = new StringTokenizer(line); tz.hasMoreTokens();) {
+		// Loop through the tokens of the input (divided at whitespace):
+		while (tz.next()) {
 
-				final String token = tz.nextToken();
+			check_for_bad_state(cmd_state, data_seq, does_deletion);
 
-				check_for_bad_state(cmd_state, data_seq, does_deletion);
+			if (RESET == cmd_state) {
+				data_seq = X1IN; // reset input sequence also
 
-				if (RESET == cmd_state) {
-					data_seq = X1IN; // reset input sequence also
+				// any other command ends a run of Routes
+				if (pending != null && !tz.is("Route") && pending.size() > 0) {
+					long t = Metrics.enabled ? System.nanoTime() : 0;
+					pending.flush(subway, out);
+					if (Metrics.enabled)
+						Metrics.command(Metrics.ROUTE_BATCH, System.nanoTime() - t);
+				}
+
+				// and any command but insert and Adjacent ends an import
+				if (imports != null && !tz.is("insert") && !tz.is("Adjacent") && imports.size() > 0) {
+					long t = Metrics.enabled ? System.nanoTime() : 0;
+					imports.flush(subway);
+					if (Metrics.enabled)
+						Metrics.command(Metrics.BULK_IMPORT, System.nanoTime() - t);
+				}
+
+				if (Metrics.enabled)
+					started = System.nanoTime();
+				if (tz.is("insert"))
+					cmd_state = INSERT;
+				else if (tz.is("Adjacent"))
+					cmd_state = ADJACENT;
+				else if (tz.is("Route"))
+					cmd_state = ROUTE;
+				else if (tz.is("Delete"))
+					cmd_state = DELETE;
+				else if (tz.is("Nearest"))
+					cmd_state = NEAREST;
+				else if (tz.is("Range"))
+					cmd_state = RANGE;
+				else if (tz.is("debug_print")) { // optional
+					out.println("" + subway);
+					if (Metrics.enabled)
+						Metrics.command(Metrics.DEBUG_PRINT, System.nanoTime() - started);
+				} else if (tz.is("build_labels")) {
+					subway.buildLabels();
+					if (Metrics.enabled)
+						Metrics.command(Metrics.BUILD_LABELS, System.nanoTime() - started);
+				} else if (tz.is("stats")) {
+					out.println(Metrics.report());
+					out.println(subway.stats());
+					if (Metrics.enabled)
+						Metrics.command(Metrics.STATS, System.nanoTime() - started);
+				} else
+					exit("bad command " + tz.text());
+
+			} else if (STRINGYSTUFF == data_seq) {
+				/*
+				 * Insert vertex into the graph (or update its satellite
+				 * data). (The token contains the satellite data string.)
+				 */
+				if (imports != null)
+					imports.insert(new Point(x1, y1), tz.text());
+				else {
+					subway.insert(new Point(x1, y1), tz.text());
+					if (Metrics.enabled)
+						Metrics.command(Metrics.INSERT, System.nanoTime() - started);
+				}
+				cmd_state = RESET;
+
+			} else {
+				int coord = tz.intValue(); // could be x or y
+
+				/*
+				 * The data_seq variable tells us which coordinate this is.
+				 * For cmd_state of ADJACENT or ROUTE, it proceeds like so:
+				 * (start) X1IN --> Y1IN --> X2IN --> Y2IN, followed by
+				 * action, RESET. We use the variables (x1, y1, x2) to store
+				 * earlier coordinates, until we have collected all four.
+				 *
+				 * For cmd_state of INSERT or DELETE, it goes halfway
+				 * through that sequence. RANGE goes all the way, like
+				 * ADJACENT, and NEAREST stops at X2IN, which is its k.
+				 */
+				if (X1IN == data_seq) { // read first coordinate after cmd
+					x1 = coord;
+					data_seq = Y1IN;
 
-					if (0 == token.compareTo("insert"))
-						cmd_state = INSERT;
-					else if (0 == token.compareTo("Adjacent"))
-						cmd_state = ADJACENT;
-					else if (0 == token.compareTo("Route"))
-						cmd_state = ROUTE;
-					else if (0 == token.compareTo("Delete"))
-						cmd_state = DELETE;
-					else if (0 == token.compareTo("debug_print")) // optional
-						System.out.println("" + subway);
+				} else if (Y1IN == data_seq) { // read 2nd coord after cmd
+					y1 = coord;
+					if (DELETE == cmd_state) {
+						/*
+						 * That is enough coordinates! Now delete the vertex
+						 * from the graph.
+						 */
+						subway.delete(new Point(x1, y1));
+						if (Metrics.enabled)
+							Metrics.command(Metrics.DELETE, System.nanoTime() - started);
+						cmd_state = RESET;
+					} else if (INSERT == cmd_state)
+						data_seq = STRINGYSTUFF;
 					else
-						exit("bad command " + token);
+						data_seq = X2IN; // for ADJACENT, ROUTE, NEAREST and RANGE cmds
 
-				} else if (STRINGYSTUFF == data_seq) {
+				} else if (X2IN == data_seq && NEAREST == cmd_state) {
 					/*
-					 * Insert vertex into the graph (or update its satellite
-					 * data). (The token contains the satellite data string.)
+					 * The k nearest stations to (x1, y1).
 					 */
-					subway.insert(new Point(x1, y1), token);
+					out.println(subway.nearest(new Point(x1, y1), coord));
+					if (Metrics.enabled)
+						Metrics.command(Metrics.NEAREST, System.nanoTime() - started);
 					cmd_state = RESET;
 
-				} else {
-					int coord = Integer.parseInt(token); // could be x or y
+				} else if (X2IN == data_seq) { // read 3rd coordinate
+					x2 = coord;
+					data_seq = Y2IN;
 
-					/*
-					 * The data_seq variable tells us which coordinate this is.
-					 * For cmd_state of ADJACENT or ROUTE, it proceeds like so:
-					 * (start) X1IN --> Y1IN --> X2IN --> Y2IN, followed by
-					 * action, RESET. We use the variables (x1, y1, x2) to store
-					 * earlier coordinates, until we have collected all four.
-					 *
-					 * For cmd_state of INSERT or DELETE, it goes halfway
-					 * through that sequence.
-					 */
-					if (X1IN == data_seq) { // read first coordinate after cmd
-						x1 = coord;
-						data_seq = Y1IN;
-
-					} else if (Y1IN == data_seq) { // read 2nd coord after cmd
-						y1 = coord;
-						if (DELETE == cmd_state) {
-							/*
-							 * That is enough coordinates! Now delete the vertex
-							 * from the graph.
-							 */
-							subway.delete(new Point(x1, y1));
-							cmd_state = RESET;
-						} else if (INSERT == cmd_state)
-							data_seq = STRINGYSTUFF;
-						else
-							data_seq = X2IN; // for ADJACENT and ROUTE cmds
-
-					} else if (X2IN == data_seq) { // read 3rd coordinate
-						x2 = coord;
-						data_seq = Y2IN;
-
-					} else { // read 4th coordinate
-						assert Y2IN == data_seq : data_seq;
-						if (ADJACENT == cmd_state) {
-							/*
-							 * Insert edge into the graph.
-							 */
+				} else { // read 4th coordinate
+					assert Y2IN == data_seq : data_seq;
+					if (ADJACENT == cmd_state) {
+						/*
+						 * Insert edge into the graph.
+						 */
+						if (imports != null)
+							imports.adjacent(new Point(x1, y1), new Point(x2, coord));
+						else {
 							subway.adjacent(new Point(x1, y1), new Point(x2, coord));
-						} else {
-							assert ROUTE == cmd_state : cmd_state;
-							/*
-							 * Request a route from point (x1,y1) to (x2,coord),
-							 * in string form.
-							 */
-							String route = subway.route(new Point(x1, y1), new Point(x2, coord));
-							System.out.println(route);
+							if (Metrics.enabled)
+								Metrics.command(Metrics.ADJACENT, System.nanoTime() - started);
+						}
+					} else if (RANGE == cmd_state) {
+						/*
+						 * The stations in the rectangle (x1,y1)-(x2,coord).
+						 */
+						out.println(subway.range(new Point(x1, y1), new Point(x2, coord)));
+						if (Metrics.enabled)
+							Metrics.command(Metrics.RANGE, System.nanoTime() - started);
+					} else {
+						assert ROUTE == cmd_state : cmd_state;
+						/*
+						 * Request a route from point (x1,y1) to (x2,coord),
+						 * in string form.
+						 */
+						if (pending != null)
+							pending.add(new Point(x1, y1), new Point(x2, coord));
+						else {
+							subway.route(new Point(x1, y1), new Point(x2, coord), out);
+							if (Metrics.enabled)
+								Metrics.command(Metrics.ROUTE, System.nanoTime() - started);
 						}
-						cmd_state = RESET;
 					}
+					cmd_state = RESET;
 				}
 			}
+		}
+	}
+
+	// Applies the last import, or answers the Routes, that the driver still
+	// holds at the end of the input (only one of them can be waiting). Called
+	// by main also when the input ends with an exception.
+	static void finish(SubwayGraph subway, PendingRoutes pending, PendingImport imports, RouteWriter out) {
+		if (imports != null && imports.size() > 0) {
+			long t = Metrics.enabled ? System.nanoTime() : 0;
+			imports.flush(subway);
+			if (Metrics.enabled)
+				Metrics.command(Metrics.BULK_IMPORT, System.nanoTime() - t);
+		}
+		if (pending != null && pending.size() > 0) {
+			long t = Metrics.enabled ? System.nanoTime() : 0;
+			pending.flush(subway, out);
+			if (Metrics.enabled)
+				Metrics.command(Metrics.ROUTE_BATCH, System.nanoTime() - t);
+		}
 	}
 }
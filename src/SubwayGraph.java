@@ -1,6 +1,11 @@
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /*
  * allowed libraries:
@@ -57,13 +62,42 @@ import java.lang.InstantiationException;
 public class SubwayGraph {
 
 	private SplayTree tree;
-	private Node root; // root of curr tree
+	private StationStore store; // coordinates and names of the stations
+	private StationIndex index; // stations by coordinates, for exact lookups
+	private AdjacencySets neighbors; // the tracks of every station, by slot
+	private volatile GraphVersion published; // the version readers see
+	private boolean dirty = true; // changed since the last publish
+	private boolean autoPublish; // publish after every change
+	private boolean bidirectional; // which search Route uses
+	private int metric = CompactGraph.HOPS; // what Route minimizes
+	private RouteCache cache = new RouteCache(1024); // recent Route answers
+	private long epoch; // bumped on every change, tags the cached routes
+	private HubLabels labels; // optional label index for Route, null if not built
+	private CommandLog log; // where the changes are logged, null if nowhere
+	private Connectivity components = new Connectivity(); // who can reach whom
+	private boolean componentsStale; // a delete may have split a component
+	private SpatialGrid grid; // stations by location
+	private HotOrigins hot; // kept shortest path trees of hubs
+	private double compactAt; // tombstones per live station that trigger compact(), 0: delete eagerly
+	private int[] tombstones = new int[16]; // deleted, not compacted yet
+	private int tombstoneCount;
+	// search state of each thread that runs parallel Routes
+	private final ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(SearchWorkspace::new);
 	//private int v; // number of vertices
 
 	// construct an empty graph
 	public SubwayGraph() {
-		tree = new SplayTree();
-		root = tree.root;
+		this(new HeapStationStore());
+	}
+
+	// an empty graph keeping its stations in store (see StationStore)
+	public SubwayGraph(StationStore store) {
+		this.store = store;
+		tree = new SplayTree(store);
+		index = new StationIndex(store);
+		neighbors = new AdjacencySets(store);
+		grid = new SpatialGrid(store);
+		hot = new HotOrigins(store, neighbors);
 		//v = 0;
 	}
 
@@ -86,13 +120,37 @@ public class SubwayGraph {
 	 * list. Utilizing Prog 4 in this current assignment will save us time both
 	 * in runtime, as well as implementation.
 	 * 
-	 * Essentially, we are inserting subway stops into our splay tree
+	 * Essentially, we are inserting subway stops into our splay tree. The
+	 * station also goes into the hash index, which is what every other
+	 * command uses to find it.
 	 */
-	public void insert(Point p, String s) {
+	public synchronized void insert(Point p, String s) {
+		// logged before the graph changes, see CommandLog
+		if (log != null)
+			log.insert(this, p.x, p.y, s);
+		int old = index.get(p);
+
+		// an existing station just gets its new name, the tree does not
+		// need to change for that
+		if (old != StationIndex.NIL)
+			store.rename(old, s);
+
 		// in the insert method, we just use the insert method in our
 		// splay tree to insert. This should check for nullpointerexceptions
 		// and other error handlings.
-		tree.insert_record(p, s);
+		// a new station changes the set of stations the labels cover
+		else {
+			int n = tree.insert_record(p, s);
+			neighbors.added(n);
+			index.put(n);
+			number(n);
+			grid.add(n);
+			hot.inserted(n);
+			labels = null;
+		}
+		modified();
+		if (log != null)
+			log.applied(this);
 		//v++; // increases the number of vertices
 	}
 
@@ -112,11 +170,13 @@ public class SubwayGraph {
 	 * and also adding another element (p) to our q's adjacency list
 	 */
 	// Add edge to the graph
-	public void adjacent(Point loc1, Point loc2) {
+	public synchronized void adjacent(Point loc1, Point loc2) {
 
 		// as part of our specs, if either one of the inputs are bad,
 		// we ignore all of it, no output is required
-		if (tree.search(loc1) == (null) || tree.search(loc2) == (null)) {
+		int p = index.get(loc1);
+		int q = index.get(loc2);
+		if (p == StationIndex.NIL || q == StationIndex.NIL) {
 			return;
 		}
 
@@ -124,27 +184,159 @@ public class SubwayGraph {
 		// meaning it can be found, then we add the respective elements to
 		// the correct nodes
 		else {
-			// add the q neighbor to p, thus adding an "edge" between p and q
-			// we first search the point P in our splay tree. Using our search
-			// method that returns a node, we then access that object's
-			// properties,
-			// method addElement, to add that new point into their adjacency
-			// list
-			tree.search(loc1).addElement(tree.search(loc2));
+			if (log != null)
+				log.adjacent(this, loc1.x, loc1.y, loc2.x, loc2.y);
 
 			// add the q neighbor to p, thus adding an "edge" between p and q
-			// we first search the point q in our splay tree. Using our search
-			// method that returns a node, we then access that object's
-			// properties,
-			// method addElement, to add that new point into their adjacency
-			// list
+			// we already looked up both nodes in the index above. We then
+			// add that new station to their set of neighbors, which ignores
+			// it if it is already there
+			neighbors.add(p, q);
+
+			// add the p neighbor to q, thus adding an "edge" between q and p
 			// this algorithm is, as you may have noticed, the vice versa of the
-			// one
-			// above
-			tree.search(loc2).addElement(tree.search(loc1));
+			// one above
+			neighbors.add(q, p);
+			if (!componentsStale)
+				components.union(store.serial(p), store.serial(q));
+			hot.tracked(p, q);
+			labels = null; // new track, the labels are out of date
+			modified();
+			if (log != null)
+				log.applied(this);
+
+		}
+
+	}
+
+	/*
+	 * Applies a run of insert and Adjacent commands at once: stations points[i]
+	 * named names[i], and tracks from[j] - to[j], where after[j] is how many of
+	 * the inserts came before track j in the original order. The graph ends
+	 * up as if the commands had been applied one by one in that order (a
+	 * track to a station inserted after it is ignored, a later insert of the
+	 * same point renames the station, a track that is already there is not
+	 * added again), but:
+	 *
+	 *   - the new stations are sorted once and merged with the stations
+	 *     already in the tree, and the tree is rebuilt balanced, O(n log n)
+	 *     for the sort and O(n) for the rest, instead of a splay per insert
+	 *   - the graph is marked as changed once, not once per command
+	 *
+	 * Every command of the run goes to the log first, in the original order,
+	 * so the log replays to the same graph (replay ignores the same tracks).
+	 */
+	public synchronized void bulkLoad(Point[] points, String[] names, Point[] from, Point[] to, int[] after) {
+		if (log != null) {
+			for (int i = 0, j = 0; i < points.length || j < from.length;)
+				if (j == from.length || (i < points.length && i < after[j])) {
+					log.insert(this, points[i].x, points[i].y, names[i]);
+					i++;
+				} else {
+					log.adjacent(this, from[j].x, from[j].y, to[j].x, to[j].y);
+					j++;
+				}
+		}
+
+		// the stations. A new one goes into the index right away, so a
+		// later insert of the same point just renames it. born says which
+		// insert made each new station; the stations that were there before
+		// the run are not in it
+		HashMap<Integer, Integer> born = new HashMap<Integer, Integer>();
+		int[] added = new int[points.length];
+		int count = 0;
+		for (int i = 0; i < points.length; i++) {
+			int old = index.get(points[i]);
+			if (old != StationIndex.NIL)
+				store.rename(old, names[i]);
+			else {
+				int n = store.add(points[i].x, points[i].y, names[i]);
+				neighbors.added(n);
+				born.put(n, i);
+				index.put(n);
+				number(n);
+				added[count++] = n;
+			}
+		}
+		added = Arrays.copyOf(added, count);
+		grid.addAll(added);
+		for (int n : added)
+			hot.inserted(n);
+
+		// the tree: the new stations in Point order, merged with the
+		// inorder of the tree, built balanced like load() does. They are
+		// sorted as longs (y in the high half, x made unsigned in the low
+		// half), which is the same order and much faster than sorting the
+		// slots with a comparator. The low half is masked, or a negative x
+		// would fill the high half with ones
+		if (added.length > 0) {
+			long[] keys = new long[added.length];
+			for (int j = 0; j < keys.length; j++)
+				keys[j] = (long) store.y(added[j]) << 32 | ((store.x(added[j]) ^ 0x80000000) & 0xFFFFFFFFL);
+			Arrays.sort(keys);
+			int[] old = tree.inOrderNodes();
+			int[] all = new int[old.length + keys.length];
+			int next = station(keys[0]);
+			for (int i = 0, j = 0, k = 0; k < all.length; k++) {
+				if (next == StationIndex.NIL || (i < old.length && (store.y(old[i]) != store.y(next)
+						? store.y(old[i]) < store.y(next) : store.x(old[i]) < store.x(next))))
+					all[k] = old[i++];
+				else {
+					all[k] = next;
+					next = ++j == keys.length ? StationIndex.NIL : station(keys[j]);
+				}
+			}
+			tree.buildBalanced(all);
+			labels = null;
+		}
+
+		// the tracks that are not ignored, with their ends
+		int[] ps = new int[from.length], qs = new int[from.length];
+		for (int j = 0; j < from.length; j++) {
+			int p = index.get(from[j]);
+			int q = index.get(to[j]);
+			if (p != StationIndex.NIL && q != StationIndex.NIL && existed(p, born, after[j])
+					&& existed(q, born, after[j])) {
+				ps[j] = p;
+				qs[j] = q;
+			} else
+				ps[j] = StationIndex.NIL;
+		}
 
+		// then added in order (a track that is already there is ignored
+		// by the adjacency set, in O(1))
+		int tracks = 0;
+		for (int j = 0; j < from.length; j++) {
+			int p = ps[j], q = qs[j];
+			if (p == StationIndex.NIL)
+				continue;
+			neighbors.add(p, q);
+			neighbors.add(q, p);
+			if (!componentsStale)
+				components.union(store.serial(p), store.serial(q));
+			hot.tracked(p, q);
+			tracks++;
 		}
+		if (tracks > 0)
+			labels = null;
+
+		if (points.length > 0 || tracks > 0)
+			modified();
+		if (log != null)
+			log.applied(this);
+	}
 
+	// the station with the sort key made by bulkLoad()
+	private int station(long key) {
+		return index.get((int) key ^ 0x80000000, (int) (key >> 32));
+	}
+
+	// true if station n was in the graph once the first after inserts of a
+	// bulkLoad() run were applied. Not by serial: a graph loaded from a
+	// snapshot has not handed out any serials yet
+	private static boolean existed(int n, HashMap<Integer, Integer> born, int after) {
+		Integer i = born.get(n);
+		return i == null || i < after;
 	}
 
 	// Try to find a shortest path between vertices
@@ -167,96 +359,554 @@ public class SubwayGraph {
 	 * 
 	 */
 	public String route(Point start, Point finish) {
+
+		// repeated Route commands are answered from the cache, as long as
+		// the graph has not changed since the answer was computed
+		String s = cache.get(start, finish, epoch);
+		if (s == null) {
+			s = search(start, finish);
+			cache.put(start, finish, epoch, s);
+		}
+		return s;
+	}
+
+	/*
+	 * route() written to out. The stations are streamed into out as the path
+	 * is walked, so no String is built for the route. With the cache on, a
+	 * computed path goes into it as the ids of its stations, and a cached one
+	 * is streamed from those ids the same way.
+	 */
+	public void route(Point start, Point finish, RouteWriter out) {
+		if (cache.write(start, finish, epoch, out))
+			return;
+
+		int from = index.get(start);
+		int to = index.get(finish);
+		if (from == StationIndex.NIL || to == StationIndex.NIL || !connected(from, to)) {
+			out.noPath();
+			cache.put(start, finish, epoch, "NO PATH");
+			return;
+		}
+		String hub = hotRoute(from, to);
+		if (hub != null) {
+			out.println(hub);
+			cache.put(start, finish, epoch, hub);
+			return;
+		}
+		GraphVersion v = version();
+		if (cache.getCapacity() == 0) {
+			v.route(store.index(from), store.index(to), null, out); // straight from the search
+			return;
+		}
+		int[] ids = v.routeIds(store.index(from), store.index(to), null);
+		v.graph.write(ids, out);
+		cache.put(start, finish, epoch, v.graph, ids);
+	}
+
+	// runs the search for route(), without the cache
+	private String search(Point start, Point finish) {
 		
 		//if one of the points do not exist, we exit out with NO PATH found
 		//to prevent a null pointer exception
-		if(tree.search(start) == null || tree.search(finish) == null){
+		int from = index.get(start);
+		int to = index.get(finish);
+		if(from == StationIndex.NIL || to == StationIndex.NIL){
 			return "NO PATH";
 		}
-		StringBuilder s = new StringBuilder();
-
-		// checks if start is the same finish
-		// this is technically unnecessarily, however I added it to decrease
-		// time and space complexity
-		if (start.equals(finish)) {
-			s.append(start.toString() + " " + tree.lookup(start) + "\n");
-			s.append(finish.toString() + " " + tree.lookup(finish));
+
+		// stations in different parts of the network, no need to search
+		if (!connected(from, to))
+			return "NO PATH";
+
+		// from or to a hot origin, the path is already known
+		String hub = hotRoute(from, to);
+		if (hub != null)
+			return hub;
+
+		// the search itself runs on the compact snapshot of the current
+		// version, using the ids the snapshot gave to both stations; its
+		// state is in a SearchWorkspace, not in the graph
+		GraphVersion v = version();
+		return v.route(store.index(from), store.index(to), null);
+	}
+
+	/*
+	 * route() for any thread, even while another thread changes the graph.
+	 * It pins the last published version and searches it without taking a
+	 * lock, so it does not see changes that were not published yet (see
+	 * publish()), and it does not use the route cache.
+	 */
+	public String routeConcurrent(Point start, Point finish) {
+		return pin().route(start, finish, workspaces.get());
+	}
+
+	/*
+	 * Batch version of route() for one start and many destinations. The
+	 * answers are the same as calling route() for each destination in turn,
+	 * but the destinations that are not in the cache share a single BFS,
+	 * which stops once all of them are found. (Only the one-sided BFS is
+	 * shared. The labels, the bidirectional BFS and A* for weighted routes
+	 * still answer one route at a time, as route() would.)
+	 */
+	public String[] route(Point start, Point[] finishes) {
+		String[] result = new String[finishes.length];
+		int from = index.get(start);
+
+		// the ids in the store are only right once the snapshot is built
+		GraphVersion v = version();
+
+		// answers from the cache first, the rest get a station id (-1 if
+		// the station does not exist)
+		int[] to = new int[finishes.length];
+		int missing = 0;
+		for (int i = 0; i < finishes.length; i++) {
+			result[i] = cache.get(start, finishes[i], epoch);
+			if (result[i] != null)
+				continue;
+			int n = index.get(finishes[i]);
+			boolean none = from == StationIndex.NIL || n == StationIndex.NIL;
+			String hub = none ? null : hotRoute(from, n);
+			if (none || !connected(from, n))
+				result[i] = "NO PATH";
+			else if (hub != null)
+				result[i] = hub;
+			else if (v.labels != null || v.bidirectional || v.metric != CompactGraph.HOPS)
+				result[i] = v.route(store.index(from), store.index(n), null);
+			else {
+				to[missing++] = store.index(n);
+				continue;
+			}
+			cache.put(start, finishes[i], epoch, result[i]);
 		}
+		if (missing == 0)
+			return result;
 
-		// now if we are not given a start and end the same, then we go through
-		// this
-		// else statement
-		else {
-			// making a queue object to store the neighbors in an orderly fashio
-			// in a FIFO
-			// so we do not jump around
-			Queue<Node> q = new LinkedList();
-			ArrayList<Node> visited = new ArrayList(); // visited arraylist to
-														// keep track of which
-														// nodes has been
-														// visited to already to
-														// prevent unecessary
-														// cycles
-			tree.splay(tree.search(start)); // splays the start root to the top
-											// of the tree. this will be at the
-											// root
-			q.add(tree.search(start)); // adds the first element into the queue
-			visited.add(tree.search(start)); // adds visited to the arraylist to
-												// prevent cycles while
-												// traversing
-
-			// while the queue isn't empty, we contain to pop and find its
-			// neighbors
-			while (!q.isEmpty()) {
-				Node currNode = q.poll(); // pop off the top of the queue
-
-				// if found desired location, we backtrack until the currNode is
-				// null. Once
-				// the currNode is null, that means we have reached the root of
-				// the tree since the
-				// parent of a root is null
-				if (currNode.satellite.equals(tree.lookup(finish))) {
-					while (currNode != null) {
-						// inserts into our stringbulider for faster time
-						// complexity
-						s.insert(0, currNode.toString() + "\n");
-						currNode = currNode.parent; // moves currNode pointer to
-													// the parent
-					}
-					return s.toString(); // only case to return a string is if
-											// there is a path
-				}
+		// one search for everything the cache could not answer
+		String[] found = v.graph.routes(store.index(from), Arrays.copyOf(to, missing));
+		for (int i = 0, k = 0; i < finishes.length; i++) {
+			if (result[i] == null) {
+				result[i] = found[k++];
+				cache.put(start, finishes[i], epoch, result[i]);
+			}
+		}
+		return result;
+	}
 
-				// all other cases if we don't find the finished point is we
-				// need to add all of
-				// currNode's neighbors. Because BFS goes breadth-y, instead of
-				// going from root
-				// to the leaves, we always add the neighbors of each "dequeued"
-				// node to our queue
-				// and then consider it with this while loop
-				// But at the same time, we only want to add nodes we haven't
-				// visited into our queue
-				// because we don't want cycles
-				for (int i = 0; i < currNode.adjacencyList.size(); i++) {
-					// only non-visited nodes are considered
-					if (!visited.contains(currNode.adjacencyList.get(i))) {
-						// adds that node to the visited -> flagging it
-						// essentially
-						visited.add(currNode.adjacencyList.get(i));
-						// sets the parent pointer of that
-						// currNode.adjacencyList.get(i) to
-						// currNode
-						currNode.adjacencyList.get(i).parent = currNode;
-						// adds to the queue
-						q.add(currNode.adjacencyList.get(i));
-
-					}
-				}
+	/*
+	 * Answers a run of Route commands, starts[i] to finishes[i], in their
+	 * original order. The commands are grouped by start station, and each
+	 * group is answered with one call to the batch route() above.
+	 */
+	public String[] routes(Point[] starts, Point[] finishes) {
+		String[] result = new String[starts.length];
+
+		// request indices grouped by start, groups in order of first use
+		LinkedHashMap<Long, ArrayList<Integer>> groups = new LinkedHashMap<Long, ArrayList<Integer>>();
+		for (int i = 0; i < starts.length; i++) {
+			Long key = StationIndex.key(starts[i].x, starts[i].y);
+			ArrayList<Integer> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(key, group);
 			}
+			group.add(i);
 		}
 
-		// if there is no path, then it will output this message
-		return "NO PATH";
+		for (ArrayList<Integer> group : groups.values()) {
+			Point[] to = new Point[group.size()];
+			for (int k = 0; k < to.length; k++)
+				to[k] = finishes[group.get(k)];
+			String[] found = route(starts[group.get(0)], to);
+			for (int k = 0; k < to.length; k++)
+				result[group.get(k)] = found[k];
+		}
+		return result;
+	}
+
+	/*
+	 * Answers a run of Route commands, starts[i] to finishes[i], on the
+	 * threads of the pool. The answers are the same as calling route() for
+	 * each of them in turn, and come back in the original order.
+	 *
+	 * Everything that is not thread-safe happens on the calling thread: the
+	 * version is published and the cache is read before the parallel part,
+	 * and the new answers are cached after it. In between, the searches only
+	 * read the version, and each thread writes to its own SearchWorkspace.
+	 */
+	public String[] routesParallel(Point[] starts, Point[] finishes, ForkJoinPool pool) {
+		final String[] result = new String[starts.length];
+		final GraphVersion v = version();
+
+		// the Routes the cache cannot answer, as pairs of station ids
+		final int[] from = new int[starts.length], to = new int[starts.length];
+		final int[] which = new int[starts.length];
+		int m = 0;
+		for (int i = 0; i < starts.length; i++) {
+			result[i] = cache.get(starts[i], finishes[i], epoch);
+			if (result[i] != null)
+				continue;
+			int a = index.get(starts[i]), b = index.get(finishes[i]);
+			if (a == StationIndex.NIL || b == StationIndex.NIL || !connected(a, b))
+				result[i] = "NO PATH";
+			else
+				result[i] = hotRoute(a, b); // null if it needs a search
+			if (result[i] != null) {
+				cache.put(starts[i], finishes[i], epoch, result[i]);
+				continue;
+			}
+			from[m] = store.index(a);
+			to[m] = store.index(b);
+			which[m++] = i;
+		}
+
+		final int count = m;
+		try {
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(k ->
+					result[which[k]] = v.route(from[k], to[k], workspaces.get()))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while routing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("parallel route failed", e.getCause());
+		}
+
+		for (int k = 0; k < m; k++)
+			cache.put(starts[which[k]], finishes[which[k]], epoch, result[which[k]]);
+		return result;
+	}
+
+	/*
+	 * Gives the new station n (already in the index) its serial in the
+	 * union-find. Serials are not handed back when a station is deleted, so
+	 * once fewer than half of them belong to live stations, the union-find
+	 * is marked stale and the next connected() renumbers the live stations
+	 * from 0. While it is stale, new stations get no serial: they are
+	 * numbered in that rebuild too. So under insert and delete churn the
+	 * union-find stays within twice the size of the graph.
+	 */
+	private void number(int n) {
+		if (componentsStale)
+			return;
+		store.setSerial(n, components.add());
+		if (components.serials() > 2 * index.size() + 16)
+			componentsStale = true;
+	}
+
+	// the union-find, for the tests
+	Connectivity components() {
+		return components;
+	}
+
+	/*
+	 * True if there is a route between the two stations, from the union-find
+	 * (see Connectivity). If a delete may have split a component since the
+	 * last time, the union-find is first rebuilt from the live graph: every
+	 * station gets a new serial and every track is a union, O(n + m).
+	 */
+	boolean connected(int a, int b) {
+		if (componentsStale) {
+			int[] nodes = tree.inOrderNodes();
+			components.clear();
+			for (int n : nodes)
+				store.setSerial(n, components.add());
+			for (int n : nodes)
+				for (int i = 0, e = neighbors.end(n); i < e; i++) {
+					int m = neighbors.neighbor(n, i);
+					if (m != AdjacencySets.NIL && !store.deleted(m))
+						components.union(store.serial(n), store.serial(m));
+				}
+			componentsStale = false;
+		}
+		return components.connected(store.serial(a), store.serial(b));
+	}
+
+	/*
+	 * Makes the station at p (now, or whenever one is inserted there) a hot
+	 * origin: the graph keeps a shortest path tree for it, repaired on every
+	 * change, and a Route from or to it just walks the tree (see
+	 * HotOrigins). Not used while routes are weighted.
+	 */
+	public synchronized void addHotOrigin(Point p) {
+		hot.add(p, index.get(p));
+	}
+
+	// the route from the hot origin trees, or null if they cannot answer it
+	private String hotRoute(int from, int to) {
+		return metric == CompactGraph.HOPS ? hot.route(from, to) : null;
+	}
+
+	/*
+	 * The k stations closest to point p (straight-line distance), closest
+	 * first, one per line like a route, or "NO STATIONS". Ties are broken in
+	 * Point order. Answered from the spatial grid (see SpatialGrid), which
+	 * only looks at the cells around p.
+	 */
+	public String nearest(Point p, int k) {
+		return stations(grid.nearest(p.x, p.y, k));
+	}
+
+	// the stations in the rectangle with corners a and b (edges included),
+	// in Point order, one per line, or "NO STATIONS"
+	public String range(Point a, Point b) {
+		return stations(grid.range(a.x, a.y, b.x, b.y));
+	}
+
+	// the stations, one per line, as in a route
+	private String stations(int[] list) {
+		if (list.length == 0)
+			return "NO STATIONS";
+		StringBuilder sb = new StringBuilder();
+		for (int n : list)
+			sb.append(store.station(n)).append('\n');
+		return sb.toString();
+	}
+
+	// chooses between the plain BFS (the default) and the bidirectional BFS
+	// for Route. Both find a shortest path
+	public synchronized void setBidirectional(boolean b) {
+		bidirectional = b;
+		republish();
+		cache.clear(); // cached paths may come from the other search
+	}
+
+	/*
+	 * Makes Route minimize the length of the route instead of the number of
+	 * stations: CompactGraph.EUCLIDEAN or MANHATTAN, with the tracks as long
+	 * as the distance between their stations (see
+	 * CompactGraph.weightedRoute()). HOPS goes back to the BFS. While routes
+	 * are weighted, the label index is not used.
+	 */
+	public synchronized void setMetric(int m) {
+		metric = m;
+		republish();
+		cache.clear(); // cached paths were for the other metric
+	}
+
+	/*
+	 * Builds the hub label index (see HubLabels) on the current snapshot.
+	 * Route then answers from the labels until a station or a track is added
+	 * or removed, which drops the index again. Renaming a station keeps it.
+	 */
+	public synchronized void buildLabels() {
+		labels = new HubLabels(version().graph);
+		republish();
+		cache.clear(); // cached paths may come from the search
+	}
+
+	// true while the label index is in use
+	public boolean hasLabels() {
+		return labels != null;
+	}
+
+	// replaces the route cache with one holding at most capacity routes
+	// (0 turns caching off)
+	public void setRouteCacheSize(int capacity) {
+		cache = new RouteCache(capacity);
+	}
+
+	// the route cache, for its hit and miss counters
+	public RouteCache getRouteCache() {
+		return cache;
+	}
+
+	/*
+	 * The shape of the graph, for the driver's "stats" command: stations,
+	 * tracks, adjacency list sizes, the route cache counters and the label
+	 * index. Unlike Metrics this is always there, it is read off the current
+	 * snapshot when asked for.
+	 */
+	public String stats() {
+		CompactGraph g = version().graph;
+		int n = g.size();
+		Histogram degree = new Histogram();
+		int loops = 0; // tracks from a station to itself, in its list once
+		for (int i = 0; i < n; i++) {
+			degree.add(g.offsets[i + 1] - g.offsets[i]);
+			for (int e = g.offsets[i]; e < g.offsets[i + 1]; e++)
+				if (g.targets[e] == i)
+					loops++;
+		}
+
+		StringBuilder sb = new StringBuilder("graph:\n");
+		sb.append("  stations ").append(n).append("  tracks ").append((g.targets.length + loops) / 2)
+				.append("  epoch ").append(epoch).append('\n');
+		sb.append(String.format("  tracks per station  mean %.2f  p50 %d  p99 %d  max %d\n", degree.mean(),
+				degree.percentile(0.50), degree.percentile(0.99), degree.max()));
+		sb.append("  route cache  size ").append(cache.size()).append('/').append(cache.getCapacity())
+				.append("  hits ").append(cache.getHits()).append("  misses ").append(cache.getMisses()).append('\n');
+		sb.append("  labels ").append(labels == null ? "not built" : labels.entries() + " entries").append('\n');
+		sb.append("  hot origins ").append(hot.size()).append("  present ").append(hot.built()).append('\n');
+		sb.append("  tombstones ").append(tombstoneCount);
+		return sb.toString();
+	}
+
+	// writes the whole graph (stations, names and tracks) to a snapshot
+	// file, see SnapshotFile
+	public synchronized void save(String file) throws IOException {
+		SnapshotFile.write(version().graph, file);
+	}
+
+	/*
+	 * Reads a graph from a snapshot file written by save(). The snapshot is
+	 * published as it is, so Route can use it right away. The live graph
+	 * (store, splay tree, index, neighbors) is built from it in one pass: the
+	 * stations are already sorted, so the tree is built balanced without
+	 * splaying, and the neighbor lists are copied in their saved order. It is
+	 * built up front rather than at the first change, because every command
+	 * (a Route included) finds its stations through the index, and the pass
+	 * is linear in the size of the file, like reading it.
+	 */
+	public static SubwayGraph load(String file) throws IOException {
+		return load(file, new HeapStationStore());
+	}
+
+	// load(), keeping the stations in store
+	public static SubwayGraph load(String file, StationStore store) throws IOException {
+		CompactGraph g = SnapshotFile.read(file);
+		SubwayGraph subway = new SubwayGraph(store);
+
+		int n = g.size();
+		int[] nodes = new int[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = subway.store.add(g.xs[i], g.ys[i], g.names[i]);
+			subway.store.setIndex(nodes[i], i);
+			subway.neighbors.added(nodes[i]);
+			subway.index.put(nodes[i]);
+			subway.grid.add(nodes[i]);
+		}
+		for (int i = 0; i < n; i++)
+			for (int e = g.offsets[i]; e < g.offsets[i + 1]; e++)
+				subway.neighbors.add(nodes[i], nodes[g.targets[e]]);
+		subway.tree.buildBalanced(nodes);
+
+		subway.published = new GraphVersion(g, null, false, CompactGraph.HOPS, subway.epoch);
+		subway.dirty = false;
+		subway.componentsStale = true; // the union-find is built when first needed
+		return subway;
+	}
+
+	// gives back the memory of the tree, the tracks, the index and the
+	// station store (see OffHeapStationStore). The graph must not be used
+	// after this, except for snapshots already taken with version()
+	public synchronized void close() {
+		tree.free();
+		neighbors.free();
+		index.free();
+		store.close();
+	}
+
+	// logs every following change to log (null stops logging), see
+	// CommandLog
+	public synchronized void setLog(CommandLog log) {
+		this.log = log;
+	}
+
+	// the log the changes go to, or null
+	public CommandLog getLog() {
+		return log;
+	}
+
+	/*
+	 * Called after every change to the graph. Marks the published version
+	 * as out of date and moves to a new epoch, which makes every cached
+	 * route stale.
+	 */
+	private void modified() {
+		dirty = true;
+		epoch++;
+		if (autoPublish)
+			publish();
+	}
+
+	/*
+	 * Makes the current state of the graph visible to readers: builds a new
+	 * GraphVersion (snapshot, labels and search mode) if the graph changed
+	 * since the last one, and swaps it in. Readers that pinned the older
+	 * version keep using it undisturbed. Writers decide how often to pay for
+	 * this; a burst of changes can be published once at the end.
+	 */
+	public synchronized GraphVersion publish() {
+		if (dirty) {
+			published = new GraphVersion(new CompactGraph(tree, neighbors), labels, bidirectional, metric, epoch);
+			dirty = false;
+		}
+		return published;
+	}
+
+	/*
+	 * Returns the last published version, without a lock. Until something
+	 * is published for the first time, this publishes the empty graph.
+	 */
+	public GraphVersion pin() {
+		GraphVersion v = published;
+		return v != null ? v : publish();
+	}
+
+	// with true, every change is published right away, so readers always
+	// see the latest graph (at the cost of a snapshot per change)
+	public synchronized void setAutoPublish(boolean b) {
+		autoPublish = b;
+		if (b)
+			publish();
+	}
+
+	// the latest version, for the writer's own Routes. The snapshot is only
+	// rebuilt if the graph changed since the last one, so a run of Route
+	// commands shares one snapshot
+	private GraphVersion version() {
+		return dirty ? publish() : published;
+	}
+
+	// publishes a new version with the same snapshot, after the labels or
+	// the search mode changed
+	private void republish() {
+		GraphVersion v = version();
+		published = new GraphVersion(v.graph, labels, bidirectional, metric, epoch);
+	}
+
+	/*
+	 * With ratio > 0, delete() only marks the station as a tombstone: it
+	 * leaves the index and the spatial grid (O(1)), but stays in the tree and
+	 * in the adjacency sets of its neighbors, and everything that walks those
+	 * skips it. Once there are more than ratio tombstones per live station,
+	 * compact() removes them all at once, so a storm of deletes costs O(1)
+	 * each, amortized. With 0 (the default), delete() removes the station
+	 * right away, and any tombstones left are compacted now.
+	 */
+	public synchronized void setLazyDelete(double ratio) {
+		compactAt = ratio;
+		if (ratio == 0)
+			compact();
+	}
+
+	/*
+	 * Removes the tombstones for good: each one leaves the adjacency sets of
+	 * its neighbors (O(1) per track), and the tree is rebuilt balanced from
+	 * the live stations, like load() does. The graph looks the same before
+	 * and after, so this is not a change (no new epoch or snapshot).
+	 */
+	public synchronized void compact() {
+		if (tombstoneCount == 0)
+			return;
+		for (int k = 0; k < tombstoneCount; k++) {
+			int t = tombstones[k];
+			unlink(t);
+			neighbors.clear(t);
+			store.remove(t);
+		}
+		tombstoneCount = 0;
+		tree.buildBalanced(tree.inOrderNodes());
+	}
+
+	// takes station t out of the neighbor sets of its neighbors (O(1) each).
+	// A track from the station to itself is skipped, its own set must not
+	// change while we walk it
+	private void unlink(int t) {
+		for (int i = 0, e = neighbors.end(t); i < e; i++) {
+			int w = neighbors.neighbor(t, i);
+			if (w != AdjacencySets.NIL && w != t)
+				neighbors.remove(w, t);
+		}
 	}
 
 	// extra credit -- remove a vertex and all incident edges
@@ -276,26 +926,50 @@ public class SubwayGraph {
 	 * 
 	 * Again. No output is required, thus a return type of void
 	 */
-	public void delete(Point loc) {
+	public synchronized void delete(Point loc) {
 		
 		//if doesn't exist, ignore, to prevent a null pointer exception
-		if(tree.search(loc) == null)
+		int removeNode = index.get(loc); //gets node
+		if(removeNode == StationIndex.NIL)
 			return;
+		if (log != null)
+			log.delete(this, loc.x, loc.y);
 
-		// splay the point's node to find the respective adjacency list
-		ArrayList list = tree.search(loc).adjacencyList; //gets list of node
-		Node removeNode = tree.search(loc); //gets node
-
-		//goes through the adj list and remove the removeNode from that list
-		for(int i = 0; i < list.size(); i++){
-			//go to that node's adjacency list and delete that index
-			Node temp = (Node) list.get(i); //get node
-			ArrayList tempList = temp.adjacencyList; //get list of that node
-			tempList.remove(removeNode); //remove the desired node -> Node with loc Point
+		//lazily, the node is just marked as a tombstone, which everything
+		//that walks the tree or the lists skips, and compact() takes it out
+		//later along with the others
+		if (compactAt > 0) {
+			store.setDeleted(removeNode, true);
+			if (tombstoneCount == tombstones.length)
+				tombstones = Arrays.copyOf(tombstones, 2 * tombstoneCount);
+			tombstones[tombstoneCount++] = removeNode;
 		}
 
-		// then delete overall node
-		tree.delete(loc);
+		//goes through the node's neighbors and removes the removeNode from
+		//each of their sets. each remove is O(1) (see AdjacencySets)
+		else
+			unlink(removeNode);
+
+		// a station with one track (or none) cannot hold two other
+		// stations together, so only a bigger one can split its component
+		if (neighbors.size(removeNode) > 1)
+			componentsStale = true;
+
+		// then delete overall node, from the index and from the tree. Its
+		// own neighbors go last, the hot origin trees still walk them
+		index.remove(loc.x, loc.y);
+		grid.remove(removeNode);
+		hot.deleted(removeNode);
+		if (compactAt == 0) {
+			tree.removeNode(removeNode);
+			neighbors.clear(removeNode);
+			store.remove(removeNode);
+		} else if (tombstoneCount > compactAt * index.size())
+			compact();
+		labels = null; // station and tracks gone, the labels are out of date
+		modified();
+		if (log != null)
+			log.applied(this);
 
 	}
 }
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Every neighbor set behaves like the ArrayList it replaced (with a
+ * contains() before every add): same members, same order, small and large,
+ * through holes and compaction, while the sets of other slots grow, shrink
+ * and are cleared around it in the same heap of blocks.
+ */
+class AdjacencySetsTest {
+
+	@Test
+	void behavesLikeLists() {
+		for (int pool : new int[] { 4, AdjacencySets.SMALL, 3 * AdjacencySets.SMALL, 500 }) {
+			int slots = 20;
+			Random r = new Random(pool);
+			AdjacencySets sets = new AdjacencySets();
+			ArrayList<ArrayList<Integer>> model = new ArrayList<ArrayList<Integer>>();
+			for (int s = 0; s < slots; s++) {
+				sets.added(s);
+				model.add(new ArrayList<Integer>());
+			}
+			for (int k = 0; k < 200000; k++) {
+				int s = r.nextInt(slots);
+				Integer n = r.nextInt(pool);
+				ArrayList<Integer> m = model.get(s);
+				// grow for a while, then shrink, then grow again, so the
+				// sets go over and under SMALL and leave many holes
+				boolean adding = (k / 20000) % 2 == 0 ? r.nextInt(4) != 0 : r.nextInt(4) == 0;
+				if (r.nextInt(5000) == 0) {
+					sets.clear(s);
+					m.clear();
+				} else if (adding) {
+					boolean added = !m.contains(n);
+					if (added)
+						m.add(n);
+					assertEquals(added, sets.add(s, n));
+				} else
+					assertEquals(m.remove(n), sets.remove(s, n));
+				assertEquals(m.contains(n), sets.contains(s, n));
+				assertEquals(m.size(), sets.size(s));
+				if (k % 97 == 0)
+					assertEquals(m, list(sets, s));
+			}
+			for (int s = 0; s < slots; s++)
+				assertEquals(model.get(s), list(sets, s));
+		}
+	}
+
+	// the neighbors of s in the order they were added
+	private static ArrayList<Integer> list(AdjacencySets sets, int s) {
+		ArrayList<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < sets.end(s); i++)
+			if (sets.neighbor(s, i) != AdjacencySets.NIL)
+				list.add(sets.neighbor(s, i));
+		return list;
+	}
+
+	@Test
+	void emptySet() {
+		AdjacencySets sets = new AdjacencySets();
+		sets.added(3);
+		assertEquals(0, sets.size(3));
+		assertEquals(0, sets.end(3));
+		assertEquals(false, sets.remove(3, 0));
+	}
+
+	@Test
+	void routesThroughAHub() {
+		// a hub with hundreds of tracks, some of its neighbors deleted
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		StringBuilder script = new StringBuilder("insert 0 0 hub\n");
+		for (int i = 1; i <= 400; i++)
+			script.append("insert ").append(i).append(" 1 s\nAdjacent 0 0 ").append(i).append(" 1\n");
+		for (int i = 1; i < 400; i++)
+			script.append("Adjacent ").append(i).append(" 1 ").append(i + 1).append(" 1\n");
+		for (int i = 3; i <= 400; i += 7)
+			script.append("Delete ").append(i).append(" 1\n");
+		Network.apply(script.toString(), g, ref);
+		for (int[] a : ref.points())
+			for (int[] b : ref.points())
+				if (a[0] % 5 == 0)
+					assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+	}
+}
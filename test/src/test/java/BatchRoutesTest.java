@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * A run of Routes (--batch-routes) from a few starts, some of them with no
+ * station, is answered in the order it was read, and a run the input cuts
+ * short with a bad number is still answered.
+ */
+class BatchRoutesTest {
+
+	@Test
+	void runFromFewStarts() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(4, 1500, 6, Network.DEFAULT.without("Route")), g, ref);
+		Random r = new Random(4);
+		PendingRoutes run = new PendingRoutes();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			// three starts (one is off the grid), any finish
+			int x1 = r.nextInt(3) * 5 - 5, y1 = x1 == 5 ? 99 : 0;
+			int x2 = r.nextInt(13) - 6, y2 = r.nextInt(13) - 6;
+			run.add(new Point(x1, y1), new Point(x2, y2));
+			expected.append(ref.route(x1, y1, x2, y2)).append(System.lineSeparator());
+		}
+		assertEquals(500, run.size());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RouteWriter out = new RouteWriter(bytes, RouteWriter.BUFFERED);
+		run.flush(g, out);
+		assertEquals(0, run.size());
+		run.flush(g, out); // nothing left
+		out.flush();
+		assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void badNumberEndsTheRun() throws IOException, InterruptedException {
+		String script = Network.script(5, 600, 5) + "Route 0 0 1 1\nRoute 1 1 0 0\n";
+		String expected = Network.drive(script);
+		assertEquals(expected, Network.run(script + "Route 1 x 2 3\n", "--batch-routes")[0]);
+		assertEquals(expected, Network.run(script + "Route 1 x 2 3\n", "--batch-routes", "--raw-output")[0]);
+	}
+}
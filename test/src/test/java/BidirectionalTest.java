@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The bidirectional BFS finds a route as short as the one-sided search does
+ * wherever the two searches meet, and NO PATH when they never do.
+ */
+class BidirectionalTest {
+
+	@Test
+	void linesOfEveryLength() {
+		// the two searches meet on a station (odd number of stations) or on a
+		// track (even), and on a ring there are two shortest routes
+		for (int n = 1; n <= 12; n++) {
+			SubwayGraph g = new SubwayGraph();
+			g.setBidirectional(true);
+			Reference ref = new Reference();
+			StringBuilder script = new StringBuilder();
+			for (int i = 0; i < n; i++) {
+				script.append("insert ").append(i).append(" 0 s").append(i).append('\n');
+				if (i > 0)
+					script.append("Adjacent ").append(i - 1).append(" 0 ").append(i).append(" 0\n");
+			}
+			Network.apply(script.toString(), g, ref);
+			assertEquals(ref.route(0, 0, n - 1, 0), g.route(new Point(0, 0), new Point(n - 1, 0)));
+			assertEquals(ref.route(n - 1, 0, 0, 0), g.route(new Point(n - 1, 0), new Point(0, 0)));
+
+			g.adjacent(new Point(n - 1, 0), new Point(0, 0));
+			ref.adjacent(n - 1, 0, 0, 0);
+			for (int i = 0; i < n; i++)
+				ref.check(g.route(new Point(0, 0), new Point(i, 0)), 0, 0, i, 0);
+
+			// and a station on its own
+			g.insert(new Point(0, 1), "alone");
+			assertEquals("NO PATH", g.route(new Point(0, 0), new Point(0, 1)));
+			assertEquals("Station 0, 1 alone\n", g.route(new Point(0, 1), new Point(0, 1)));
+		}
+	}
+
+	@Test
+	void sameLengthAsTheOneSidedSearch() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(99, 2000, 12, Network.DEFAULT.without("Delete")), g, ref);
+		CompactGraph c = g.publish().graph;
+		int n = c.size();
+		for (int a = 0; a < n; a += 7)
+			for (int b = 0; b < n; b += 5)
+				assertEquals(c.route(a, b).split("\n").length, c.bidirectionalRoute(a, b).split("\n").length);
+	}
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * A bulk import (--bulk-import, SubwayGraph.bulkLoad) builds the graph that
+ * applying its inserts and Adjacents one by one builds, checked against the
+ * plain model: negative coordinates, tracks to stations inserted later in
+ * the run, renames, a graph that was loaded from a snapshot, and an import
+ * that the end of the input cuts short.
+ */
+class BulkImportTest {
+
+	// the graph has the stations, names and routes of the model
+	private static void same(Reference ref, SubwayGraph g) {
+		assertEquals(ref.names(), g.toString());
+		int[][] p = ref.points();
+		for (int[] a : p)
+			for (int[] b : p)
+				assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+	}
+
+	// the script as one bulk import into g (its Routes and Deletes left out)
+	private static void bulk(String script, SubwayGraph g) {
+		PendingImport run = new PendingImport();
+		for (String line : script.split("\n")) {
+			String[] t = line.split(" ");
+			if (t[0].equals("insert"))
+				run.insert(new Point(Integer.parseInt(t[1]), Integer.parseInt(t[2])), t[3]);
+			else if (t[0].equals("Adjacent"))
+				run.adjacent(new Point(Integer.parseInt(t[1]), Integer.parseInt(t[2])),
+						new Point(Integer.parseInt(t[3]), Integer.parseInt(t[4])));
+		}
+		run.flush(g);
+	}
+
+	@Test
+	void negativeCoordinates() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		String script = "insert -1 5 a\ninsert 3 -2 b\ninsert -7 -7 c\ninsert 0 5 d\nAdjacent -1 5 3 -2\n"
+				+ "Adjacent 3 -2 -7 -7\nAdjacent -7 -7 0 5\n";
+		bulk(script, g);
+		Network.apply(script, new SubwayGraph(), ref);
+		same(ref, g);
+	}
+
+	@Test
+	void sameAsOneByOne() {
+		for (long seed = 0; seed < 5; seed++) {
+			String script = Network.script(seed, 1500, 8, Network.DEFAULT.without("Route").without("Delete"));
+			Reference ref = new Reference();
+			Network.apply(script, new SubwayGraph(), ref);
+			SubwayGraph g = new SubwayGraph();
+			bulk(script, g);
+			same(ref, g);
+		}
+	}
+
+	@Test
+	void badNumberKeepsTheImport() throws IOException, InterruptedException {
+		// the input ends in the middle of an import: what was read of it is
+		// applied, and logged
+		Path dir = Files.createTempDirectory("subway-wal");
+		try {
+			String script = Network.script(6, 800, 6, Network.DEFAULT.without("Route").without("Delete"));
+			Network.run(script + "insert 1 x red\n", "--bulk-import", "--wal=" + dir);
+			Reference ref = new Reference();
+			Network.apply(script, new SubwayGraph(), ref);
+			SubwayGraph g = CommandLog.recover(dir.toString(), 1000, new HeapStationStore());
+			g.getLog().close();
+			same(ref, g);
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	void afterSnapshotLoad() throws IOException {
+		Path file = Files.createTempFile("subway", ".snap");
+		try {
+			for (long seed = 0; seed < 10; seed++) {
+				String first = Network.script(seed, 600, 5, Network.DEFAULT.without("Route"));
+				SubwayGraph g = new SubwayGraph();
+				Reference ref = new Reference();
+				Network.apply(first, g, ref);
+				g.save(file.toString());
+
+				// tracks between stations of the snapshot, and to new ones
+				String more = Network.script(seed + 50, 600, 7, Network.DEFAULT.without("Route").without("Delete"));
+				SubwayGraph loaded = SubwayGraph.load(file.toString());
+				bulk(more, loaded);
+				Network.apply(more, new SubwayGraph(), ref);
+				same(ref, loaded);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * A graph recovered from its log directory is the graph the commands built,
+ * checked against the plain model: after any number of runs and
+ * checkpoints, after a bulk import, and after a crash that left a record
+ * cut short (anywhere in it) or a logged change not yet made.
+ */
+class CommandLogTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("subway-wal");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	// the graph in dir, recovered and with its log closed again
+	private SubwayGraph recover() throws IOException {
+		SubwayGraph g = CommandLog.recover(dir.toString(), 50, new HeapStationStore());
+		g.getLog().close();
+		return g;
+	}
+
+	// the recovered graph has the stations and the routes of the model
+	private static void same(Reference ref, SubwayGraph g) {
+		assertEquals(ref.names(), g.toString());
+		int[][] p = ref.points();
+		for (int[] a : p)
+			for (int[] b : p)
+				assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+	}
+
+	@Test
+	void severalRuns() throws IOException {
+		Reference ref = new Reference();
+		for (long seed = 0; seed < 6; seed++) {
+			String script = Network.script(seed, 400, 5);
+			Network.drive(script, "--wal=" + dir, "--checkpoint-every=37");
+			Network.apply(script, new SubwayGraph(), ref);
+			same(ref, recover());
+		}
+	}
+
+	@Test
+	void bulkImport() throws IOException {
+		// tracks to stations inserted later in the same run are logged too,
+		// and replay ignores them just like the import did
+		String script = Network.script(3, 3000, 6, Network.DEFAULT.with("Route", 0.02));
+		Reference ref = new Reference();
+		Network.apply(script, new SubwayGraph(), ref);
+		Network.drive(script, "--bulk-import", "--wal=" + dir, "--checkpoint-every=100");
+		same(ref, recover());
+	}
+
+	@Test
+	void crashes() throws IOException {
+		Reference ref = new Reference();
+		SubwayGraph g = CommandLog.recover(dir.toString(), 1000, new HeapStationStore());
+		Network.apply(Network.script(8, 300, 4), g, ref);
+		g.getLog().close();
+		File log = new File(dir.toFile(), "wal-0.log");
+		assertTrue(log.length() > 0);
+
+		// a whole record that made it into the log, but not into the graph
+		try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+			raf.seek(raf.length());
+			raf.writeByte(CommandLog.INSERT);
+			raf.writeInt(9);
+			raf.writeInt(-9);
+			raf.writeInt(4);
+			raf.writeBytes("pink");
+		}
+		ref.insert(9, -9, "pink");
+
+		// and half a record after it
+		long whole = log.length();
+		try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+			raf.seek(raf.length());
+			raf.writeByte(CommandLog.ADJACENT);
+			raf.writeInt(9);
+		}
+		same(ref, recover());
+		assertEquals(whole, log.length());
+	}
+
+	@Test
+	void tailCutInARecord() throws IOException {
+		// a real log whose last record (an insert) is cut after every one of
+		// its bytes: recovery drops the partial record, trims it off the
+		// file, and logs the next change after the last whole one
+		Reference ref = new Reference();
+		SubwayGraph g = CommandLog.recover(dir.toString(), 1000, new HeapStationStore());
+		Network.apply(Network.script(9, 200, 4, Network.DEFAULT.without("Route")), g, ref);
+		File log = new File(dir.toFile(), "wal-0.log");
+		long whole = log.length();
+		g.insert(new Point(7, 7), "violet");
+		g.getLog().close();
+		byte[] bytes = Files.readAllBytes(log.toPath());
+		assertEquals(whole + 1 + 4 + 4 + 4 + 6, bytes.length);
+
+		for (int cut = 1; cut < bytes.length - whole; cut++) {
+			Files.write(log.toPath(), Arrays.copyOf(bytes, (int) whole + cut));
+			same(ref, recover());
+			assertEquals(whole, log.length());
+
+			SubwayGraph again = CommandLog.recover(dir.toString(), 1000, new HeapStationStore());
+			again.insert(new Point(8, 8), "pink");
+			again.getLog().close();
+			Reference more = new Reference();
+			Network.apply(Network.script(9, 200, 4, Network.DEFAULT.without("Route")), new SubwayGraph(), more);
+			more.insert(8, 8, "pink");
+			same(more, recover());
+		}
+	}
+}
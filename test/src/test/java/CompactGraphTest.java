@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The CSR snapshot finds stations by coordinates and follows the live graph
+ * through changes, and a route ends at the finish station itself.
+ */
+class CompactGraphTest {
+
+	@Test
+	void namesakeIsNotTheFinish() {
+		// the finish has the same name as a station next to the start: the
+		// route goes all the way to the finish, not to the namesake
+		SubwayGraph g = new SubwayGraph();
+		g.insert(new Point(0, 0), "red");
+		g.insert(new Point(1, 0), "blue");
+		g.insert(new Point(2, 0), "green");
+		g.insert(new Point(3, 0), "blue");
+		g.adjacent(new Point(0, 0), new Point(1, 0));
+		g.adjacent(new Point(1, 0), new Point(2, 0));
+		g.adjacent(new Point(2, 0), new Point(3, 0));
+		assertEquals("Station 0, 0 red\nStation 1, 0 blue\nStation 2, 0 green\nStation 3, 0 blue\n",
+				g.route(new Point(0, 0), new Point(3, 0)));
+	}
+
+	@Test
+	void routesToMissingStationsHaveNoPath() {
+		SubwayGraph g = new SubwayGraph();
+		g.insert(new Point(1, 1), "red");
+		assertEquals("NO PATH", g.route(new Point(1, 1), new Point(2, 2)));
+		assertEquals("NO PATH", g.route(new Point(2, 2), new Point(1, 1)));
+		assertEquals("Station 1, 1 red\n", g.route(new Point(1, 1), new Point(1, 1)));
+	}
+
+	@Test
+	void snapshotFollowsChanges() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		String script = Network.script(7, 600, 4);
+		String[] lines = script.split("\n");
+		for (int i = 0; i < lines.length; i += 50) {
+			StringBuilder part = new StringBuilder();
+			for (int j = i; j < Math.min(lines.length, i + 50); j++)
+				part.append(lines[j]).append('\n');
+			Network.apply(part.toString(), g, ref);
+
+			// a new snapshot after every few changes
+			CompactGraph c = g.publish().graph;
+			assertEquals(ref.size(), c.size());
+			int[][] p = ref.points();
+			for (int k = 0; k < p.length; k++) {
+				assertEquals(k, c.find(p[k][0], p[k][1]));
+				assertEquals(ref.get(p[k][0], p[k][1]).toString(), c.station(k));
+			}
+			assertEquals(-1, c.find(100, 100));
+			for (int[] a : p)
+				for (int[] b : p)
+					assertEquals(ref.route(a[0], a[1], b[0], b[1]), c.route(c.find(a[0], a[1]), c.find(b[0], b[1])));
+		}
+	}
+}
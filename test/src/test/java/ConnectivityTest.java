@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The union-find says two stations are connected exactly when the plain BFS
+ * finds a route between them, also after Deletes split components.
+ */
+class ConnectivityTest {
+
+	@Test
+	void sameAsLabelling() {
+		// the model: every serial has a component label, relabelled in full
+		// on every union
+		Random r = new Random(1);
+		Connectivity c = new Connectivity();
+		int[] label = new int[3000];
+		for (int i = 0; i < label.length; i++) {
+			assertEquals(i, c.add());
+			label[i] = i;
+		}
+		for (int k = 0; k < 2500; k++) {
+			int a = r.nextInt(label.length), b = r.nextInt(label.length);
+			c.union(a, b);
+			int from = label[b], to = label[a];
+			for (int i = 0; i < label.length; i++)
+				if (label[i] == from)
+					label[i] = to;
+			for (int q = 0; q < 20; q++) {
+				int x = r.nextInt(label.length), y = r.nextInt(label.length);
+				assertEquals(label[x] == label[y], c.connected(x, y));
+			}
+		}
+		c.clear();
+		assertEquals(0, c.serials());
+	}
+
+	@Test
+	void churnKeepsTheSerialsBounded() {
+		// stations come and go (with at most one track each, so no Delete
+		// marks the union-find stale by itself), and Routes keep asking it
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Random r = new Random(2);
+		for (int k = 0; k < 200000; k++) {
+			int x = r.nextInt(40), y = r.nextInt(40);
+			String line;
+			if (k % 3 == 2)
+				line = "Delete " + x + " " + y;
+			else if (k % 3 == 1) // only (2i, y) - (2i + 1, y)
+				line = "Adjacent " + (x & ~1) + " " + y + " " + (x | 1) + " " + y;
+			else
+				line = "insert " + x + " " + y + " " + Network.NAMES[k % 8];
+			Network.apply(line, g, ref);
+			if (k % 1000 == 999) {
+				int[][] p = ref.points();
+				int[] a = p[r.nextInt(p.length)], b = p[r.nextInt(p.length)];
+				assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+				assertTrue(g.components().serials() <= 2 * p.length + 17, g.components().serials() + " serials for "
+						+ p.length + " stations");
+			}
+		}
+	}
+
+	@Test
+	void noPathExactlyWhenDisconnected() {
+		for (long seed = 0; seed < 5; seed++) {
+			SubwayGraph g = new SubwayGraph();
+			Reference ref = new Reference();
+			String[] script = Network.script(seed, 600, 6, Network.DEFAULT.with("Delete", 0.25).without("Route"))
+					.split("\n");
+			for (int i = 0; i < script.length; i++) {
+				Network.apply(script[i], g, ref);
+				if (i % 50 != 49)
+					continue;
+				int[][] p = ref.points();
+				for (int[] a : p)
+					for (int[] b : p)
+						assertEquals(ref.route(a[0], a[1], b[0], b[1]).equals("NO PATH"),
+								g.route(new Point(a[0], a[1]), new Point(b[0], b[1])).equals("NO PATH"));
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The command files the benchmarks run (tiny/ and small/, see bench/) give
+ * the plain BFS answers through the driver, so the benchmarks time the
+ * right work.
+ */
+class DatasetsTest {
+
+	@Test
+	void tiny() throws IOException {
+		dataset("tiny");
+	}
+
+	@Test
+	void small() throws IOException {
+		dataset("small");
+	}
+
+	private static void dataset(String name) throws IOException {
+		File[] files = new File("..", name).listFiles();
+		assertTrue(files != null && files.length > 0, name);
+		for (File f : files) {
+			String script = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+			assertEquals(Reference.output(script), Network.drive(script), f.getName());
+		}
+	}
+}
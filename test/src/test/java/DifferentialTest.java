@@ -0,0 +1,122 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The driver answers random scripts like the plain model, with every flag
+ * (and the combinations that share code): exactly what the model prints
+ * where the flag only changes how the answer is found, and a shortest route
+ * (by stations or by length) where it may pick another one. The features
+ * have their own tests for what is particular to them; this one is the
+ * check that none of them changes an answer.
+ */
+class DifferentialTest {
+
+	// every command, with long runs of Routes and many Deletes
+	private static final Network.Mix ALL = Network.DEFAULT.with("Route", 0.6).with("Delete", 0.1)
+			.with("Nearest", 0.05).with("Range", 0.05);
+
+	// small grids where everything is connected, and one spread out
+	private static final int[] SPANS = { 3, 5, 8, 200 };
+
+	// flags that print exactly what the plain model prints
+	private static final String[][] EXACT = { {}, { "--route-cache=0" }, { "--route-cache=4" },
+			{ "--batch-routes" }, { "--batch-routes", "--route-cache=0" }, { "--parallel" }, { "--parallel=3" },
+			{ "--fast-input" }, { "--buffered-output" }, { "--raw-output" }, { "--metrics" }, { "--bulk-import" },
+			{ "--bulk-import", "--batch-routes" }, { "--lazy-delete" }, { "--lazy-delete=0.01" }, { "--lazy-delete=100" },
+			{ "--lazy-delete", "--batch-routes", "--bulk-import" },
+			{ "--off-heap" }, { "--off-heap", "--lazy-delete" },
+			{ "--fast-input", "--raw-output", "--batch-routes", "--route-cache=0" } };
+
+	// flags that may print another shortest route, by stations (HOPS) or by
+	// length; the others print exactly what the first one does
+	private static final String[][][] SHORTEST = {
+			{ { "--bidirectional" }, { "--bidirectional", "--batch-routes" }, { "--bidirectional", "--parallel=3" },
+					{ "--bidirectional", "--raw-output" } },
+			{ { "--hot-origin=0,0", "--hot-origin=1,-1" }, { "--hot-origin=0,0", "--hot-origin=1,-1", "--batch-routes" },
+					{ "--hot-origin=0,0", "--hot-origin=1,-1", "--bulk-import" },
+					{ "--hot-origin=0,0", "--hot-origin=1,-1", "--lazy-delete" } },
+			{ { "--weighted=euclidean" }, { "--weighted=euclidean", "--batch-routes" },
+					{ "--weighted=euclidean", "--parallel=3" }, { "--weighted=euclidean", "--raw-output" } },
+			{ { "--weighted=manhattan" }, { "--weighted=manhattan", "--batch-routes" },
+					{ "--weighted=manhattan", "--lazy-delete" } } };
+
+	@Test
+	void exact() throws IOException {
+		for (long seed = 0; seed < SPANS.length; seed++) {
+			String script = Network.script(seed, 2000, SPANS[(int) seed], ALL);
+			String expected = Reference.output(script);
+			for (String[] flags : EXACT)
+				assertEquals(expected, Network.drive(script, flags), "seed " + seed + " " + String.join(" ", flags));
+		}
+	}
+
+	@Test
+	void shortest() throws IOException {
+		for (long seed = 0; seed < SPANS.length; seed++) {
+			String script = Network.script(seed, 2000, SPANS[(int) seed], ALL);
+			for (String[][] same : SHORTEST) {
+				String first = Network.drive(script, same[0]);
+				check(script, first, metric(same[0]));
+				for (int i = 1; i < same.length; i++)
+					assertEquals(first, Network.drive(script, same[i]), String.join(" ", same[i]));
+			}
+		}
+	}
+
+	@Test
+	void labels() throws IOException {
+		// labels built now and then, used by the Routes until the next change
+		for (long seed = 0; seed < SPANS.length; seed++) {
+			String build = Network.script(seed, 800, SPANS[(int) seed], ALL.without("Route"));
+			String routes = Network.script(seed + 10, 1000, SPANS[(int) seed], ALL.with("Route", 20));
+			String script = build + "build_labels\n" + routes.replaceAll("(?m)^(insert .*)$", "$1\nbuild_labels");
+			check(script, Network.drive(script), CompactGraph.HOPS);
+		}
+	}
+
+	// the metric the flags ask for
+	private static int metric(String[] flags) {
+		for (String flag : flags)
+			if (flag.equals("--weighted=euclidean"))
+				return CompactGraph.EUCLIDEAN;
+			else if (flag.equals("--weighted=manhattan"))
+				return CompactGraph.MANHATTAN;
+		return CompactGraph.HOPS;
+	}
+
+	// the output has a shortest route for every Route of the script, and
+	// the answers of the plain model for the rest
+	private static void check(String script, String output, int metric) {
+		List<String> answers = Network.answers(output);
+		Reference ref = new Reference();
+		int k = 0;
+		for (String line : script.split("\n")) {
+			String[] t = line.split(" ");
+			int[] a = new int[4];
+			for (int i = 1; i < t.length && i <= 4; i++)
+				if (!(t[0].equals("insert") && i == 3))
+					a[i - 1] = Integer.parseInt(t[i]);
+			if (t[0].equals("insert"))
+				ref.insert(a[0], a[1], t[3]);
+			else if (t[0].equals("Adjacent"))
+				ref.adjacent(a[0], a[1], a[2], a[3]);
+			else if (t[0].equals("Delete"))
+				ref.delete(a[0], a[1]);
+			else if (t[0].equals("Route")) {
+				String route = answers.get(k++);
+				if (metric == CompactGraph.HOPS)
+					ref.check(route, a[0], a[1], a[2], a[3]);
+				else
+					ref.checkWeighted(route, a[0], a[1], a[2], a[3], metric == CompactGraph.MANHATTAN);
+			} else if (t[0].equals("Nearest"))
+				assertEquals(ref.nearest(a[0], a[1], a[2]), answers.get(k++), line);
+			else if (t[0].equals("Range"))
+				assertEquals(ref.range(a[0], a[1], a[2], a[3]), answers.get(k++), line);
+		}
+		assertEquals(k, answers.size());
+	}
+}
@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The byte-level parser (--fast-input) reads the same commands as the line
+ * reader, from a file (memory-mapped) or from standard input.
+ */
+class FastInputTest {
+
+	@Test
+	void anyWhitespace() throws IOException {
+		// the same commands with tabs, runs of blanks, CRLF line ends and
+		// tokens split over lines
+		String script = Network.script(4, 2000, 6);
+		Random r = new Random(4);
+		String[] gaps = { " ", "\t", "  ", "\r\n", "\n", " \t " };
+		StringBuilder sb = new StringBuilder();
+		for (String line : script.split("\n")) {
+			for (String token : line.split(" "))
+				sb.append(token).append(gaps[r.nextInt(gaps.length)]);
+			sb.append("\r\n");
+		}
+		assertEquals(Network.drive(script), Network.drive(sb.toString(), "--fast-input"));
+	}
+
+	@Test
+	void standardInput() throws IOException {
+		String script = Network.script(5, 2000, 6);
+		String expected = Network.drive(script);
+
+		InputStream stdin = System.in;
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final boolean[] closed = { false };
+		try {
+			System.setIn(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)) {
+				public void close() {
+					closed[0] = true;
+				}
+			});
+			System.setOut(new PrintStream(bytes, true, "UTF-8"));
+			SubwayDriver.main(new String[] { "--fast-input", "--extra-credit" });
+		} finally {
+			System.setIn(stdin);
+			System.setOut(stdout);
+		}
+		assertEquals(expected, bytes.toString("UTF-8"));
+		assertTrue(closed[0], "the driver left its input open");
+	}
+
+	@Test
+	void numbersLikeParseInt() throws IOException {
+		String[] tokens = { "0", "-0", "+7", "007", "2147483647", "-2147483648", "2147483648", "-2147483649",
+				"99999999999", "-", "+", "12a", "1-2", "--1" };
+		ByteCommandReader reader = new ByteCommandReader(
+				Channels.newChannel(new ByteArrayInputStream(String.join(" ", tokens).getBytes(StandardCharsets.UTF_8))));
+		for (String token : tokens) {
+			assertTrue(reader.next());
+			Integer expected;
+			try {
+				expected = Integer.parseInt(token);
+			} catch (NumberFormatException e) {
+				expected = null;
+			}
+			if (expected != null)
+				assertEquals(expected.intValue(), reader.intValue(), token);
+			else
+				assertThrows(NumberFormatException.class, reader::intValue, token);
+		}
+		assertFalse(reader.next());
+		reader.close();
+	}
+
+	@Test
+	void closeClosesTheFile() throws IOException {
+		Path file = Files.createTempFile("subway", ".txt");
+		try {
+			Files.write(file, "insert 1 2 red\n".getBytes(StandardCharsets.UTF_8));
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			ByteCommandReader reader = new ByteCommandReader(channel);
+			assertTrue(reader.next());
+			assertTrue(reader.is("insert"));
+			reader.close();
+			assertFalse(channel.isOpen());
+			assertThrows(IOException.class, reader::next);
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * A pinned version keeps giving the answers of the graph it was pinned from,
+ * whatever the writer does afterwards, and readers on several threads get
+ * the same answers from a version as a single thread would.
+ */
+class GraphVersionTest {
+
+	@Test
+	void pinnedVersionKeepsItsAnswers() {
+		for (long seed = 0; seed < 10; seed++) {
+			SubwayGraph g = new SubwayGraph();
+			Reference ref = new Reference();
+			String[] script = Network.script(seed, 800, 5).split("\n");
+			List<GraphVersion> versions = new ArrayList<GraphVersion>();
+			List<String> expected = new ArrayList<String>();
+			for (int i = 0; i < script.length; i++) {
+				Network.apply(script[i], g, ref);
+				if (i % 100 == 0) {
+					versions.add(g.publish());
+					StringBuilder sb = new StringBuilder();
+					int[][] p = ref.points();
+					for (int[] a : p)
+						for (int[] b : p)
+							sb.append(ref.route(a[0], a[1], b[0], b[1]));
+					expected.add(sb.toString());
+				}
+			}
+
+			// every old version, long after it was replaced
+			for (int k = 0; k < versions.size(); k++) {
+				GraphVersion v = versions.get(k);
+				StringBuilder sb = new StringBuilder();
+				CompactGraph c = v.getGraph();
+				for (int a = 0; a < c.size(); a++)
+					for (int b = 0; b < c.size(); b++)
+						sb.append(v.route(new Point(c.xs[a], c.ys[a]), new Point(c.xs[b], c.ys[b]), new SearchWorkspace()));
+				assertEquals(expected.get(k), sb.toString());
+			}
+		}
+	}
+
+	@Test
+	void concurrentReaders() throws InterruptedException {
+		final SubwayGraph g = new SubwayGraph();
+		g.setAutoPublish(true);
+		final String[] script = Network.script(3, 4000, 6, Network.DEFAULT.without("Route")).split("\n");
+
+		// readers route between random points while the writer changes the
+		// graph, and keep what they got from which version
+		final int readers = 4;
+		final List<List<Object[]>> seen = new ArrayList<List<Object[]>>();
+		Thread[] threads = new Thread[readers];
+		final AtomicBoolean done = new AtomicBoolean();
+		for (int t = 0; t < readers; t++) {
+			final List<Object[]> mine = new ArrayList<Object[]>();
+			seen.add(mine);
+			final Random r = new Random(t);
+			threads[t] = new Thread(() -> {
+				SearchWorkspace w = new SearchWorkspace();
+				while (!done.get() || mine.isEmpty()) {
+					GraphVersion v = g.pin();
+					Point a = new Point(r.nextInt(13) - 6, r.nextInt(13) - 6);
+					Point b = new Point(r.nextInt(13) - 6, r.nextInt(13) - 6);
+					mine.add(new Object[] { v, a, b, v.route(a, b, w) });
+				}
+			});
+			threads[t].start();
+		}
+		for (String line : script)
+			Network.apply(line, g, null);
+		done.set(true);
+		for (Thread t : threads)
+			t.join();
+
+		// each answer again, on one thread
+		int versions = 0;
+		Object last = null;
+		for (List<Object[]> mine : seen) {
+			assertTrue(mine.size() > 0);
+			for (Object[] s : mine) {
+				GraphVersion v = (GraphVersion) s[0];
+				assertEquals(s[3], v.route((Point) s[1], (Point) s[2], new SearchWorkspace()));
+				if (v != last)
+					versions++;
+				last = v;
+			}
+		}
+		assertTrue(versions > 1);
+	}
+}
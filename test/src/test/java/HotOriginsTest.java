@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Routes from and to a hot origin are shortest routes (as long as the plain
+ * BFS says, maybe a different one), and NO PATH exactly when the BFS finds
+ * nothing, while the tree is repaired through new tracks, new stations and
+ * Deletes, the origin's own included.
+ */
+class HotOriginsTest {
+
+	@Test
+	void repairedTreesGiveShortestRoutes() {
+		for (long seed = 0; seed < 5; seed++) {
+			SubwayGraph g = new SubwayGraph();
+			g.setRouteCacheSize(0);
+			g.addHotOrigin(new Point(0, 0));
+			g.addHotOrigin(new Point(2, -1));
+			Reference ref = new Reference();
+			String[] script = Network.script(seed, 1200, 4, Network.DEFAULT.with("Delete", 0.1).without("Route"))
+					.split("\n");
+			for (int i = 0; i < script.length; i++) {
+				Network.apply(script[i], g, ref);
+				if (i % 20 != 0)
+					continue;
+				for (int[] a : ref.points()) {
+					ref.check(g.route(new Point(a[0], a[1]), new Point(0, 0)), a[0], a[1], 0, 0);
+					ref.check(g.route(new Point(2, -1), new Point(a[0], a[1])), 2, -1, a[0], a[1]);
+				}
+			}
+		}
+	}
+
+	@Test
+	void originDeletedAndBack() {
+		// a ring through the origin: deleting it leaves no route to it, and
+		// the station inserted again in its place starts with no tracks
+		SubwayGraph g = new SubwayGraph();
+		g.setRouteCacheSize(0);
+		g.addHotOrigin(new Point(0, 0));
+		Reference ref = new Reference();
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < 10; i++)
+			script.append("insert ").append(i).append(" 0 s").append(i).append('\n');
+		for (int i = 0; i < 10; i++)
+			script.append("Adjacent ").append(i).append(" 0 ").append((i + 1) % 10).append(" 0\n");
+		Network.apply(script.toString(), g, ref);
+		for (int i = 0; i < 10; i++)
+			ref.check(g.route(new Point(i, 0), new Point(0, 0)), i, 0, 0, 0);
+
+		g.delete(new Point(0, 0));
+		ref.delete(0, 0);
+		for (int i = 1; i < 10; i++) {
+			assertEquals("NO PATH", g.route(new Point(i, 0), new Point(0, 0)));
+			assertEquals("NO PATH", g.route(new Point(0, 0), new Point(i, 0)));
+		}
+
+		g.insert(new Point(0, 0), "back");
+		ref.insert(0, 0, "back");
+		assertEquals("NO PATH", g.route(new Point(5, 0), new Point(0, 0)));
+		assertEquals("Station 0, 0 back\n", g.route(new Point(0, 0), new Point(0, 0)));
+		g.adjacent(new Point(0, 0), new Point(5, 0));
+		ref.adjacent(0, 0, 5, 0);
+		for (int i = 0; i < 10; i++)
+			ref.check(g.route(new Point(i, 0), new Point(0, 0)), i, 0, 0, 0);
+	}
+}
@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The hub labels are dropped (never used stale) once the stations or tracks
+ * change, and labels built again after a Delete give shortest routes.
+ */
+class HubLabelsTest {
+
+	@Test
+	void rebuildAfterDelete() {
+		// a Delete drops the labels; built again, they do not know the
+		// deleted station, and the routes around it are shortest again
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(2, 400, 5, Network.DEFAULT.without("Delete")), g, ref);
+		g.buildLabels();
+		int[][] p = ref.points();
+		int[] hub = p[0];
+		for (int[] a : p)
+			if (ref.get(a[0], a[1]).tracks.size() > ref.get(hub[0], hub[1]).tracks.size())
+				hub = a;
+		g.delete(new Point(hub[0], hub[1]));
+		ref.delete(hub[0], hub[1]);
+		assertFalse(g.hasLabels());
+
+		g.buildLabels();
+		assertTrue(g.hasLabels());
+		p = ref.points();
+		for (int[] a : p) {
+			assertEquals("NO PATH", g.route(new Point(a[0], a[1]), new Point(hub[0], hub[1])));
+			for (int[] b : p)
+				ref.check(g.route(new Point(a[0], a[1]), new Point(b[0], b[1])), a[0], a[1], b[0], b[1]);
+		}
+	}
+
+	@Test
+	void changesDropTheLabels() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(5, 300, 4), g, ref);
+		g.buildLabels();
+
+		g.adjacent(new Point(-4, -4), new Point(4, 4));
+		ref.adjacent(-4, -4, 4, 4);
+		g.insert(new Point(-4, -4), "red");
+		ref.insert(-4, -4, "red");
+		g.adjacent(new Point(-4, -4), new Point(4, 4));
+		ref.adjacent(-4, -4, 4, 4);
+		assertFalse(g.hasLabels());
+		int[][] p = ref.points();
+		for (int[] a : p)
+			for (int[] b : p)
+				assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+	}
+}
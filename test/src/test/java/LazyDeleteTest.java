@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * With lazy deletes (--lazy-delete), the tombstones never show: every answer
+ * is the one the plain model gives, whether the tombstones are compacted
+ * often, rarely, or only at the end, and a station inserted again at the
+ * point of a tombstone is a new station.
+ */
+class LazyDeleteTest {
+
+	// many Deletes of the same few points, and inserts back onto them
+	private static final Network.Mix DELETES = Network.DEFAULT.with("Delete", 0.2).with("Nearest", 0.05)
+			.with("Range", 0.05);
+
+	@Test
+	void tombstoneIsNotTheNewStation() {
+		// a station deleted lazily and inserted again has none of the old
+		// tracks, and the tracks of its old neighbors do not lead to it
+		SubwayGraph g = new SubwayGraph();
+		g.setLazyDelete(100);
+		g.insert(new Point(0, 0), "old");
+		g.insert(new Point(1, 0), "a");
+		g.insert(new Point(2, 0), "b");
+		g.adjacent(new Point(0, 0), new Point(1, 0));
+		g.adjacent(new Point(0, 0), new Point(2, 0));
+		g.delete(new Point(0, 0));
+		assertEquals("NO PATH", g.route(new Point(1, 0), new Point(2, 0)));
+		assertEquals("NO PATH", g.route(new Point(1, 0), new Point(0, 0)));
+		assertEquals("a b", g.toString());
+
+		g.insert(new Point(0, 0), "new");
+		assertEquals("NO PATH", g.route(new Point(1, 0), new Point(0, 0)));
+		assertEquals("NO PATH", g.route(new Point(1, 0), new Point(2, 0)));
+		g.adjacent(new Point(0, 0), new Point(2, 0));
+		assertEquals("Station 2, 0 b\nStation 0, 0 new\n", g.route(new Point(2, 0), new Point(0, 0)));
+		assertEquals("new a b", g.toString());
+		g.compact();
+		assertEquals("new a b", g.toString());
+		assertEquals("Station 0, 0 new\nStation 2, 0 b\n", g.route(new Point(0, 0), new Point(2, 0)));
+	}
+
+	@Test
+	void compactAnyTime() {
+		for (long seed = 0; seed < 10; seed++) {
+			SubwayGraph g = new SubwayGraph();
+			g.setLazyDelete(100); // never on its own
+			Reference ref = new Reference();
+			String[] script = Network.script(seed, 1500, 4, DELETES.without("Route")).split("\n");
+			for (int i = 0; i < script.length; i++) {
+				Network.apply(script[i], g, ref);
+				if (i % 300 == 299)
+					g.compact();
+				if (i % 100 != 0)
+					continue;
+				assertEquals(ref.names(), g.toString());
+				int[][] p = ref.points();
+				for (int[] a : p)
+					assertEquals(ref.route(a[0], a[1], 0, 0), g.route(new Point(a[0], a[1]), new Point(0, 0)));
+			}
+		}
+	}
+}
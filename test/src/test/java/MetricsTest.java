@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * The search counters are the stations and tracks the plain BFS goes
+ * through, and stats describes the graph the commands built.
+ */
+class MetricsTest {
+
+	@AfterEach
+	void off() {
+		Metrics.enabled = false;
+		Metrics.clear();
+	}
+
+	@Test
+	void searchCounters() {
+		SubwayGraph g = new SubwayGraph();
+		g.setRouteCacheSize(0);
+		Reference ref = new Reference();
+		Network.apply(Network.script(4, 1500, 6, Network.DEFAULT.without("Delete")), g, ref);
+		g.publish();
+		int[][] p = ref.points();
+		for (int i = 0; i < p.length; i += 3)
+			for (int j = 0; j < p.length; j += 5) {
+				Metrics.clear();
+				Metrics.enabled = true;
+				g.route(new Point(p[i][0], p[i][1]), new Point(p[j][0], p[j][1]));
+				String report = Metrics.report();
+				Metrics.enabled = false;
+
+				long[] expected = walk(ref, ref.get(p[i][0], p[i][1]), ref.get(p[j][0], p[j][1]));
+				if (expected == null) // answered from the union-find, no search
+					assertEquals(0, mean(report, "stations expanded per search", true));
+				else {
+					assertEquals(expected[0], mean(report, "stations expanded per search", false), report);
+					assertEquals(expected[1], mean(report, "tracks scanned per search", false), report);
+				}
+			}
+	}
+
+	// the stations the plain BFS expands before it takes b off the queue,
+	// and the tracks of those stations; null if b cannot be reached
+	private static long[] walk(Reference ref, Reference.Station a, Reference.Station b) {
+		HashSet<Reference.Station> seen = new HashSet<Reference.Station>();
+		ArrayDeque<Reference.Station> queue = new ArrayDeque<Reference.Station>();
+		seen.add(a);
+		queue.add(a);
+		long stations = 0, tracks = 0;
+		while (!queue.isEmpty()) {
+			Reference.Station s = queue.poll();
+			if (s == b)
+				return new long[] { stations, tracks };
+			stations++;
+			tracks += s.tracks.size();
+			for (Reference.Station t : s.tracks)
+				if (seen.add(t))
+					queue.add(t);
+		}
+		return null;
+	}
+
+	// the mean of the histogram line, or its count with count set
+	private static long mean(String report, String name, boolean count) {
+		Matcher m = Pattern.compile(Pattern.quote(name) + " +count (\\d+) +mean ([0-9.]+)").matcher(report);
+		assertTrue(m.find(), report);
+		return count ? Long.parseLong(m.group(1)) : Math.round(Double.parseDouble(m.group(2)));
+	}
+
+	@Test
+	void stats() throws IOException {
+		String script = Network.script(6, 2000, 6);
+		Reference ref = new Reference();
+		Network.apply(script, new SubwayGraph(), ref);
+		int tracks = 0;
+		for (Reference.Station s : ref.stations())
+			for (Reference.Station t : s.tracks)
+				tracks += t == s ? 2 : 1;
+
+		String out = Network.drive(script + "stats\n", "--metrics");
+		assertTrue(out.contains("stations " + ref.size() + "  tracks " + tracks / 2 + " "), out);
+		assertTrue(out.contains("commands (latency in us):"), out);
+		Matcher m = Pattern.compile("\n  Route +count (\\d+)").matcher(out);
+		assertTrue(m.find(), out);
+		assertEquals(script.split("\nRoute ", -1).length - 1, Integer.parseInt(m.group(1)));
+	}
+}
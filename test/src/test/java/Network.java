@@ -0,0 +1,244 @@
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/*
+ * Random scripts of driver commands for the tests, and ways to run them.
+ *
+ * A script is one command per line, in the driver's input format. Stations
+ * are put on a small grid around the origin (negative coordinates included),
+ * so the same points come up again and again: inserts rename stations,
+ * tracks repeat, Deletes hit stations that have tracks, and Routes find
+ * paths as often as not.
+ */
+final class Network {
+
+	static final String[] NAMES = { "red", "orange", "yellow", "green", "blue", "indigo", "violet", "black" };
+
+	// what a script has in it, as a share of its commands
+	static final class Mix {
+		double insert = 0.30, adjacent = 0.40, route = 0.20, delete = 0.05, nearest = 0, range = 0;
+
+		Mix without(String command) {
+			Mix m = copy();
+			switch (command) {
+			case "Delete":
+				m.delete = 0;
+				break;
+			case "Route":
+				m.route = 0;
+				break;
+			default:
+				throw new IllegalArgumentException(command);
+			}
+			return m;
+		}
+
+		Mix with(String command, double share) {
+			Mix m = copy();
+			switch (command) {
+			case "Nearest":
+				m.nearest = share;
+				break;
+			case "Range":
+				m.range = share;
+				break;
+			case "Delete":
+				m.delete = share;
+				break;
+			case "Route":
+				m.route = share;
+				break;
+			default:
+				throw new IllegalArgumentException(command);
+			}
+			return m;
+		}
+
+		private Mix copy() {
+			Mix m = new Mix();
+			m.insert = insert;
+			m.adjacent = adjacent;
+			m.route = route;
+			m.delete = delete;
+			m.nearest = nearest;
+			m.range = range;
+			return m;
+		}
+	}
+
+	static final Mix DEFAULT = new Mix();
+
+	// a script of n commands with points in [-span, span]^2
+	static String script(long seed, int n, int span) {
+		return script(seed, n, span, DEFAULT);
+	}
+
+	static String script(long seed, int n, int span, Mix mix) {
+		Random r = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		double total = mix.insert + mix.adjacent + mix.route + mix.delete + mix.nearest + mix.range;
+		sb.append("insert 0 0 ").append(NAMES[0]).append('\n');
+		for (int i = 1; i < n; i++) {
+			double c = r.nextDouble() * total;
+			if ((c -= mix.insert) < 0)
+				sb.append("insert ").append(point(r, span)).append(' ').append(NAMES[r.nextInt(NAMES.length)]);
+			else if ((c -= mix.adjacent) < 0)
+				sb.append("Adjacent ").append(point(r, span)).append(' ').append(point(r, span));
+			else if ((c -= mix.route) < 0)
+				sb.append("Route ").append(point(r, span)).append(' ').append(point(r, span));
+			else if ((c -= mix.delete) < 0)
+				sb.append("Delete ").append(point(r, span));
+			else if ((c -= mix.nearest) < 0)
+				sb.append("Nearest ").append(point(r, span)).append(' ').append(r.nextInt(5));
+			else
+				sb.append("Range ").append(point(r, span)).append(' ').append(point(r, span));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static String point(Random r, int span) {
+		return (r.nextInt(2 * span + 1) - span) + " " + (r.nextInt(2 * span + 1) - span);
+	}
+
+	// the commands of one line: the command and its int arguments (an
+	// insert has its name in name[0])
+	private static int[] args(String line, String[] name) {
+		StringTokenizer tz = new StringTokenizer(line);
+		tz.nextToken();
+		int[] a = new int[4];
+		for (int i = 0; tz.hasMoreTokens(); i++) {
+			String t = tz.nextToken();
+			if (line.startsWith("insert") && i == 2)
+				name[0] = t;
+			else
+				a[i] = Integer.parseInt(t);
+		}
+		return a;
+	}
+
+	/*
+	 * Applies the insert, Adjacent and Delete commands of the script to the
+	 * graph and to the reference (which may be null), leaving out everything
+	 * else.
+	 */
+	static void apply(String script, SubwayGraph g, Reference ref) {
+		String[] name = new String[1];
+		for (String line : script.split("\n")) {
+			int[] a = args(line, name);
+			if (line.startsWith("insert ")) {
+				g.insert(new Point(a[0], a[1]), name[0]);
+				if (ref != null)
+					ref.insert(a[0], a[1], name[0]);
+			} else if (line.startsWith("Adjacent ")) {
+				g.adjacent(new Point(a[0], a[1]), new Point(a[2], a[3]));
+				if (ref != null)
+					ref.adjacent(a[0], a[1], a[2], a[3]);
+			} else if (line.startsWith("Delete ")) {
+				g.delete(new Point(a[0], a[1]));
+				if (ref != null)
+					ref.delete(a[0], a[1]);
+			}
+		}
+	}
+
+	/*
+	 * What the driver prints for the script, run with the flags (followed
+	 * by "--extra-credit", so Delete works, and the first flag is the first
+	 * argument). The script goes through a temporary file (--input) and
+	 * System.out is captured while the driver runs.
+	 */
+	static String drive(String script, String... flags) throws IOException {
+		Path in = Files.createTempFile("subway", ".txt");
+		Files.write(in, script.getBytes(StandardCharsets.UTF_8));
+		String[] argv = Arrays.copyOf(flags, flags.length + 2);
+		argv[flags.length] = "--extra-credit";
+		argv[flags.length + 1] = "--input=" + in;
+
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Metrics.enabled = false;
+		Metrics.clear();
+		try {
+			System.setOut(new PrintStream(bytes, true, "UTF-8"));
+			SubwayDriver.main(argv);
+		} finally {
+			System.setOut(stdout);
+			Files.delete(in);
+		}
+		return bytes.toString("UTF-8");
+	}
+
+	/*
+	 * What the driver prints for the script (on standard input, with the
+	 * same arguments as drive()) when it stops with an error: it calls
+	 * System.exit, so it runs in a JVM of its own. Returns what it printed to
+	 * standard output and to standard error, and asserts it failed.
+	 */
+	static String[] run(String script, String... flags) throws IOException, InterruptedException {
+		List<String> args = new ArrayList<String>(Arrays.asList(flags));
+		args.add("--extra-credit");
+		return exec("SubwayDriver", args, script);
+	}
+
+	// run(), for the main of any class (with the script on its standard
+	// input)
+	static String[] exec(String main, List<String> args, String script) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(main);
+		command.addAll(args);
+		Process p = new ProcessBuilder(command).start();
+		try (OutputStream in = p.getOutputStream()) {
+			in.write(script.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			// it stopped before reading its input
+		}
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Thread errors = new Thread(() -> {
+			try {
+				p.getErrorStream().transferTo(err);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		errors.start();
+		String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		errors.join();
+		assertNotEquals(0, p.waitFor(), out);
+		return new String[] { out, err.toString("UTF-8") };
+	}
+
+	// the answers in the driver's output: a route (its station lines, each
+	// ending in a line break), or a one line answer like "NO PATH"
+	static List<String> answers(String output) {
+		List<String> answers = new ArrayList<String>();
+		StringBuilder route = new StringBuilder();
+		for (String line : output.split("\n", -1)) {
+			if (line.startsWith("Station "))
+				route.append(line).append('\n');
+			else if (route.length() > 0) {
+				answers.add(route.toString());
+				route.setLength(0);
+			} else if (!line.isEmpty())
+				answers.add(line);
+		}
+		return answers;
+	}
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The generated networks are valid driver input that the driver answers
+ * like the plain model, the same seed gives the same stream, and the
+ * network is the size that was asked for. An argument the generator does
+ * not know stops it with the usage.
+ */
+class NetworkGeneratorTest {
+
+	private static String generate(NetworkGenerator g) {
+		StringWriter s = new StringWriter();
+		PrintWriter out = new PrintWriter(s);
+		g.write(out);
+		out.flush();
+		return s.toString();
+	}
+
+	@Test
+	void answersLikeThePlainModel() throws IOException {
+		for (long seed = 1; seed <= 3; seed++) {
+			String script = generate(new NetworkGenerator(2000).setQueries(1500).setSeed(seed));
+			assertEquals(Reference.output(script), Network.drive(script));
+		}
+	}
+
+	@Test
+	void sameSeedSameStream() {
+		assertEquals(generate(new NetworkGenerator(500).setSeed(7)), generate(new NetworkGenerator(500).setSeed(7)));
+		assertTrue(!generate(new NetworkGenerator(500).setSeed(7)).equals(generate(new NetworkGenerator(500).setSeed(8))));
+	}
+
+	@Test
+	void shape() {
+		String script = generate(new NetworkGenerator(5000).setQueries(1000).setMix(0.5, 0.1).setSeed(3));
+		Reference ref = new Reference();
+		int routes = 0, deletes = 0, queries = 0;
+		boolean tracks = false;
+		for (String line : script.split("\n")) {
+			if (line.startsWith("Adjacent"))
+				tracks = true;
+			else if (line.startsWith("Route")) {
+				routes++;
+				queries++;
+			} else if (line.startsWith("Delete")) {
+				deletes++;
+				queries++;
+			} else if (tracks && line.startsWith("insert"))
+				queries++;
+		}
+		Network.apply(script.substring(0, script.indexOf("Route")), new SubwayGraph(), ref);
+
+		// about the stations asked for, a connected city, and the query mix
+		int n = ref.points().length;
+		assertTrue(n > 4000 && n < 6000, "" + n);
+		assertEquals(1000, queries);
+		assertTrue(routes > 400 && routes < 600, "" + routes);
+		assertTrue(deletes > 50 && deletes < 150, "" + deletes);
+		int[][] p = ref.points();
+		assertTrue(!ref.route(p[0][0], p[0][1], p[n - 1][0], p[n - 1][1]).equals("NO PATH"));
+	}
+
+	@Test
+	void badArguments() throws IOException, InterruptedException {
+		String[][] bad = { {}, { "--help" }, { "many" }, { "100", "--help" }, { "100", "--lines=x" } };
+		for (String[] args : bad) {
+			String[] printed = Network.exec("NetworkGenerator", Arrays.asList(args), "");
+			assertEquals("", printed[0], String.join(" ", args));
+			assertTrue(printed[1].contains("usage: java NetworkGenerator"), printed[1]);
+		}
+	}
+}
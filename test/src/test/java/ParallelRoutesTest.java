@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Routes answered on several threads (--parallel) are the ones the plain
+ * BFS gives, in the original order, also when the input is cut short, and a
+ * pool of the driver's own is shut down when it is done.
+ */
+class ParallelRoutesTest {
+
+	@Test
+	void threadsOfItsOwn() {
+		assertThrows(IllegalArgumentException.class, () -> new PendingRoutes(0));
+
+		// the pool is shut down once the driver is done with it
+		SubwayGraph g = new SubwayGraph();
+		g.insert(new Point(0, 0), "red");
+		PendingRoutes run = new PendingRoutes(2);
+		run.add(new Point(0, 0), new Point(0, 0));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RouteWriter out = new RouteWriter(bytes, RouteWriter.BUFFERED);
+		run.flush(g, out);
+		run.close();
+		run.add(new Point(0, 0), new Point(0, 0));
+		assertThrows(RejectedExecutionException.class, () -> run.flush(g, out));
+	}
+
+	@Test
+	void badNumberEndsTheRun() throws IOException, InterruptedException {
+		String script = Network.script(6, 600, 5) + "Route 0 0 1 1\nRoute 1 1 0 0\n";
+		assertEquals(Network.drive(script), Network.run(script + "Route 1 x 2 3\n", "--parallel=2")[0]);
+	}
+
+	@Test
+	void everyPair() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			SubwayGraph g = new SubwayGraph();
+			Reference ref = new Reference();
+			Network.apply(Network.script(11, 2000, 8), g, ref);
+
+			// every pair of stations, and some points with no station
+			int[][] p = ref.points();
+			int n = p.length + 2;
+			Point[] from = new Point[n * n], to = new Point[n * n];
+			String[] expected = new String[n * n];
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < n; j++) {
+					int[] a = i < p.length ? p[i] : new int[] { 100, i };
+					int[] b = j < p.length ? p[j] : new int[] { -100, j };
+					from[i * n + j] = new Point(a[0], a[1]);
+					to[i * n + j] = new Point(b[0], b[1]);
+					expected[i * n + j] = ref.route(a[0], a[1], b[0], b[1]);
+				}
+			assertArrayEquals(expected, g.routesParallel(from, to, pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
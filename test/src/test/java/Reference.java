@@ -0,0 +1,311 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.StringTokenizer;
+
+/*
+ * The graph as the original project had it, for the tests to compare with:
+ * stations in a map, each with a plain list of neighbors in the order the
+ * tracks were added, and Route as the one-sided breadth first search over
+ * those lists. Nothing here is fast, it is only meant to be obviously right.
+ *
+ * output() replays a whole script the way the driver does (same output
+ * format), and check() / checkWeighted() accept any shortest route, for the
+ * modes that may pick a different one when there are several.
+ */
+final class Reference {
+
+	static final class Station {
+		final int x, y;
+		String name;
+		final ArrayList<Station> tracks = new ArrayList<Station>();
+
+		Station(int x, int y, String name) {
+			this.x = x;
+			this.y = y;
+			this.name = name;
+		}
+
+		public String toString() {
+			return "Station " + x + ", " + y + " " + name;
+		}
+	}
+
+	private final LinkedHashMap<Long, Station> stations = new LinkedHashMap<Long, Station>();
+
+	private static long key(int x, int y) {
+		return (long) x << 32 | (y & 0xffffffffL);
+	}
+
+	Station get(int x, int y) {
+		return stations.get(key(x, y));
+	}
+
+	int size() {
+		return stations.size();
+	}
+
+	Iterable<Station> stations() {
+		return stations.values();
+	}
+
+	void insert(int x, int y, String name) {
+		Station s = get(x, y);
+		if (s != null)
+			s.name = name;
+		else
+			stations.put(key(x, y), new Station(x, y, name));
+	}
+
+	void adjacent(int x1, int y1, int x2, int y2) {
+		Station a = get(x1, y1), b = get(x2, y2);
+		if (a == null || b == null)
+			return;
+		if (!a.tracks.contains(b))
+			a.tracks.add(b);
+		if (!b.tracks.contains(a))
+			b.tracks.add(a);
+	}
+
+	void delete(int x, int y) {
+		Station s = stations.remove(key(x, y));
+		if (s == null)
+			return;
+		for (Station t : s.tracks)
+			if (t != s)
+				t.tracks.remove(s);
+	}
+
+	// the BFS parents from a, or null if b cannot be reached
+	private HashMap<Station, Station> bfs(Station a, Station b) {
+		HashMap<Station, Station> parent = new HashMap<Station, Station>();
+		ArrayDeque<Station> queue = new ArrayDeque<Station>();
+		parent.put(a, null);
+		queue.add(a);
+		while (!queue.isEmpty()) {
+			Station s = queue.poll();
+			if (s == b)
+				return parent;
+			for (Station t : s.tracks)
+				if (!parent.containsKey(t)) {
+					parent.put(t, s);
+					queue.add(t);
+				}
+		}
+		return null;
+	}
+
+	// Route, as SubwayGraph.route() returns it
+	String route(int x1, int y1, int x2, int y2) {
+		Station a = get(x1, y1), b = get(x2, y2);
+		HashMap<Station, Station> parent = a == null || b == null ? null : bfs(a, b);
+		if (parent == null)
+			return "NO PATH";
+		ArrayList<Station> path = new ArrayList<Station>();
+		for (Station s = b; s != null; s = parent.get(s))
+			path.add(s);
+		StringBuilder sb = new StringBuilder();
+		for (int i = path.size() - 1; i >= 0; i--)
+			sb.append(path.get(i)).append('\n');
+		return sb.toString();
+	}
+
+	// stations on a shortest route, 0 if there is none
+	int hops(int x1, int y1, int x2, int y2) {
+		String r = route(x1, y1, x2, y2);
+		return r.equals("NO PATH") ? 0 : r.split("\n").length;
+	}
+
+	// the length of the shortest route when a track is as long as the
+	// distance it covers (Dijkstra), or -1 if there is none
+	double length(int x1, int y1, int x2, int y2, boolean manhattan) {
+		Station a = get(x1, y1), b = get(x2, y2);
+		if (a == null || b == null)
+			return -1;
+		HashMap<Station, Double> dist = new HashMap<Station, Double>();
+		ArrayList<Station> open = new ArrayList<Station>();
+		dist.put(a, 0.0);
+		open.add(a);
+		while (!open.isEmpty()) {
+			Station s = open.get(0);
+			for (Station t : open)
+				if (dist.get(t) < dist.get(s))
+					s = t;
+			open.remove(s);
+			if (s == b)
+				return dist.get(s);
+			for (Station t : s.tracks) {
+				double d = dist.get(s) + distance(s.x, s.y, t.x, t.y, manhattan);
+				if (!dist.containsKey(t) || d < dist.get(t)) {
+					if (!dist.containsKey(t))
+						open.add(t);
+					dist.put(t, d);
+				}
+			}
+		}
+		return -1;
+	}
+
+	static double distance(int x1, int y1, int x2, int y2, boolean manhattan) {
+		double dx = (double) x1 - x2, dy = (double) y1 - y2;
+		return manhattan ? Math.abs(dx) + Math.abs(dy) : Math.sqrt(dx * dx + dy * dy);
+	}
+
+	// the stations of a route, one {x, y} each (asserts the lines are
+	// stations with their current names)
+	private ArrayList<Station> stationsOf(String route) {
+		ArrayList<Station> path = new ArrayList<Station>();
+		for (String line : route.split("\n")) {
+			assertTrue(line.startsWith("Station "), line);
+			String[] parts = line.substring(8).split("[, ]+");
+			Station s = get(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+			assertTrue(s != null, "no such station: " + line);
+			assertEquals(s.toString(), line);
+			path.add(s);
+		}
+		return path;
+	}
+
+	// asserts the route goes from (x1, y1) to (x2, y2) along tracks
+	private ArrayList<Station> walk(String route, int x1, int y1, int x2, int y2) {
+		ArrayList<Station> path = stationsOf(route);
+		assertEquals(get(x1, y1), path.get(0), route);
+		assertEquals(get(x2, y2), path.get(path.size() - 1), route);
+		for (int i = 1; i < path.size(); i++)
+			assertTrue(path.get(i - 1).tracks.contains(path.get(i)), "no track in " + route);
+		return path;
+	}
+
+	// asserts the route is a shortest route (by stations) from (x1, y1) to
+	// (x2, y2), or "NO PATH" if and only if there is none
+	void check(String route, int x1, int y1, int x2, int y2) {
+		int hops = hops(x1, y1, x2, y2);
+		if (hops == 0) {
+			assertEquals("NO PATH", route);
+			return;
+		}
+		assertEquals(hops, walk(route, x1, y1, x2, y2).size(), route);
+	}
+
+	// asserts the route is a shortest route by length
+	void checkWeighted(String route, int x1, int y1, int x2, int y2, boolean manhattan) {
+		double best = length(x1, y1, x2, y2, manhattan);
+		if (best < 0) {
+			assertEquals("NO PATH", route);
+			return;
+		}
+		ArrayList<Station> path = walk(route, x1, y1, x2, y2);
+		double length = 0;
+		for (int i = 1; i < path.size(); i++)
+			length += distance(path.get(i - 1).x, path.get(i - 1).y, path.get(i).x, path.get(i).y, manhattan);
+		assertEquals(best, length, 1e-6 * Math.max(1, best), route);
+	}
+
+	// the k stations closest to (x, y), closest first, ties in Point order
+	String nearest(int x, int y, int k) {
+		ArrayList<Station> all = new ArrayList<Station>(stations.values());
+		all.sort((a, b) -> {
+			double da = distance(a.x, a.y, x, y, false), db = distance(b.x, b.y, x, y, false);
+			if (da != db)
+				return Double.compare(da, db);
+			return a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x);
+		});
+		return lines(all.subList(0, Math.max(0, Math.min(k, all.size()))));
+	}
+
+	// the stations in the rectangle, in Point order
+	String range(int x1, int y1, int x2, int y2) {
+		ArrayList<Station> in = new ArrayList<Station>();
+		for (Station s : stations.values())
+			if (s.x >= Math.min(x1, x2) && s.x <= Math.max(x1, x2) && s.y >= Math.min(y1, y2)
+					&& s.y <= Math.max(y1, y2))
+				in.add(s);
+		in.sort((a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x));
+		return lines(in);
+	}
+
+	private static String lines(java.util.List<Station> list) {
+		if (list.isEmpty())
+			return "NO STATIONS";
+		StringBuilder sb = new StringBuilder();
+		for (Station s : list)
+			sb.append(s).append('\n');
+		return sb.toString();
+	}
+
+	// the names in Point order, like SubwayGraph.toString() (debug_print)
+	String names() {
+		ArrayList<Station> all = new ArrayList<Station>(stations.values());
+		all.sort((a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x));
+		StringBuilder sb = new StringBuilder();
+		for (Station s : all)
+			sb.append(' ').append(s.name);
+		return sb.toString().trim();
+	}
+
+	/*
+	 * Runs a script of driver commands (see Network) and returns what the
+	 * driver prints for it without any flags: each Route, Nearest or Range
+	 * answer followed by a line break, a route ending in a blank line.
+	 */
+	static String output(String script) {
+		Reference r = new Reference();
+		StringBuilder out = new StringBuilder();
+		for (String line : script.split("\n")) {
+			StringTokenizer tz = new StringTokenizer(line);
+			if (!tz.hasMoreTokens())
+				continue;
+			String cmd = tz.nextToken();
+			int[] a = new int[4];
+			String name = null;
+			for (int i = 0; tz.hasMoreTokens(); i++) {
+				String t = tz.nextToken();
+				if (cmd.equals("insert") && i == 2)
+					name = t;
+				else
+					a[i] = Integer.parseInt(t);
+			}
+			switch (cmd) {
+			case "insert":
+				r.insert(a[0], a[1], name);
+				break;
+			case "Adjacent":
+				r.adjacent(a[0], a[1], a[2], a[3]);
+				break;
+			case "Delete":
+				r.delete(a[0], a[1]);
+				break;
+			case "Route":
+				out.append(r.route(a[0], a[1], a[2], a[3])).append('\n');
+				break;
+			case "Nearest":
+				out.append(r.nearest(a[0], a[1], a[2])).append('\n');
+				break;
+			case "Range":
+				out.append(r.range(a[0], a[1], a[2], a[3])).append('\n');
+				break;
+			case "debug_print":
+				out.append(r.names()).append('\n');
+				break;
+			default:
+				throw new IllegalArgumentException(line);
+			}
+		}
+		return out.toString();
+	}
+
+	// the points of the stations, for picking Route ends
+	int[][] points() {
+		int[][] p = new int[stations.size()][];
+		int i = 0;
+		for (Station s : stations.values())
+			p[i++] = new int[] { s.x, s.y };
+		Arrays.sort(p, (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[0], b[0]));
+		return p;
+	}
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Cached Route answers are never stale: whatever changed in between, the
+ * answer is the one the plain BFS gives for the graph as it is now.
+ */
+class RouteCacheTest {
+
+	@Test
+	void answersFollowEveryChange() {
+		for (long seed = 0; seed < 5; seed++) {
+			Random r = new Random(seed);
+			SubwayGraph g = new SubwayGraph();
+			g.setRouteCacheSize(16);
+			Reference ref = new Reference();
+			String[] lines = Network.script(seed, 1500, 4).split("\n");
+			for (String line : lines) {
+				Network.apply(line, g, ref);
+
+				// the same few routes over and over, so most are cache hits
+				// unless something changed
+				int x1 = r.nextInt(3) - 1, y1 = r.nextInt(3) - 1, x2 = r.nextInt(9) - 4, y2 = r.nextInt(9) - 4;
+				assertEquals(ref.route(x1, y1, x2, y2), g.route(new Point(x1, y1), new Point(x2, y2)), line);
+			}
+			RouteCache cache = g.getRouteCache();
+			assertEquals(lines.length, cache.getHits() + cache.getMisses());
+		}
+	}
+
+	@Test
+	void repeatedRouteIsAHit() {
+		SubwayGraph g = new SubwayGraph();
+		g.insert(new Point(0, 0), "red");
+		g.insert(new Point(1, 0), "blue");
+		g.adjacent(new Point(0, 0), new Point(1, 0));
+		String first = g.route(new Point(0, 0), new Point(1, 0));
+		String again = g.route(new Point(0, 0), new Point(1, 0));
+		assertEquals(first, again);
+		assertEquals(1, g.getRouteCache().getHits());
+
+		// renaming a station is a change too
+		g.insert(new Point(1, 0), "green");
+		assertEquals("Station 0, 0 red\nStation 1, 0 green\n", g.route(new Point(0, 0), new Point(1, 0)));
+		assertEquals(1, g.getRouteCache().getHits());
+	}
+
+	@Test
+	void staleEntriesAreMisses() {
+		RouteCache cache = new RouteCache(2);
+		cache.put(new Point(0, 0), new Point(1, 1), 1, "NO PATH");
+		assertEquals("NO PATH", cache.get(new Point(0, 0), new Point(1, 1), 1));
+		assertNull(cache.get(new Point(0, 0), new Point(1, 1), 2));
+		assertEquals(0, cache.size());
+
+		// least recently used goes first
+		cache.put(new Point(0, 0), new Point(1, 1), 3, "a");
+		cache.put(new Point(0, 0), new Point(2, 2), 3, "b");
+		cache.get(new Point(0, 0), new Point(1, 1), 3);
+		cache.put(new Point(0, 0), new Point(3, 3), 3, "c");
+		assertEquals("a", cache.get(new Point(0, 0), new Point(1, 1), 3));
+		assertNull(cache.get(new Point(0, 0), new Point(2, 2), 3));
+	}
+
+	@Test
+	void epochWraparound() {
+		// the epoch after the largest long is the smallest: still another
+		// epoch, so the entries before it are stale
+		RouteCache cache = new RouteCache(4);
+		cache.put(new Point(0, 0), new Point(1, 1), Long.MAX_VALUE, "a");
+		assertEquals("a", cache.get(new Point(0, 0), new Point(1, 1), Long.MAX_VALUE));
+		assertNull(cache.get(new Point(0, 0), new Point(1, 1), Long.MIN_VALUE));
+		assertEquals(0, cache.size());
+		cache.put(new Point(0, 0), new Point(1, 1), Long.MIN_VALUE, "b");
+		assertEquals("b", cache.get(new Point(0, 0), new Point(1, 1), Long.MIN_VALUE));
+		assertNull(cache.get(new Point(0, 0), new Point(1, 1), Long.MIN_VALUE + 1));
+	}
+
+	@Test
+	void changesDropEveryStaleEntry() {
+		// routes streamed as station ids (each entry holds its snapshot),
+		// mixed with tracks: after a change, the first Route leaves only
+		// its own answer in the cache, none from the older snapshots
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(3, 300, 5, Network.DEFAULT.without("Route")), g, ref);
+		int[][] p = ref.points();
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < p.length; i++) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				RouteWriter out = new RouteWriter(new PrintStream(bytes), RouteWriter.BUFFERED);
+				g.route(new Point(p[i][0], p[i][1]), new Point(p[0][0], p[0][1]), out);
+				out.flush();
+				assertEquals(Network.answers(ref.route(p[i][0], p[i][1], p[0][0], p[0][1])),
+						Network.answers(bytes.toString()));
+			}
+			// these, and the one Route after the last change
+			assertTrue(g.getRouteCache().size() <= p.length + 1);
+
+			int[] a = p[round % p.length], b = p[(7 * round + 3) % p.length];
+			g.adjacent(new Point(a[0], a[1]), new Point(b[0], b[1]));
+			ref.adjacent(a[0], a[1], b[0], b[1]);
+			assertEquals(ref.route(a[0], a[1], b[0], b[1]), g.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+			assertEquals(1, g.getRouteCache().size());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Routes from the cache are streamed like the others, a route in the
+ * default mode is still one println (one flush of System.out, not one per
+ * station), and nothing buffered (--buffered-output, --raw-output) is lost
+ * when the driver stops at an error.
+ */
+class RouteWriterTest {
+
+	@Test
+	void cachedRoutesAreStreamed() {
+		SubwayGraph g = new SubwayGraph();
+		Network.apply(Network.script(2, 500, 3, Network.DEFAULT.without("Delete")), g, null);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RouteWriter out = new RouteWriter(bytes, RouteWriter.RAW);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 3; i++)
+			for (int x = -3; x <= 3; x++) {
+				Point a = new Point(0, 0), b = new Point(x, -x);
+				g.route(a, b, out);
+				expected.append(g.route(a, b)).append(System.lineSeparator());
+			}
+		out.flush();
+		assertEquals(expected.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		assertNotEquals(0, g.getRouteCache().getHits());
+	}
+
+	@Test
+	void directRouteIsOnePrintln() {
+		SubwayGraph g = new SubwayGraph();
+		for (int i = 0; i < 100; i++) {
+			g.insert(new Point(i, 0), "red");
+			if (i > 0)
+				g.adjacent(new Point(i - 1, 0), new Point(i, 0));
+		}
+		for (int cache : new int[] { 0, 4 }) {
+			g.setRouteCacheSize(cache);
+			final int[] flushes = { 0 };
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+				public void flush() {
+					flushes[0]++;
+				}
+			};
+			RouteWriter out = new RouteWriter(bytes, RouteWriter.DIRECT);
+			for (int i = 0; i < 2; i++) // computed, then cached if the cache is on
+				g.route(new Point(0, 0), new Point(99, 0), out);
+			String route = g.route(new Point(0, 0), new Point(99, 0)) + System.lineSeparator();
+			assertEquals(route + route, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+			// what PrintStream.println flushes, twice
+			assertTrue(flushes[0] <= 4, flushes[0] + " flushes");
+		}
+	}
+
+	@Test
+	void routesLongerThanABlock() {
+		// a line of stations whose route is many blocks long, after a few
+		// short answers that leave the block part full
+		SubwayGraph g = new SubwayGraph();
+		int n = 20000;
+		for (int i = 0; i < n; i++) {
+			g.insert(new Point(i, -i), Network.NAMES[i % Network.NAMES.length]);
+			if (i > 0)
+				g.adjacent(new Point(i - 1, 1 - i), new Point(i, -i));
+		}
+		String expected = "";
+		for (int i = 0; i < 3; i++)
+			expected += g.route(new Point(i, -i), new Point(0, 0)) + System.lineSeparator();
+		String route = g.route(new Point(0, 0), new Point(n - 1, 1 - n));
+		assertTrue(route.length() > 3 * RouteWriter.BLOCK);
+		expected += route + System.lineSeparator();
+		for (int mode : new int[] { RouteWriter.DIRECT, RouteWriter.BUFFERED, RouteWriter.RAW }) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			RouteWriter out = new RouteWriter(bytes, mode);
+			for (int i = 0; i < 3; i++)
+				g.route(new Point(i, -i), new Point(0, 0), out);
+			g.route(new Point(0, 0), new Point(n - 1, 1 - n), out);
+			out.flush();
+			assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8), "mode " + mode);
+		}
+	}
+
+	@Test
+	void errorKeepsTheOutput() throws IOException, InterruptedException {
+		String script = Network.script(6, 400, 4);
+		String expected = Network.drive(script);
+		for (String mode : new String[] { "--buffered-output", "--raw-output" }) {
+			// a bad command, and a bad number
+			assertEquals(expected, Network.run(script + "bogus 1 2\n", mode)[0]);
+			assertEquals(expected, Network.run(script + "Route 1 x 2 3\n", mode)[0]);
+		}
+	}
+}
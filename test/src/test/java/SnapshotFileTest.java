@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * A graph saved to a snapshot file and loaded again answers every Route the
+ * way the plain BFS does on the original graph, and a damaged file is
+ * turned down with an IOException instead of being searched.
+ */
+class SnapshotFileTest {
+
+	private Path file;
+
+	@BeforeEach
+	void createFile() throws IOException {
+		file = Files.createTempFile("subway", ".snap");
+	}
+
+	@AfterEach
+	void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	void roundTrip() throws IOException {
+		for (long seed = 0; seed < 3; seed++) {
+			SubwayGraph g = new SubwayGraph();
+			Reference ref = new Reference();
+			Network.apply(Network.script(seed, 800, 6), g, ref);
+			g.save(file.toString());
+
+			SubwayGraph loaded = SubwayGraph.load(file.toString());
+			assertEquals(ref.names(), loaded.toString());
+			int[][] p = ref.points();
+			for (int[] a : p)
+				for (int[] b : p)
+					assertEquals(ref.route(a[0], a[1], b[0], b[1]),
+							loaded.route(new Point(a[0], a[1]), new Point(b[0], b[1])));
+
+			// and it keeps working as a live graph
+			String more = Network.script(seed + 100, 300, 6);
+			Network.apply(more, loaded, ref);
+			p = ref.points();
+			for (int[] a : p)
+				assertEquals(ref.route(a[0], a[1], p[0][0], p[0][1]),
+						loaded.route(new Point(a[0], a[1]), new Point(p[0][0], p[0][1])));
+		}
+	}
+
+	@Test
+	void driverRoundTrip() throws IOException {
+		String build = Network.script(4, 800, 6, Network.DEFAULT.without("Route"));
+		String routes = Network.script(5, 800, 6, Network.DEFAULT.with("Route", 100));
+		Network.drive(build, "--save-snapshot=" + file);
+		assertEquals(Network.drive(build + routes), Network.drive(build) + Network.drive(routes, "--load-snapshot=" + file));
+	}
+
+	@Test
+	void damagedFiles() throws IOException {
+		SubwayGraph g = new SubwayGraph();
+		Network.apply(Network.script(1, 300, 4, Network.DEFAULT.without("Delete")), g, null);
+		g.save(file.toString());
+		byte[] good = Files.readAllBytes(file);
+		CompactGraph c = g.publish().graph;
+		int n = c.size(), m = c.targets.length;
+		int xs = 20, nameOffsets = 20 + 8 * n, offsets = nameOffsets + 4 * (n + 1), targets = offsets + 4 * (n + 1);
+
+		damaged(good, 0, 0x12345678, "not a subway snapshot");
+		damaged(good, 4, 99, "unsupported snapshot version");
+		damaged(good, 8, -1, "negative count");
+		damaged(good, 8, Integer.MAX_VALUE, "the header says");
+		damaged(good, 12, m + 1, "the header says");
+		damaged(good, xs + 4, c.xs[0], "out of order");
+		damaged(good, nameOffsets + 8, Integer.MAX_VALUE, "name offsets go down");
+		damaged(good, offsets, 1, "track offsets run from 1");
+		damaged(good, offsets + 8, m + 5, "track offsets go down");
+		damaged(good, targets, n, "goes to station " + n);
+		damaged(good, targets + 4, -1, "goes to station -1");
+
+		// cut short
+		Files.write(file, Arrays.copyOf(good, good.length - 1));
+		assertTrue(assertThrows(IOException.class, () -> SubwayGraph.load(file.toString())).getMessage()
+				.contains("the header says"));
+	}
+
+	@Test
+	void namesPastTwoGigabytes() throws IOException {
+		// 2049 names of 1 MB (the same array, so the test needs 1 MB): the
+		// offsets pass 2^31 at the last one
+		byte[] mb = new byte[1 << 20];
+		byte[][] names = new byte[2049][];
+		Arrays.fill(names, mb);
+		int[] ok = SnapshotFile.nameOffsets("f", Arrays.copyOf(names, 2047));
+		assertEquals(2047L << 20, ok[2047]);
+		IOException e = assertThrows(IOException.class, () -> SnapshotFile.nameOffsets("f", names));
+		assertTrue(e.getMessage().contains("too many for a snapshot"), e.getMessage());
+	}
+
+	// the good file with the int at pos replaced, which load() must turn down
+	// with a message that has the text in it
+	private void damaged(byte[] good, int pos, int value, String text) throws IOException {
+		Files.write(file, good);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(pos);
+			raf.writeInt(value);
+		}
+		IOException e = assertThrows(IOException.class, () -> SubwayGraph.load(file.toString()));
+		assertTrue(e.getMessage().contains(text), e.getMessage());
+	}
+}
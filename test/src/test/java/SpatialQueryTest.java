@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Nearest and Range answer like a scan over every station of the plain
+ * model, on networks spread far and wide, after Deletes and with lazy
+ * deletes (the grid must skip tombstones).
+ */
+class SpatialQueryTest {
+
+	@Test
+	void deletedStationsAreGone() {
+		// half the stations deleted, at once or as tombstones that stay in
+		// the tree until a compaction that never comes
+		for (double lazy : new double[] { 0, 100 }) {
+			SubwayGraph g = new SubwayGraph();
+			if (lazy > 0)
+				g.setLazyDelete(lazy);
+			Reference ref = new Reference();
+			for (int x = 0; x < 30; x++)
+				for (int y = 0; y < 30; y++) {
+					g.insert(new Point(x, y), "s");
+					ref.insert(x, y, "s");
+				}
+			for (int x = 0; x < 30; x++)
+				for (int y = x % 2; y < 30; y += 2) {
+					g.delete(new Point(x, y));
+					ref.delete(x, y);
+				}
+			for (int x = -2; x < 32; x += 3)
+				for (int k = 0; k < 10; k += 3) {
+					assertEquals(ref.nearest(x, x / 2, k), g.nearest(new Point(x, x / 2), k));
+					assertEquals(ref.range(x, 0, 29 - x, x / 2), g.range(new Point(x, 0), new Point(29 - x, x / 2)));
+				}
+			assertEquals("NO STATIONS", g.range(new Point(0, 0), new Point(0, 0)));
+		}
+	}
+
+	@Test
+	void farAndWide() {
+		Random r = new Random(3);
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		for (int i = 0; i < 2000; i++) {
+			// clusters a long way apart, and a few points far out
+			int x = r.nextInt(4) * 1000000 + r.nextInt(50), y = r.nextInt(3) * -1000000 + r.nextInt(50);
+			if (i % 100 == 0)
+				x = y = 1 << 29;
+			String name = Network.NAMES[r.nextInt(Network.NAMES.length)];
+			g.insert(new Point(x, y), name);
+			ref.insert(x, y, name);
+		}
+		for (int i = 0; i < 300; i++) {
+			int x = r.nextInt(5000000) - 500000, y = r.nextInt(3000000) - 2500000, k = r.nextInt(8);
+			assertEquals(ref.nearest(x, y, k), g.nearest(new Point(x, y), k));
+			int x2 = x + r.nextInt(2000000) - 1000000, y2 = y + r.nextInt(2000000) - 1000000;
+			assertEquals(ref.range(x, y, x2, y2), g.range(new Point(x, y), new Point(x2, y2)));
+		}
+		assertEquals(ref.nearest(0, 0, 5000), g.nearest(new Point(0, 0), 5000));
+		assertEquals("NO STATIONS", g.range(new Point(-5, -5), new Point(-1, -1)));
+	}
+}
@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The top-down splay tree keeps the same keys, names and order as a
+ * TreeMap in Point order, through inserts, renames, lookups and deletes.
+ */
+class SplayTreeTest {
+
+	// Point order: by y, then by x
+	private static final Comparator<int[]> ORDER = (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1])
+			: Integer.compare(a[0], b[0]);
+
+	@Test
+	void behavesLikeATreeMap() {
+		for (long seed = 0; seed < 10; seed++) {
+			Random r = new Random(seed);
+			SplayTree tree = new SplayTree();
+			TreeMap<int[], String> model = new TreeMap<int[], String>(ORDER);
+			for (int i = 0; i < 20000; i++) {
+				int x = r.nextInt(61) - 30, y = r.nextInt(61) - 30;
+				Point p = new Point(x, y);
+				int[] key = { x, y };
+				int op = r.nextInt(4);
+				if (op == 0) {
+					String name = "s" + r.nextInt(100);
+					int n = tree.insert_record(p, name);
+					assertEquals(name, tree.store.name(n));
+					model.put(key, name);
+				} else if (op == 1)
+					assertEquals(model.remove(key), tree.delete(p));
+				else if (op == 2)
+					assertEquals(model.get(key), tree.lookup(p));
+				else {
+					int n = tree.search(p);
+					if (model.containsKey(key)) {
+						assertEquals(x, tree.store.x(n));
+						assertEquals(y, tree.store.y(n));
+						assertEquals(n, tree.root); // splayed
+					} else
+						assertEquals(SplayTree.NIL, n);
+				}
+				if (i % 500 == 0)
+					same(model, tree);
+			}
+			same(model, tree);
+		}
+	}
+
+	// the tree has the keys and names of the model, in the same order
+	private static void same(TreeMap<int[], String> model, SplayTree tree) {
+		int[] nodes = tree.inOrderNodes();
+		assertEquals(model.size(), nodes.length);
+		int i = 0;
+		StringBuilder names = new StringBuilder();
+		for (int[] key : model.keySet()) {
+			int n = nodes[i++];
+			assertEquals(key[0], tree.store.x(n));
+			assertEquals(key[1], tree.store.y(n));
+			assertEquals(model.get(key), tree.store.name(n));
+			names.append(' ').append(tree.store.name(n));
+		}
+		if (!model.isEmpty())
+			assertEquals(names.toString().trim(), tree.toString());
+	}
+
+	@Test
+	void sortedInsertsAndBuildBalanced() {
+		// sorted inserts make a tree as deep as a list, which inOrderNodes
+		// walks without recursion
+		SplayTree tree = new SplayTree();
+		for (int i = 0; i < 200000; i++)
+			tree.insert_record(new Point(i, 0), "a");
+		int[] nodes = tree.inOrderNodes();
+		assertEquals(200000, nodes.length);
+
+		// rebuilt balanced from its own inorder, lookups still work
+		SplayTree balanced = new SplayTree(tree.store);
+		balanced.buildBalanced(nodes);
+		for (int i = 0; i < 200000; i += 997)
+			assertEquals("a", balanced.lookup(new Point(i, 0)));
+		assertNull(balanced.lookup(new Point(-1, 0)));
+		assertNull(balanced.lookup(new Point(200000, 0)));
+	}
+}
@@ -0,0 +1,51 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The open-addressing index finds the same stations a plain hash map by
+ * coordinates would, through growth and removals (which shift probe runs).
+ */
+class StationIndexTest {
+
+	@Test
+	void behavesLikeAMap() {
+		Random r = new Random(1);
+		StationStore store = new HeapStationStore();
+		StationIndex index = new StationIndex(store);
+		HashMap<Long, Integer> model = new HashMap<Long, Integer>();
+		for (int i = 0; i < 200000; i++) {
+			// a small area, so there are many hits, removals and collisions
+			// of the packed keys; extreme values too
+			int x = r.nextInt(10) == 0 ? Integer.MIN_VALUE + r.nextInt(3) : r.nextInt(201) - 100;
+			int y = r.nextInt(10) == 0 ? Integer.MAX_VALUE - r.nextInt(3) : r.nextInt(201) - 100;
+			Long key = StationIndex.key(x, y);
+			int op = r.nextInt(3);
+			if (op == 0) {
+				int n = store.add(x, y, "s");
+				index.put(n);
+				model.put(key, n);
+			} else if (op == 1) {
+				index.remove(x, y);
+				model.remove(key);
+			} else
+				assertEquals(model.getOrDefault(key, StationIndex.NIL), index.get(x, y));
+			assertEquals(model.size(), index.size());
+		}
+		for (Long key : model.keySet()) {
+			int n = model.get(key);
+			assertEquals(n, index.get(new Point(store.x(n), store.y(n))));
+		}
+	}
+
+	@Test
+	void missingStation() {
+		StationIndex index = new StationIndex(new HeapStationStore());
+		assertEquals(StationIndex.NIL, index.get(0, 0));
+		index.remove(0, 0);
+		assertEquals(0, index.size());
+	}
+}
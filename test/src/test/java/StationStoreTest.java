@@ -0,0 +1,165 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Both station stores keep every column of every slot in use, hand out the
+ * slots of removed stations again with the graph's numbers cleared, and a
+ * graph on either store answers like the plain model through churn that
+ * reuses slots (hot origins included, whose trees are columns by slot too).
+ * Closing an off-heap graph gives the memory of its tree and tracks back too,
+ * and using it after that fails instead of reading freed memory.
+ */
+class StationStoreTest {
+
+	@Test
+	void heapColumns() {
+		columns(new HeapStationStore());
+	}
+
+	@Test
+	void offHeapColumns() {
+		// past one chunk of slots
+		OffHeapStationStore store = new OffHeapStationStore();
+		columns(store);
+		store.close();
+	}
+
+	private static void columns(StationStore store) {
+		Random r = new Random(5);
+		HashMap<Integer, int[]> model = new HashMap<Integer, int[]>(); // slot -> x, y, name, serial, index
+		ArrayList<Integer> used = new ArrayList<Integer>();
+		for (int k = 0; k < 300000; k++) {
+			int op = r.nextInt(10);
+			if (op < 5 || used.isEmpty()) {
+				int[] v = { r.nextInt(), r.nextInt(), r.nextInt(50), 0, 0 };
+				int s = store.add(v[0], v[1], "n" + v[2]);
+				assertEquals(null, model.put(s, v));
+				used.add(s);
+			} else {
+				int i = r.nextInt(used.size());
+				int s = used.get(i);
+				int[] v = model.get(s);
+				if (op == 5) {
+					store.remove(s);
+					model.remove(s);
+					used.set(i, used.get(used.size() - 1));
+					used.remove(used.size() - 1);
+				} else if (op == 6) {
+					v[2] = r.nextInt(50);
+					store.rename(s, "n" + v[2]);
+				} else if (op == 7) {
+					v[3] = r.nextInt();
+					store.setSerial(s, v[3]);
+				} else if (op == 8) {
+					v[4] = r.nextInt();
+					store.setIndex(s, v[4]);
+				} else {
+					assertEquals(v[0], store.x(s));
+					assertEquals(v[1], store.y(s));
+					assertEquals("n" + v[2], store.name(s));
+					assertEquals(v[3], store.serial(s));
+					assertEquals(v[4], store.index(s));
+				}
+			}
+		}
+		assertEquals(model.size(), store.size());
+		for (int s : used) {
+			int[] v = model.get(s);
+			assertEquals(v[0], store.x(s));
+			assertEquals(v[1], store.y(s));
+			assertEquals("n" + v[2], store.name(s));
+			assertEquals(v[3], store.serial(s));
+			assertEquals(v[4], store.index(s));
+		}
+	}
+
+	@Test
+	void closeFreesTheBuffers() {
+		OffHeapStationStore store = new OffHeapStationStore();
+		for (int i = 0; i < 5 * IntArray.CHUNK; i++)
+			store.add(i, -i, "red");
+		long chunks = 5L * IntArray.CHUNK * 4 * 6; // x, y, nameId, serial, index, deleted
+		long before = direct();
+		store.close();
+		// back now, not at some later GC (the store is still reachable here)
+		assertTrue(before - direct() >= chunks, "freed " + (before - direct()) + " of " + chunks + " bytes");
+		store.close(); // twice is fine
+	}
+
+	@Test
+	void closeFreesTheGraph() {
+		// a long line: every station has two tracks
+		SubwayGraph g = new SubwayGraph(new OffHeapStationStore());
+		int n = 2 * IntArray.CHUNK;
+		for (int i = 0; i < n; i++) {
+			g.insert(new Point(i, 0), "red");
+			if (i > 0)
+				g.adjacent(new Point(i - 1, 0), new Point(i, 0));
+		}
+		// the store, the tree links and the per slot columns of the sets
+		long columns = (long) n * 4 * (6 + 2 + 6);
+		long before = direct();
+		g.close();
+		assertTrue(before - direct() >= columns, "freed " + (before - direct()) + " of " + columns + " bytes");
+	}
+
+	// bytes of direct buffers the JVM has allocated and not freed yet
+	private static long direct() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+			if (pool.getName().equals("direct"))
+				return pool.getMemoryUsed();
+		throw new AssertionError("no direct buffer pool");
+	}
+
+	@Test
+	void useAfterFree() {
+		// a freed array has no chunks left to reach the memory through:
+		// every use fails in Java, none touches memory that is gone
+		DirectIntArray a = new DirectIntArray();
+		a.grow(3 * IntArray.CHUNK);
+		a.set(2 * IntArray.CHUNK + 5, 7);
+		a.free();
+		assertEquals(0L, a.length());
+		assertThrows(NullPointerException.class, () -> a.get(2 * IntArray.CHUNK + 5));
+		assertThrows(NullPointerException.class, () -> a.set(0, 1));
+		assertThrows(NullPointerException.class, () -> a.grow(1));
+		a.free(); // twice is fine
+
+		// and so does a closed graph
+		SubwayGraph g = new SubwayGraph(new OffHeapStationStore());
+		g.insert(new Point(0, 0), "red");
+		g.close();
+		assertThrows(NullPointerException.class, () -> g.insert(new Point(1, 1), "blue"));
+	}
+
+	@Test
+	void churnWithHotOrigins() {
+		for (long seed = 0; seed < 10; seed++) {
+			SubwayGraph g = new SubwayGraph(seed % 2 == 0 ? new HeapStationStore() : new OffHeapStationStore());
+			g.setRouteCacheSize(0);
+			g.addHotOrigin(new Point(0, 0));
+			g.addHotOrigin(new Point(1, 1));
+			Reference ref = new Reference();
+			String[] script = Network.script(seed, 2000, 3, Network.DEFAULT.with("Delete", 0.3).without("Route"))
+					.split("\n");
+			for (int i = 0; i < script.length; i++) {
+				Network.apply(script[i], g, ref);
+				if (i % 25 == 0)
+					for (int[] a : ref.points()) {
+						ref.check(g.route(new Point(a[0], a[1]), new Point(0, 0)), a[0], a[1], 0, 0);
+						ref.check(g.route(new Point(1, 1), new Point(a[0], a[1])), 1, 1, a[0], a[1]);
+					}
+			}
+			g.close();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The driver stops with a usage message, before it reads a command, at a
+ * flag it does not know or a bad value of one it does.
+ */
+class SubwayDriverTest {
+
+	@Test
+	void badFlags() throws IOException, InterruptedException {
+		String[] bad = { "--bogus", "-x", "bidirectional", "batch-routes", "--bidirectional=yes",
+				"--batch-routes=2", "--route-cache=", "--route-cache=-1", "--route-cache=many", "--parallel=0",
+				"--parallel=-3", "--parallel=two", "--checkpoint-every=0", "--checkpoint-every=x", "--metrics=on",
+				"--weighted=miles", "--weighted", "--bulk-import=yes", "--hot-origin=1", "--hot-origin=1,y",
+				"--hot-origin=1,2,3", "--lazy-delete=often", "--lazy-delete=-1", "--lazy-delete=",
+				"--off-heap=yes" };
+		for (String flag : bad) {
+			String[] printed = Network.run("insert 0 0 red\nRoute 0 0 0 0\n", flag);
+			assertEquals("", printed[0], flag);
+			assertTrue(printed[1].startsWith("Error: bad flag " + flag + "\n"), printed[1]);
+			assertTrue(printed[1].contains("usage: SubwayDriver"), printed[1]);
+		}
+	}
+
+	@Test
+	void oneWayToRunRoutes() throws IOException, InterruptedException {
+		String[][] both = { { "--batch-routes", "--parallel" }, { "--parallel=2", "--batch-routes" },
+				{ "--parallel", "--parallel=3" }, { "--batch-routes", "--batch-routes" } };
+		for (String[] flags : both) {
+			String[] printed = Network.run("insert 0 0 red\nRoute 0 0 0 0\n", flags);
+			assertEquals("", printed[0], String.join(" ", flags));
+			assertTrue(printed[1].startsWith("Error: bad flag " + flags[1] + "\n"), printed[1]);
+		}
+	}
+
+	@Test
+	void goodFlags() throws IOException {
+		// all of them at once, in any order, --extra-credit anywhere
+		String script = Network.script(1, 300, 4);
+		assertEquals(Reference.output(script), Network.drive(script, "--batch-routes", "--extra-credit",
+				"--route-cache=0", "--fast-input", "--buffered-output", "--metrics", "--bulk-import",
+				"--lazy-delete=0.5", "--off-heap"));
+	}
+}
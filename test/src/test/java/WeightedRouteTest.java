@@ -0,0 +1,62 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Weighted routes (A*) take the shorter way over the one with fewer
+ * stations, under both metrics and for coordinates as far apart as ints
+ * go, and switching back to hops gives the plain BFS routes again.
+ */
+class WeightedRouteTest {
+
+	@Test
+	void longWayRound() {
+		// two stops by way of (5, 9), or three close to the axis, which is
+		// shorter under both metrics
+		SubwayGraph g = new SubwayGraph();
+		String script = "insert 0 0 a\ninsert 10 0 b\ninsert 3 1 c\ninsert 7 1 d\ninsert 5 9 e\n"
+				+ "Adjacent 0 0 3 1\nAdjacent 3 1 7 1\nAdjacent 7 1 10 0\nAdjacent 0 0 5 9\nAdjacent 5 9 10 0\n";
+		Network.apply(script, g, null);
+		String far = "Station 0, 0 a\nStation 5, 9 e\nStation 10, 0 b\n";
+		String near = "Station 0, 0 a\nStation 3, 1 c\nStation 7, 1 d\nStation 10, 0 b\n";
+		assertEquals(far, g.route(new Point(0, 0), new Point(10, 0)));
+		g.setMetric(CompactGraph.EUCLIDEAN);
+		assertEquals(near, g.route(new Point(0, 0), new Point(10, 0)));
+		g.setMetric(CompactGraph.MANHATTAN);
+		assertEquals(near, g.route(new Point(0, 0), new Point(10, 0)));
+		assertEquals("Station 10, 0 b\nStation 7, 1 d\nStation 3, 1 c\nStation 0, 0 a\n",
+				g.route(new Point(10, 0), new Point(0, 0)));
+	}
+
+	@Test
+	void farApart() {
+		// distances past what an int holds, and a triangle on the corners
+		int lo = Integer.MIN_VALUE, hi = Integer.MAX_VALUE;
+		for (boolean manhattan : new boolean[] { false, true }) {
+			SubwayGraph g = new SubwayGraph();
+			g.setMetric(manhattan ? CompactGraph.MANHATTAN : CompactGraph.EUCLIDEAN);
+			Reference ref = new Reference();
+			String script = "insert " + lo + " " + lo + " a\ninsert " + hi + " " + hi + " b\ninsert " + lo + " " + hi
+					+ " c\ninsert 0 0 d\nAdjacent " + lo + " " + lo + " " + lo + " " + hi + "\nAdjacent " + lo + " " + hi
+					+ " " + hi + " " + hi + "\nAdjacent " + lo + " " + lo + " 0 0\nAdjacent 0 0 " + hi + " " + hi + "\n";
+			Network.apply(script, g, ref);
+			for (int[] a : ref.points())
+				for (int[] b : ref.points())
+					ref.checkWeighted(g.route(new Point(a[0], a[1]), new Point(b[0], b[1])), a[0], a[1], b[0], b[1],
+							manhattan);
+		}
+	}
+
+	@Test
+	void backToHops() {
+		SubwayGraph g = new SubwayGraph();
+		Reference ref = new Reference();
+		Network.apply(Network.script(3, 500, 5), g, ref);
+		g.setMetric(CompactGraph.EUCLIDEAN);
+		g.route(new Point(0, 0), new Point(1, 1));
+		g.setMetric(CompactGraph.HOPS);
+		int[][] p = ref.points();
+		for (int[] a : p)
+			assertEquals(ref.route(a[0], a[1], 0, 0), g.route(new Point(a[0], a[1]), new Point(0, 0)));
+	}
+}